@@ -111,7 +111,10 @@ CREATE TABLE reservations (
                               user_id BIGINT,
                               reservation_date DATETIME NOT NULL,
                               expiration_date DATETIME NOT NULL,
-                              status ENUM('ACTIVE', 'FULFILLED', 'EXPIRED') NOT NULL DEFAULT 'ACTIVE',
+                              status ENUM('ACTIVE', 'ON_HOLD', 'FULFILLED', 'EXPIRED') NOT NULL DEFAULT 'ACTIVE',
+                              pickup_deadline DATETIME NULL,
+                              active_marker BOOLEAN NULL,
+                              CONSTRAINT uk_reservation_open UNIQUE (book_id, user_id, active_marker),
                               FOREIGN KEY (book_id) REFERENCES books(id) ON DELETE CASCADE,
                               FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
 );
@@ -123,20 +126,76 @@ CREATE TABLE fines (
                        reason VARCHAR(255) NOT NULL,
                        date_issued DATE NOT NULL,
                        date_paid DATE,
+                       accrued_through DATE,
                        FOREIGN KEY (loan_id) REFERENCES loans(id) ON DELETE RESTRICT
 );
 
+CREATE TABLE job_checkpoints (
+                                 job_name VARCHAR(100) PRIMARY KEY,
+                                 run_date DATE NOT NULL,
+                                 last_id BIGINT NOT NULL,
+                                 completed BOOLEAN NOT NULL,
+                                 updated_at TIMESTAMP NULL
+);
+
+CREATE TABLE notification_outbox (
+                                     id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                                     type VARCHAR(50) NOT NULL,
+                                     user_id BIGINT,
+                                     email VARCHAR(255),
+                                     message VARCHAR(2000) NOT NULL,
+                                     status ENUM('PENDING', 'SENT', 'FAILED') NOT NULL DEFAULT 'PENDING',
+                                     attempts INT NOT NULL DEFAULT 0,
+                                     next_attempt_at DATETIME NOT NULL,
+                                     created_at DATETIME NOT NULL,
+                                     sent_at DATETIME NULL,
+                                     last_error VARCHAR(500)
+);
+
+CREATE TABLE borrower_counters (
+                                   user_id BIGINT PRIMARY KEY,
+                                   active_loans INT NOT NULL DEFAULT 0,
+                                   active_reservations INT NOT NULL DEFAULT 0,
+                                   FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+CREATE TABLE borrower_policy_counters (
+                                          user_id BIGINT NOT NULL,
+                                          item_type VARCHAR(50) NOT NULL,
+                                          active_loans INT NOT NULL DEFAULT 0,
+                                          PRIMARY KEY (user_id, item_type),
+                                          FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+CREATE TABLE idempotency_keys (
+                                  principal VARCHAR(255) NOT NULL,
+                                  idempotency_key VARCHAR(255) NOT NULL,
+                                  fingerprint VARCHAR(2048) NOT NULL,
+                                  status INT NULL,
+                                  content_type VARCHAR(255),
+                                  body MEDIUMBLOB,
+                                  created_at DATETIME NOT NULL,
+                                  PRIMARY KEY (principal, idempotency_key)
+);
+
 -- Create essential indexes
 CREATE INDEX idx_book_title ON books(title);
 CREATE INDEX idx_book_policy_type ON books(policy_type);
 CREATE INDEX idx_user_username ON users(username);
 CREATE INDEX idx_user_email ON users(email);
 CREATE INDEX idx_user_status ON users(status);
-CREATE INDEX idx_loan_return_date ON loans(return_date);
 CREATE INDEX idx_loan_renewal_due_date ON loans(renewal_due_date);
 CREATE INDEX idx_loan_last_reminder ON loans(last_reminder_sent);
 CREATE INDEX idx_loan_renewals_date ON loan_renewals(renewal_date);
-CREATE INDEX idx_reservation_status ON reservations(status);
+CREATE INDEX idx_identifier_value ON industry_identifiers(identifier);
+CREATE INDEX idx_loan_book_return ON loans(book_id, return_date);
+CREATE INDEX idx_loan_due_date ON loans(due_date);
+CREATE INDEX idx_loan_return_due ON loans(return_date, due_date);
+CREATE INDEX idx_loan_user_return_due ON loans(user_id, return_date, due_date);
+CREATE INDEX idx_reservation_book_status ON reservations(book_id, status, reservation_date);
+CREATE INDEX idx_reservation_status_expiration ON reservations(status, expiration_date);
+CREATE INDEX idx_outbox_status_next_attempt ON notification_outbox(status, next_attempt_at, id);
+CREATE INDEX idx_idempotency_created ON idempotency_keys(created_at);
 
 -- Insert initial loan policies with descriptions
 INSERT INTO loan_policies
@@ -224,4 +283,4 @@ INSERT INTO users (
      'Two',
      'MEMBER',
      'ACTIVE'
- );
\ No newline at end of file
+ );
@@ -0,0 +1,27 @@
+// BorrowingLimitProperties.java
+package com.example.library.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "library.borrowing")
+public class BorrowingLimitProperties {
+    // Concurrent loans allowed per user role (MEMBER, LIBRARIAN, ADMIN); roles not listed are unlimited
+    private Map<String, Integer> maxLoansByRole = new HashMap<>(Map.of("MEMBER", 5));
+
+    // Concurrent loans allowed per loan policy item type, on top of the role limit
+    private Map<String, Integer> maxLoansByPolicy = new HashMap<>();
+
+    // Active reservations allowed per user role; roles not listed are unlimited
+    private Map<String, Integer> maxReservationsByRole = new HashMap<>(Map.of("MEMBER", 5));
+
+    // Checkouts and reservations are refused while unpaid fines exceed this amount; null disables the block
+    private BigDecimal fineBlockThreshold = new BigDecimal("10.00");
+}
@@ -0,0 +1,29 @@
+// GoogleBooksProperties.java
+package com.example.library.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "google.books")
+public class GoogleBooksProperties {
+    private String apiUrl = "https://www.googleapis.com/books/v1/volumes";
+
+    private long connectTimeoutMs = 2000;
+    private long readTimeoutMs = 5000;
+
+    // Bulkhead: upstream calls allowed in flight at once; further calls are rejected immediately
+    private int maxConcurrentRequests = 20;
+
+    private long cacheTtlSeconds = 300;
+    private long cacheMaxSize = 1000;
+
+    // Last good result per query, served when the upstream fails or is short-circuited
+    private long staleTtlHours = 24;
+    private long staleMaxSize = 5000;
+
+    private int circuitBreakerFailureThreshold = 5;
+    private long circuitBreakerOpenSeconds = 30;
+}
@@ -0,0 +1,232 @@
+// IdempotencyFilter.java
+package com.example.library.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.List;
+
+// Makes retried circulation POSTs safe on any node. The first request carrying an
+// Idempotency-Key inserts the key into idempotency_keys and runs in the same transaction,
+// which records its response before committing; retries with the same key from the same user
+// are answered from that row without reaching the controller. A retry that arrives while the
+// first attempt is still running blocks on the key's unique constraint until it commits or
+// rolls back. Server errors roll back the request together with its key, so they can be
+// retried for real. Rows are purged once older than the TTL.
+// Registered as a servlet filter, so it runs after the security filter chain has authenticated
+// the request.
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyFilter.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final int PURGE_BATCH_SIZE = 1000;
+    private static final List<String> IDEMPOTENT_ENDPOINTS = List.of(
+            "/api/loans/checkout",
+            "/api/loans/{id}/return",
+            "/api/loans/{id}/renew",
+            "/api/fines/{id}/pay");
+
+    private static final String CLAIM_SQL =
+            "INSERT INTO idempotency_keys (principal, idempotency_key, fingerprint, created_at) VALUES (?, ?, ?, ?)";
+    private static final String RECORD_SQL =
+            "UPDATE idempotency_keys SET status = ?, content_type = ?, body = ? " +
+            "WHERE principal = ? AND idempotency_key = ?";
+    private static final String INSERT_RECORDED_SQL =
+            "INSERT INTO idempotency_keys (principal, idempotency_key, fingerprint, status, content_type, body, " +
+            "created_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_SQL =
+            "SELECT fingerprint, status, content_type, body FROM idempotency_keys " +
+            "WHERE principal = ? AND idempotency_key = ?";
+    private static final String PURGE_SQL =
+            "DELETE FROM idempotency_keys WHERE created_at < ? LIMIT ?";
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate claimTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long ttlMs;
+
+    private enum Claim { CLAIMED, TAKEN, BUSY }
+
+    private record StoredResponse(String fingerprint, Integer status, String contentType, byte[] body) {
+    }
+
+    // Carries the chain's checked exceptions out of the transaction callback
+    private static class ChainException extends RuntimeException {
+        ChainException(Exception cause) {
+            super(cause);
+        }
+    }
+
+    public IdempotencyFilter(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${library.idempotency.ttl-ms:86400000}") long ttlMs,
+                             @Value("${library.idempotency.in-flight-wait-ms:10000}") long inFlightWaitMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Bounds how long a retry waits on the key held by the first attempt
+        this.claimTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.claimTemplate.setQueryTimeout((int) Math.max(1, (inFlightWaitMs + 999) / 1000));
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttlMs = ttlMs;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!"POST".equals(request.getMethod()) || request.getHeader(HEADER) == null) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return IDEMPOTENT_ENDPOINTS.stream().noneMatch(pattern -> pathMatcher.match(pattern, path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String key = request.getHeader(HEADER).trim();
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Invalid " + HEADER + " header");
+            return;
+        }
+
+        // Keys are scoped to the caller, so one user can never be answered with another's response
+        String principal = principalName();
+        String fingerprint = request.getMethod() + " " + request.getRequestURI()
+                + (request.getQueryString() != null ? "?" + request.getQueryString() : "");
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        boolean[] recordAfterRollback = {false};
+        Claim claim;
+        try {
+            claim = transactionTemplate.execute(status -> {
+                Claim result = claim(principal, key, fingerprint);
+                if (result != Claim.CLAIMED) {
+                    return result;
+                }
+                try {
+                    filterChain.doFilter(request, wrapper);
+                } catch (ServletException | IOException e) {
+                    throw new ChainException(e);
+                }
+                if (wrapper.getStatus() >= 500) {
+                    status.setRollbackOnly();
+                } else if (status.isRollbackOnly()) {
+                    // A service failed the transaction, so nothing the request did is kept, the
+                    // key included; its response is recorded once the rollback is done
+                    status.setRollbackOnly();
+                    recordAfterRollback[0] = true;
+                } else {
+                    jdbcTemplate.update(RECORD_SQL, wrapper.getStatus(), wrapper.getContentType(),
+                            wrapper.getContentAsByteArray(), principal, key);
+                }
+                return result;
+            });
+        } catch (ChainException e) {
+            if (e.getCause() instanceof ServletException servletException) {
+                throw servletException;
+            }
+            throw (IOException) e.getCause();
+        }
+
+        if (claim == Claim.BUSY) {
+            response.sendError(HttpStatus.CONFLICT.value(), "A request with this " + HEADER + " is still in progress");
+            return;
+        }
+        if (claim == Claim.TAKEN) {
+            replay(principal, key, fingerprint, response);
+            return;
+        }
+        if (recordAfterRollback[0]) {
+            try {
+                jdbcTemplate.update(INSERT_RECORDED_SQL, principal, key, fingerprint, wrapper.getStatus(),
+                        wrapper.getContentType(), wrapper.getContentAsByteArray(),
+                        new Timestamp(System.currentTimeMillis()));
+            } catch (DuplicateKeyException e) {
+                // A retry ran in the meantime and recorded its own response
+            }
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    private Claim claim(String principal, String key, String fingerprint) {
+        try {
+            claimTemplate.update(CLAIM_SQL, principal, key, fingerprint, new Timestamp(System.currentTimeMillis()));
+            return Claim.CLAIMED;
+        } catch (DuplicateKeyException e) {
+            return Claim.TAKEN;
+        } catch (QueryTimeoutException | PessimisticLockingFailureException e) {
+            return Claim.BUSY;
+        }
+    }
+
+    private void replay(String principal, String key, String fingerprint,
+                        HttpServletResponse response) throws IOException {
+        StoredResponse stored = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> new StoredResponse(
+                        rs.getString(1), (Integer) rs.getObject(2), rs.getString(3), rs.getBytes(4)),
+                principal, key).stream().findFirst().orElse(null);
+        if (stored == null || stored.status() == null) {
+            // Purged or rolled back since the claim failed; the client may retry
+            response.sendError(HttpStatus.CONFLICT.value(), "The original request with this " + HEADER + " failed");
+            return;
+        }
+
+        if (!stored.fingerprint().equals(fingerprint)) {
+            response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(),
+                    HEADER + " was already used for a different request");
+            return;
+        }
+        byte[] body = stored.body() != null ? stored.body() : new byte[0];
+        response.setStatus(stored.status());
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    @Scheduled(fixedDelayString = "${library.idempotency.purge-interval-ms:3600000}")
+    public int purgeExpired() {
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - ttlMs);
+        int purged = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(PURGE_SQL, cutoff, PURGE_BATCH_SIZE);
+            purged += deleted;
+        } while (deleted == PURGE_BATCH_SIZE);
+        if (purged > 0) {
+            logger.info("Purged {} expired idempotency keys", purged);
+        }
+        return purged;
+    }
+
+    private static String principalName() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : "";
+    }
+}
@@ -0,0 +1,201 @@
+// SchemaUpgrade.java
+package com.example.library.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Brings databases created from an older initial_setup.sql up to the current schema.
+// Hibernate's ddl-auto=update adds missing columns of mapped entities, but never changes the
+// type of an existing column, never creates tables that have no entity and never moves data,
+// so those changes are made here, once, at startup. Each step looks at the schema before
+// changing it, so it changes nothing on a database created from the current initial_setup.sql
+// and can be re-run after failing part way; completed steps are recorded in schema_upgrades.
+// Runs after Hibernate's schema update and before the application takes requests or starts
+// its jobs. Nodes starting together take turns through a named lock. MySQL only; other
+// databases are created from the entities.
+@Component
+@DependsOn("entityManagerFactory")
+public class SchemaUpgrade implements InitializingBean {
+    private static final Logger logger = LoggerFactory.getLogger(SchemaUpgrade.class);
+
+    private static final String LOCK_NAME = "library_schema_upgrade";
+    private static final int LOCK_TIMEOUT_SECONDS = 300;
+
+    private record Step(String name, Consumer<JdbcTemplate> apply) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final List<Step> steps = List.of(
+            new Step("reservation-hold-shelf", this::addHoldShelf),
+            new Step("fine-accrual", this::addFineAccrual),
+            new Step("notification-outbox", this::addNotificationOutbox),
+            new Step("open-reservation-key", this::addOpenReservationKey),
+            new Step("borrower-counters", this::addBorrowerCounters),
+            new Step("idempotency-keys", this::addIdempotencyKeys));
+
+    public SchemaUpgrade(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            if (!"MySQL".equals(connection.getMetaData().getDatabaseProductName())) {
+                return null;
+            }
+            // Every statement, the lock included, has to run on this one connection
+            JdbcTemplate jdbc = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+            Integer locked = jdbc.queryForObject("SELECT GET_LOCK(?, ?)", Integer.class,
+                    LOCK_NAME, LOCK_TIMEOUT_SECONDS);
+            if (locked == null || locked != 1) {
+                throw new IllegalStateException("Timed out waiting for another node to upgrade the schema");
+            }
+            try {
+                upgrade(jdbc);
+            } finally {
+                jdbc.queryForObject("SELECT RELEASE_LOCK(?)", Integer.class, LOCK_NAME);
+            }
+            return null;
+        });
+    }
+
+    private void upgrade(JdbcTemplate jdbc) {
+        jdbc.execute("CREATE TABLE IF NOT EXISTS schema_upgrades (" +
+                "name VARCHAR(100) PRIMARY KEY, applied_at DATETIME NOT NULL)");
+        List<String> applied = jdbc.queryForList("SELECT name FROM schema_upgrades", String.class);
+        for (Step step : steps) {
+            if (applied.contains(step.name())) {
+                continue;
+            }
+            long start = System.currentTimeMillis();
+            step.apply().accept(jdbc);
+            jdbc.update("INSERT INTO schema_upgrades (name, applied_at) VALUES (?, ?)",
+                    step.name(), new Timestamp(System.currentTimeMillis()));
+            logger.info("Applied schema upgrade {} in {} ms", step.name(), System.currentTimeMillis() - start);
+        }
+    }
+
+    // Hold shelf: the ON_HOLD status and the pickup deadline of a held copy
+    private void addHoldShelf(JdbcTemplate jdbc) {
+        String statusType = jdbc.queryForObject("SELECT COLUMN_TYPE FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'reservations' AND COLUMN_NAME = 'status'",
+                String.class);
+        if (statusType != null && !statusType.contains("'ON_HOLD'")) {
+            jdbc.execute("ALTER TABLE reservations MODIFY status " +
+                    "ENUM('ACTIVE', 'ON_HOLD', 'FULFILLED', 'EXPIRED') NOT NULL DEFAULT 'ACTIVE'");
+        }
+        addColumnIfMissing(jdbc, "reservations", "pickup_deadline", "DATETIME NULL");
+    }
+
+    // Nightly fine accrual: how far an accruing fine has been charged
+    private void addFineAccrual(JdbcTemplate jdbc) {
+        addColumnIfMissing(jdbc, "fines", "accrued_through", "DATE NULL");
+    }
+
+    // Patron notifications are written over JDBC only, so no entity creates their table
+    private void addNotificationOutbox(JdbcTemplate jdbc) {
+        jdbc.execute("CREATE TABLE IF NOT EXISTS notification_outbox (" +
+                "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "type VARCHAR(50) NOT NULL, " +
+                "user_id BIGINT, " +
+                "email VARCHAR(255), " +
+                "message VARCHAR(2000) NOT NULL, " +
+                "status ENUM('PENDING', 'SENT', 'FAILED') NOT NULL DEFAULT 'PENDING', " +
+                "attempts INT NOT NULL DEFAULT 0, " +
+                "next_attempt_at DATETIME NOT NULL, " +
+                "created_at DATETIME NOT NULL, " +
+                "sent_at DATETIME NULL, " +
+                "last_error VARCHAR(500))");
+        addIndexIfMissing(jdbc, "notification_outbox", "idx_outbox_status_next_attempt", "status, next_attempt_at, id");
+    }
+
+    // One open reservation per member and book, enforced by a unique key over active_marker,
+    // which is TRUE while a reservation is open and NULL afterwards. Needs the ON_HOLD status.
+    private void addOpenReservationKey(JdbcTemplate jdbc) {
+        addColumnIfMissing(jdbc, "reservations", "active_marker", "BOOLEAN NULL");
+
+        // Keep one open reservation per member and book: the one on hold if any, else the oldest.
+        // A copy held by an expired duplicate is put back by the inventory reconciliation job.
+        int expired = jdbc.update("UPDATE reservations r " +
+                "JOIN (SELECT book_id, user_id, " +
+                "COALESCE(MIN(CASE WHEN status = 'ON_HOLD' THEN id END), MIN(id)) AS keep_id " +
+                "FROM reservations WHERE status IN ('ACTIVE', 'ON_HOLD') " +
+                "GROUP BY book_id, user_id HAVING COUNT(*) > 1) d " +
+                "ON d.book_id = r.book_id AND d.user_id = r.user_id " +
+                "SET r.status = 'EXPIRED', r.active_marker = NULL " +
+                "WHERE r.status IN ('ACTIVE', 'ON_HOLD') AND r.id <> d.keep_id");
+        if (expired > 0) {
+            logger.warn("Expired {} duplicate open reservations", expired);
+        }
+        jdbc.update("UPDATE reservations SET active_marker = TRUE " +
+                "WHERE status IN ('ACTIVE', 'ON_HOLD') AND active_marker IS NULL");
+
+        if (!indexExists(jdbc, "reservations", "uk_reservation_open")) {
+            jdbc.execute("ALTER TABLE reservations ADD CONSTRAINT uk_reservation_open " +
+                    "UNIQUE (book_id, user_id, active_marker)");
+        }
+    }
+
+    // Borrowing limit counters, written over JDBC only. A user's rows are seeded from their
+    // loans and reservations when first needed, so nothing is copied here.
+    private void addBorrowerCounters(JdbcTemplate jdbc) {
+        jdbc.execute("CREATE TABLE IF NOT EXISTS borrower_counters (" +
+                "user_id BIGINT PRIMARY KEY, " +
+                "active_loans INT NOT NULL DEFAULT 0, " +
+                "active_reservations INT NOT NULL DEFAULT 0, " +
+                "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE)");
+        jdbc.execute("CREATE TABLE IF NOT EXISTS borrower_policy_counters (" +
+                "user_id BIGINT NOT NULL, " +
+                "item_type VARCHAR(50) NOT NULL, " +
+                "active_loans INT NOT NULL DEFAULT 0, " +
+                "PRIMARY KEY (user_id, item_type), " +
+                "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE)");
+    }
+
+    // Responses recorded by IdempotencyFilter, shared by all nodes
+    private void addIdempotencyKeys(JdbcTemplate jdbc) {
+        jdbc.execute("CREATE TABLE IF NOT EXISTS idempotency_keys (" +
+                "principal VARCHAR(255) NOT NULL, " +
+                "idempotency_key VARCHAR(255) NOT NULL, " +
+                "fingerprint VARCHAR(2048) NOT NULL, " +
+                "status INT NULL, " +
+                "content_type VARCHAR(255), " +
+                "body MEDIUMBLOB, " +
+                "created_at DATETIME NOT NULL, " +
+                "PRIMARY KEY (principal, idempotency_key))");
+        addIndexIfMissing(jdbc, "idempotency_keys", "idx_idempotency_created", "created_at");
+    }
+
+    private static void addColumnIfMissing(JdbcTemplate jdbc, String table, String column, String definition) {
+        Integer count = jdbc.queryForObject("SELECT COUNT(*) FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?",
+                Integer.class, table, column);
+        if (count != null && count == 0) {
+            jdbc.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+
+    private static void addIndexIfMissing(JdbcTemplate jdbc, String table, String index, String columns) {
+        if (!indexExists(jdbc, table, index)) {
+            jdbc.execute("CREATE INDEX " + index + " ON " + table + "(" + columns + ")");
+        }
+    }
+
+    private static boolean indexExists(JdbcTemplate jdbc, String table, String index) {
+        Integer count = jdbc.queryForObject("SELECT COUNT(*) FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = ?",
+                Integer.class, table, index);
+        return count != null && count > 0;
+    }
+}
@@ -1,20 +1,33 @@
 package com.example.library.controller;
 
 import com.example.library.dto.BookDTO;
+import com.example.library.dto.BookSearchResultDTO;
+import com.example.library.dto.BulkImportResultDTO;
+import com.example.library.dto.CursorPageDTO;
 import com.example.library.dto.GoogleBooksDTO;
 import com.example.library.dto.GoogleBooksSearchResultDTO;
 import com.example.library.exceptions.BookDeleteException;
 import com.example.library.exceptions.BookNotFoundException;
 import com.example.library.exceptions.InvalidInventoryUpdateException;
+import com.example.library.service.BookExportService;
+import com.example.library.service.BookImportService;
 import com.example.library.service.BookService;
 import com.example.library.service.GoogleBooksService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/books")
@@ -25,11 +38,37 @@ public class BookController {
     @Autowired
     private GoogleBooksService googleBooksService;
 
+    @Autowired
+    private BookExportService bookExportService;
+
+    @Autowired
+    private BookImportService bookImportService;
+
+    // Exports stream the whole catalog and can run far longer than the default async timeout
+    @Value("${library.export.request-timeout-ms:3600000}")
+    private long exportTimeoutMs;
+
     @GetMapping
     public List<BookDTO> getAllBooks() {
         return bookService.getAllBooksDTO();
     }
 
+    @GetMapping("/page")
+    public ResponseEntity<CursorPageDTO<BookDTO>> getBooksPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String author,
+            @RequestParam(required = false) String policyType,
+            @RequestParam(defaultValue = "false") boolean availableOnly) {
+        try {
+            return ResponseEntity.ok(bookService.getBooksPage(
+                    cursor, size, category, author, policyType, availableOnly));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<BookDTO> getBookById(@PathVariable String id) {
         return bookService.getBookDTOById(id)
@@ -43,6 +82,57 @@ public class BookController {
         return bookService.getBookCount();
     }
 
+    // Full-text search over our own holdings
+    @GetMapping("/query")
+    public BookSearchResultDTO queryBooks(
+            @RequestParam String q,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer size) {
+        return bookService.searchLocalBooks(q, page, size);
+    }
+
+    // Barcode lookup: accepts ISBN-10 or ISBN-13, with or without hyphens
+    @GetMapping("/by-identifier/{identifier}")
+    public ResponseEntity<BookDTO> getBookByIdentifier(@PathVariable String identifier) {
+        return bookService.getBookDTOByIdentifier(identifier)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/by-identifier")
+    public ResponseEntity<?> resolveIdentifiers(@RequestBody List<String> identifiers) {
+        try {
+            return ResponseEntity.ok(bookService.resolveIdentifiers(identifiers));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/export")
+    @PreAuthorize("hasAnyRole('ADMIN', 'LIBRARIAN')")
+    public ResponseEntity<StreamingResponseBody> exportBooks(@RequestParam(defaultValue = "ndjson") String format,
+                                                             WebRequest webRequest) {
+        BookExportService.Format exportFormat;
+        try {
+            exportFormat = BookExportService.Format.fromString(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Only this response gets the long timeout; the streaming body runs on the async request set up here
+        AsyncWebRequest asyncWebRequest = WebAsyncUtils.getAsyncManager(webRequest).getAsyncWebRequest();
+        if (asyncWebRequest != null) {
+            asyncWebRequest.setTimeout(exportTimeoutMs);
+        }
+
+        StreamingResponseBody body = outputStream -> bookExportService.exportCatalog(exportFormat, outputStream);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"books." + exportFormat.getExtension() + "\"")
+                .body(body);
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<BookDTO> updateBook(@PathVariable String id, @RequestBody BookDTO bookDTO) {
         if (!bookService.getBookById(id).isPresent()) {
@@ -67,14 +157,12 @@ public class BookController {
     }
 
     // Google Books Integration endpoints
+    // Completes asynchronously, so the request thread is released while Google Books responds
     @GetMapping("/search")
-    public ResponseEntity<GoogleBooksSearchResultDTO> searchBooks(@RequestParam String query) {
-        try {
-            GoogleBooksSearchResultDTO searchResult = googleBooksService.searchBooks(query);
-            return ResponseEntity.ok(searchResult);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+    public CompletableFuture<ResponseEntity<GoogleBooksSearchResultDTO>> searchBooks(@RequestParam String query) {
+        return googleBooksService.searchBooks(query)
+                .thenApply(ResponseEntity::ok)
+                .exceptionally(e -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
     }
 
     @PostMapping("/google")
@@ -88,6 +176,12 @@ public class BookController {
         }
     }
 
+    @PostMapping("/google/bulk")
+    @PreAuthorize("hasAnyRole('ADMIN', 'LIBRARIAN')")
+    public BulkImportResultDTO importBooksFromGoogle(@RequestBody List<GoogleBooksDTO> googleBooks) {
+        return bookImportService.importGoogleBooks(googleBooks);
+    }
+
     // Exception handlers
     @ExceptionHandler(BookNotFoundException.class)
     public ResponseEntity<String> handleBookNotFound(BookNotFoundException ex) {
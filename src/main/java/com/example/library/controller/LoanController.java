@@ -1,16 +1,20 @@
 // LoanController.java
 package com.example.library.controller;
 
+import com.example.library.dto.BatchCheckoutRequestDTO;
+import com.example.library.dto.CursorPageDTO;
 import com.example.library.dto.LoanDTO;
 import com.example.library.dto.LoanRenewalDTO;
 import com.example.library.model.User;
 import com.example.library.service.LoanService;
 import com.example.library.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -24,15 +28,35 @@ public class LoanController {
 
     @GetMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'LIBRARIAN')")
-    public List<LoanDTO> getAllLoans() {
-        return loanService.getAllLoansDTO();
+    public List<LoanDTO> getAllLoans(@RequestParam(defaultValue = "true") boolean includeHistory) {
+        return loanService.getAllLoansDTO(includeHistory);
+    }
+
+    @GetMapping("/search")
+    @PreAuthorize("hasAnyRole('ADMIN', 'LIBRARIAN')")
+    public ResponseEntity<CursorPageDTO<LoanDTO>> searchLoans(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dueBefore,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dueAfter,
+            @RequestParam(required = false) String policyType,
+            @RequestParam(required = false) String bookId,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(defaultValue = "false") boolean includeHistory) {
+        try {
+            return ResponseEntity.ok(loanService.searchLoans(
+                    cursor, size, status, dueBefore, dueAfter, policyType, bookId, userId, includeHistory));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @GetMapping("/my-loans")
     @PreAuthorize("isAuthenticated()")
-    public List<LoanDTO> getMyLoans() {
+    public List<LoanDTO> getMyLoans(@RequestParam(defaultValue = "true") boolean includeHistory) {
         User currentUser = userService.getCurrentUser();
-        return loanService.getLoansDTOByUserId(currentUser.getId());
+        return loanService.getLoansDTOByUserId(currentUser.getId(), includeHistory);
     }
 
     @GetMapping("/{id}")
@@ -43,13 +67,15 @@ public class LoanController {
     }
 
     @GetMapping("/user/{userId}")
-    public List<LoanDTO> getLoansByUserId(@PathVariable Long userId) {
-        return loanService.getLoansDTOByUserId(userId);
+    public List<LoanDTO> getLoansByUserId(@PathVariable Long userId,
+                                          @RequestParam(defaultValue = "true") boolean includeHistory) {
+        return loanService.getLoansDTOByUserId(userId, includeHistory);
     }
 
     @GetMapping("/book/{bookId}")
-    public List<LoanDTO> getLoansByBookId(@PathVariable String bookId) {
-        return loanService.getLoansDTOByBookId(bookId);
+    public List<LoanDTO> getLoansByBookId(@PathVariable String bookId,
+                                          @RequestParam(defaultValue = "true") boolean includeHistory) {
+        return loanService.getLoansDTOByBookId(bookId, includeHistory);
     }
 
     @GetMapping("/activeCount")
@@ -82,6 +108,28 @@ public class LoanController {
         }
     }
 
+    // Circulation desk carts: one call and one transaction for the whole cart,
+    // with a result per item
+    @PostMapping("/batch-checkout")
+    @PreAuthorize("hasAnyRole('ADMIN', 'LIBRARIAN')")
+    public ResponseEntity<?> batchCheckout(@RequestBody BatchCheckoutRequestDTO request) {
+        try {
+            return ResponseEntity.ok(loanService.batchCheckout(request.getUserId(), request.getBookIds()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/batch-return")
+    @PreAuthorize("hasAnyRole('ADMIN', 'LIBRARIAN')")
+    public ResponseEntity<?> batchReturn(@RequestBody List<Long> loanIds) {
+        try {
+            return ResponseEntity.ok(loanService.batchReturn(loanIds));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @PostMapping("/{id}/renew")
     @PreAuthorize("hasAnyRole('ADMIN', 'LIBRARIAN') or @loanService.isUserLoan(#id, authentication.name)")
     public ResponseEntity<?> renewLoan(
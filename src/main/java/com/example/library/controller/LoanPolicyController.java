@@ -2,7 +2,7 @@
 package com.example.library.controller;
 
 import com.example.library.model.LoanPolicy;
-import com.example.library.repository.LoanPolicyRepository;
+import com.example.library.service.LoanPolicyService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -15,19 +15,41 @@ import java.util.List;
 public class LoanPolicyController {
 
     @Autowired
-    private LoanPolicyRepository loanPolicyRepository;
+    private LoanPolicyService loanPolicyService;
 
     @GetMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'LIBRARIAN')")
     public List<LoanPolicy> getAllPolicies() {
-        return loanPolicyRepository.findAll();
+        return loanPolicyService.getAllPolicies();
     }
 
     @GetMapping("/{itemType}")
     @PreAuthorize("hasAnyRole('ADMIN', 'LIBRARIAN')")
     public ResponseEntity<LoanPolicy> getPolicyByType(@PathVariable String itemType) {
-        return loanPolicyRepository.findByItemType(itemType)
+        return loanPolicyService.getPolicyByItemType(itemType)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
-}
\ No newline at end of file
+
+    @PostMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> createPolicy(@RequestBody LoanPolicy policy) {
+        try {
+            return ResponseEntity.ok(loanPolicyService.createPolicy(policy));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PutMapping("/{itemType}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> updatePolicy(@PathVariable String itemType, @RequestBody LoanPolicy policy) {
+        try {
+            return loanPolicyService.updatePolicy(itemType, policy)
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+// StatsController.java
+package com.example.library.controller;
+
+import com.example.library.dto.CacheStatsDTO;
+import com.example.library.dto.GoogleBooksClientStatsDTO;
+import com.example.library.dto.LibraryStatsDTO;
+import com.example.library.dto.UserStatsDTO;
+import com.example.library.service.GoogleBooksService;
+import com.example.library.service.StatsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/stats")
+public class StatsController {
+
+    @Autowired
+    private StatsService statsService;
+
+    @Autowired
+    private GoogleBooksService googleBooksService;
+
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public LibraryStatsDTO getLibraryStats() {
+        return statsService.getLibraryStats();
+    }
+
+    @GetMapping("/caches")
+    @PreAuthorize("hasRole('ADMIN')")
+    public List<CacheStatsDTO> getCacheStats() {
+        return statsService.getCacheStats();
+    }
+
+    @GetMapping("/google-books")
+    @PreAuthorize("hasRole('ADMIN')")
+    public GoogleBooksClientStatsDTO getGoogleBooksStats() {
+        return googleBooksService.getStats();
+    }
+
+    @GetMapping("/user/{id}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'LIBRARIAN') or @userService.isUser(#id, authentication.name)")
+    public UserStatsDTO getUserStats(@PathVariable Long id) {
+        return statsService.getUserStats(id);
+    }
+}
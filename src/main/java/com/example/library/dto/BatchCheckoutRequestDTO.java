@@ -0,0 +1,12 @@
+// BatchCheckoutRequestDTO.java
+package com.example.library.dto;
+
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class BatchCheckoutRequestDTO {
+    private Long userId;
+    // One entry per physical item in the cart; a title may appear more than once
+    private List<String> bookIds;
+}
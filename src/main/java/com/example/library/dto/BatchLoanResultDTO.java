@@ -0,0 +1,23 @@
+// BatchLoanResultDTO.java
+package com.example.library.dto;
+
+import lombok.Data;
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+public class BatchLoanResultDTO {
+    private int total;
+    private int succeeded;
+    private int failed;
+    private List<ItemResult> results;
+
+    @Data
+    public static class ItemResult {
+        private String bookId;
+        private Long loanId;
+        private boolean success;
+        private LocalDate dueDate;
+        private String message;
+    }
+}
@@ -0,0 +1,28 @@
+// BookExportDTO.java
+package com.example.library.dto;
+
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class BookExportDTO {
+    private String id;
+    private String title;
+    private String publishedDate;
+    private String description;
+    private Double averageRating;
+    private Integer ratingsCount;
+    private String thumbnailUrl;
+    private Integer copiesOwned;
+    private Integer copiesAvailable;
+    private String policyType;
+    private List<String> authors;
+    private List<String> categories;
+    private List<Identifier> industryIdentifiers;
+
+    @Data
+    public static class Identifier {
+        private String type;
+        private String identifier;
+    }
+}
@@ -0,0 +1,14 @@
+// BookSearchResultDTO.java
+package com.example.library.dto;
+
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class BookSearchResultDTO {
+    private String query;
+    private long totalHits;
+    private int page;
+    private int size;
+    private List<BookDTO> items;
+}
@@ -0,0 +1,22 @@
+// BulkImportResultDTO.java
+package com.example.library.dto;
+
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class BulkImportResultDTO {
+    private int total;
+    private int imported;
+    private int failed;
+    private long elapsedMillis;
+    private double itemsPerSecond;
+    private List<ItemResult> results;
+
+    @Data
+    public static class ItemResult {
+        private String id;
+        private boolean success;
+        private String message;
+    }
+}
@@ -0,0 +1,14 @@
+// CacheStatsDTO.java
+package com.example.library.dto;
+
+import lombok.Data;
+
+@Data
+public class CacheStatsDTO {
+    private String name;
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private double hitRate;
+    private long evictionCount;
+}
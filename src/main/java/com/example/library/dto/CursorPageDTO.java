@@ -0,0 +1,12 @@
+// CursorPageDTO.java
+package com.example.library.dto;
+
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class CursorPageDTO<T> {
+    private List<T> items;
+    private int size;
+    private String nextCursor; // null when there are no more results
+}
@@ -0,0 +1,18 @@
+// DueDateReminderDTO.java
+package com.example.library.dto;
+
+import lombok.Data;
+import java.time.LocalDate;
+
+@Data
+public class DueDateReminderDTO {
+    private Long loanId;
+    private Long userId;
+    private String email;
+    private String userName;
+    private String bookId;
+    private String bookTitle;
+    private LocalDate dueDate;
+    // The LoanPolicy.reminderDays offset this reminder is for
+    private int daysBeforeDue;
+}
@@ -24,6 +24,7 @@ public class FineDTO {
     private String reason;
     private LocalDate dateIssued;
     private LocalDate datePaid;
+    private LocalDate accruedThrough;
     private Boolean isPaid;
     private Long daysOverdue;
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+// GoogleBooksClientStatsDTO.java
+package com.example.library.dto;
+
+import lombok.Data;
+
+@Data
+public class GoogleBooksClientStatsDTO {
+    private CacheStatsDTO cache;
+    private long upstreamCalls;
+    private long upstreamErrors;
+    private double averageUpstreamLatencyMs;
+    private long maxUpstreamLatencyMs;
+    private String circuitState;
+    private long circuitOpenedCount;
+    private long bulkheadRejections;
+    private long circuitRejections;
+    private long staleFallbacks;
+    private int inFlightRequests;
+}
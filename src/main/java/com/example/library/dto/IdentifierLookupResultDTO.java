@@ -0,0 +1,13 @@
+// IdentifierLookupResultDTO.java
+package com.example.library.dto;
+
+import lombok.Data;
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class IdentifierLookupResultDTO {
+    // Keyed by the identifier exactly as it was submitted
+    private Map<String, BookDTO> resolved;
+    private List<String> unresolved;
+}
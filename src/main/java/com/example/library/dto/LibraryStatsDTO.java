@@ -0,0 +1,20 @@
+// LibraryStatsDTO.java
+package com.example.library.dto;
+
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+public class LibraryStatsDTO {
+    private long totalTitles;
+    private long totalCopies;
+    private long availableCopies;
+    private long totalUsers;
+    private long activeLoans;
+    private long overdueLoans;
+    private long activeReservations;
+    private long unpaidFineCount;
+    private BigDecimal unpaidFineTotal;
+    private LocalDateTime generatedAt;
+}
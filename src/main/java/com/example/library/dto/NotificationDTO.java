@@ -0,0 +1,17 @@
+// NotificationDTO.java
+package com.example.library.dto;
+
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+public class NotificationDTO {
+    private Long id;
+    private String type;
+    private Long userId;
+    private String email;
+    private String message;
+    private LocalDateTime createdAt;
+    // 1 for the first delivery attempt
+    private int attempt;
+}
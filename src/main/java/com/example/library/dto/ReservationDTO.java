@@ -15,5 +15,6 @@ public class ReservationDTO {
     private LocalDateTime reservationDate;
     private LocalDateTime expirationDate;
     private Reservation.Status status;
+    private LocalDateTime pickupDeadline;
     private Integer queuePosition; // Optional: to show position in reservation queue
 }
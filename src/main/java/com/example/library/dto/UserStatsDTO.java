@@ -0,0 +1,15 @@
+// UserStatsDTO.java
+package com.example.library.dto;
+
+import lombok.Data;
+import java.math.BigDecimal;
+
+@Data
+public class UserStatsDTO {
+    private Long userId;
+    private long activeLoans;
+    private long overdueLoans;
+    private long reservations;
+    private long activeReservations;
+    private BigDecimal unpaidFineTotal;
+}
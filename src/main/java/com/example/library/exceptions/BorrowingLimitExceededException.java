@@ -0,0 +1,7 @@
+package com.example.library.exceptions;
+
+public class BorrowingLimitExceededException extends RuntimeException {
+    public BorrowingLimitExceededException(String message) {
+        super(message);
+    }
+}
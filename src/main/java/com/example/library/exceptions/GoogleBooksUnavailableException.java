@@ -0,0 +1,11 @@
+package com.example.library.exceptions;
+
+public class GoogleBooksUnavailableException extends RuntimeException {
+    public GoogleBooksUnavailableException(String message) {
+        super(message);
+    }
+
+    public GoogleBooksUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
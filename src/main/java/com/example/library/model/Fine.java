@@ -29,5 +29,10 @@ public class Fine {
     @Column(name = "date_paid")
     private LocalDate datePaid;
 
+    // Set on fines that grow while the loan is still out: the day through which
+    // overdue days have been charged (see FineAccrualService)
+    @Column(name = "accrued_through")
+    private LocalDate accruedThrough;
+
     // Lombok will generate getters, setters, toString, equals, and hashCode methods
 }
\ No newline at end of file
@@ -9,7 +9,7 @@ import lombok.ToString;
 
 @Data
 @Entity
-@Table(name = "industry_identifiers")
+@Table(name = "industry_identifiers", indexes = @Index(name = "idx_identifier_value", columnList = "identifier"))
 @EqualsAndHashCode(of = "id")
 @ToString(exclude = "book")
 public class IndustryIdentifier {
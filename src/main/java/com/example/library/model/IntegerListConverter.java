@@ -3,14 +3,25 @@ package com.example.library.model;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import jakarta.persistence.AttributeConverter;
 import jakarta.persistence.Converter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @Converter
 public class IntegerListConverter implements AttributeConverter<List<Integer>, String> {
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Every loan loads its policy, and the handful of distinct reminder-day columns would
+    // otherwise be parsed again for each row. Parsed lists are shared, so they are read-only.
+    private static final Cache<String, List<Integer>> parsedLists = Caffeine.newBuilder()
+            .maximumSize(256)
+            .build();
 
     @Override
     public String convertToDatabaseColumn(List<Integer> attribute) {
@@ -23,10 +34,23 @@ public class IntegerListConverter implements AttributeConverter<List<Integer>, S
 
     @Override
     public List<Integer> convertToEntityAttribute(String dbData) {
+        if (dbData == null) {
+            return null;
+        }
+        return parsedLists.get(dbData, IntegerListConverter::parse);
+    }
+
+    private static List<Integer> parse(String dbData) {
         try {
-            return objectMapper.readValue(dbData, new TypeReference<List<Integer>>() {});
+            JsonNode node = objectMapper.readTree(dbData);
+            // H2 stores a string parameter bound to a JSON column as a JSON string
+            if (node.isTextual()) {
+                node = objectMapper.readTree(node.asText());
+            }
+            List<Integer> parsed = objectMapper.convertValue(node, new TypeReference<List<Integer>>() {});
+            return parsed == null ? null : Collections.unmodifiableList(new ArrayList<>(parsed));
         } catch (JsonProcessingException e) {
             throw new RuntimeException("Error converting JSON to list", e);
         }
     }
-}
\ No newline at end of file
+}
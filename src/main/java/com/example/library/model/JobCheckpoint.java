@@ -0,0 +1,30 @@
+// JobCheckpoint.java
+package com.example.library.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Progress of a chunked batch job, saved in the same transaction as each chunk so an
+// interrupted run resumes after the last committed chunk
+@Data
+@Entity
+@Table(name = "job_checkpoints")
+public class JobCheckpoint {
+    @Id
+    @Column(name = "job_name", length = 100)
+    private String jobName;
+
+    @Column(name = "run_date", nullable = false)
+    private LocalDate runDate;
+
+    @Column(name = "last_id", nullable = false)
+    private Long lastId;
+
+    @Column(nullable = false)
+    private boolean completed;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -9,7 +9,12 @@ import java.util.Set;
 
 @Data
 @Entity
-@Table(name = "loans")
+@Table(name = "loans", indexes = {
+        @Index(name = "idx_loan_book_return", columnList = "book_id, return_date"),
+        @Index(name = "idx_loan_due_date", columnList = "due_date"),
+        @Index(name = "idx_loan_return_due", columnList = "return_date, due_date"),
+        @Index(name = "idx_loan_user_return_due", columnList = "user_id, return_date, due_date")
+})
 public class Loan {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -55,15 +60,23 @@ public class Loan {
             return false;
         }
 
-        LocalDate effectiveDueDate = renewalDueDate != null ? renewalDueDate : dueDate;
-        return LocalDate.now().isBefore(effectiveDueDate.plusDays(loanPolicy.getGracePeriodDays()));
+        return LocalDate.now().isBefore(effectiveDueDate().plusDays(loanPolicy.getGracePeriodDays()));
     }
 
     public boolean isOverdue() {
         if (returnDate != null) {
             return false;
         }
-        LocalDate effectiveDueDate = renewalDueDate != null ? renewalDueDate : dueDate;
-        return LocalDate.now().isAfter(effectiveDueDate);
+        return LocalDate.now().isAfter(effectiveDueDate());
+    }
+
+    // isOverdue is false once the loan is returned; this answers for the returned loan
+    public boolean wasReturnedLate() {
+        return returnDate != null && returnDate.isAfter(effectiveDueDate());
+    }
+
+    // Not a bean getter, so it stays out of the entity mapping and JSON
+    public LocalDate effectiveDueDate() {
+        return renewalDueDate != null ? renewalDueDate : dueDate;
     }
 }
\ No newline at end of file
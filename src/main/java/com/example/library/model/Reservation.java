@@ -7,7 +7,12 @@ import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "reservations")
+@Table(name = "reservations", indexes = {
+        @Index(name = "idx_reservation_book_status", columnList = "book_id, status, reservation_date"),
+        @Index(name = "idx_reservation_status_expiration", columnList = "status, expiration_date")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_reservation_open", columnNames = {"book_id", "user_id", "active_marker"})
+})
 public class Reservation {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -30,7 +35,16 @@ public class Reservation {
     @Enumerated(EnumType.STRING)
     private Status status;
 
+    // Set while the reservation holds a copy on the hold shelf (ON_HOLD)
+    private LocalDateTime pickupDeadline;
+
+    // TRUE while the reservation is open (ACTIVE or ON_HOLD) and NULL afterwards. Unique with
+    // book and user, so a member has at most one open reservation per book; closed ones, being
+    // NULL, never collide. Every status update that closes a reservation clears it.
+    @Column(name = "active_marker")
+    private Boolean activeMarker;
+
     public enum Status {
-        ACTIVE, FULFILLED, EXPIRED
+        ACTIVE, ON_HOLD, FULFILLED, EXPIRED
     }
 }
\ No newline at end of file
@@ -4,8 +4,11 @@ package com.example.library.repository;
 import com.example.library.model.Author;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface AuthorRepository extends JpaRepository<Author, Long> {
     Optional<Author> findByName(String name);
+    List<Author> findByNameIn(Collection<String> names);
 }
\ No newline at end of file
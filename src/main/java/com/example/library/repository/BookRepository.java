@@ -2,8 +2,80 @@
 package com.example.library.repository;
 
 import com.example.library.model.Book;
+import com.example.library.model.Reservation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface BookRepository extends JpaRepository<Book, String> {
-    // You can add custom query methods here if needed
-}
\ No newline at end of file
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface BookRepository extends JpaRepository<Book, String>, JpaSpecificationExecutor<Book> {
+    interface InventoryCounts {
+        Integer getCopiesOwned();
+        Integer getCopiesAvailable();
+        Long getCopiesOnLoan();
+        Long getActiveReservations();
+    }
+
+    // Inventory figures in one round trip; the counts are served by the
+    // (book_id, return_date) and (book_id, status, ...) indexes
+    @Query("select b.copiesOwned as copiesOwned, b.copiesAvailable as copiesAvailable, " +
+            "(select count(l) from Loan l where l.book = b and l.returnDate is null) as copiesOnLoan, " +
+            "(select count(r) from Reservation r where r.book = b and r.status = :status) as activeReservations " +
+            "from Book b where b.id = :id")
+    Optional<InventoryCounts> findInventoryCounts(@Param("id") String id,
+                                                  @Param("status") Reservation.Status status);
+
+    // The subset of ids that already exist, without loading the books
+    @Query("select b.id from Book b where b.id in :ids")
+    List<String> findExistingIds(@Param("ids") Collection<String> ids);
+
+    // Inventory changes are conditional single-statement updates. The row lock taken by the
+    // UPDATE serializes concurrent writers on every node, and the WHERE clause rejects any
+    // change that would push copies_available out of range. Each returns the rows updated.
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Book b set b.copiesAvailable = b.copiesAvailable - 1 where b.id = :id and b.copiesAvailable > 0")
+    int decrementCopiesAvailable(@Param("id") String id);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Book b set b.copiesAvailable = b.copiesAvailable + 1 where b.id = :id and b.copiesAvailable < b.copiesOwned")
+    int incrementCopiesAvailable(@Param("id") String id);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Book b set b.copiesAvailable = b.copiesAvailable + (:copiesOwned - b.copiesOwned), " +
+            "b.copiesOwned = :copiesOwned " +
+            "where b.id = :id and b.copiesAvailable + (:copiesOwned - b.copiesOwned) >= 0")
+    int updateCopiesOwned(@Param("id") String id, @Param("copiesOwned") int copiesOwned);
+
+    // [title, copiesAvailable] of one book, without loading the entity
+    @Query("select b.title, b.copiesAvailable from Book b where b.id = :id")
+    List<Object[]> findTitleAndCopiesAvailableById(@Param("id") String id);
+
+    // [id, policyType] pairs
+    @Query("select b.id, b.policyType from Book b where b.id in :ids")
+    List<Object[]> findPolicyTypesByIdIn(@Param("ids") Collection<String> ids);
+
+    @Query("select coalesce(sum(b.copiesOwned), 0) from Book b")
+    long sumCopiesOwned();
+
+    // Association fetches are split per collection so that authors and categories
+    // are never joined together (which would multiply the rows returned)
+    @Query("select distinct b from Book b left join fetch b.authors")
+    List<Book> findAllWithAuthors();
+
+    @Query("select distinct b from Book b left join fetch b.categories")
+    List<Book> findAllWithCategories();
+
+    @Query("select distinct b from Book b left join fetch b.authors where b.id in :ids")
+    List<Book> findWithAuthorsByIdIn(@Param("ids") Collection<String> ids);
+
+    @Query("select distinct b from Book b left join fetch b.categories where b.id in :ids")
+    List<Book> findWithCategoriesByIdIn(@Param("ids") Collection<String> ids);
+
+    @Query("select distinct b from Book b left join fetch b.industryIdentifiers where b.id in :ids")
+    List<Book> findWithIdentifiersByIdIn(@Param("ids") Collection<String> ids);
+}
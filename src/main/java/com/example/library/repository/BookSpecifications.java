@@ -0,0 +1,56 @@
+// BookSpecifications.java
+package com.example.library.repository;
+
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.model.Category;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+
+public final class BookSpecifications {
+
+    private BookSpecifications() {
+    }
+
+    // Keyset predicate for ORDER BY title, id (served by idx_book_title, which
+    // InnoDB extends with the primary key)
+    public static Specification<Book> after(String title, String id) {
+        return (root, query, cb) -> cb.or(
+                cb.greaterThan(root.get("title"), title),
+                cb.and(
+                        cb.equal(root.get("title"), title),
+                        cb.greaterThan(root.get("id"), id)));
+    }
+
+    public static Specification<Book> hasCategory(String categoryName) {
+        return (root, query, cb) -> {
+            Subquery<Long> subquery = query.subquery(Long.class);
+            Root<Book> book = subquery.correlate(root);
+            Join<Book, Category> category = book.join("categories");
+            subquery.select(category.get("id"))
+                    .where(cb.equal(category.get("name"), categoryName));
+            return cb.exists(subquery);
+        };
+    }
+
+    public static Specification<Book> hasAuthor(String authorName) {
+        return (root, query, cb) -> {
+            Subquery<Long> subquery = query.subquery(Long.class);
+            Root<Book> book = subquery.correlate(root);
+            Join<Book, Author> author = book.join("authors");
+            subquery.select(author.get("id"))
+                    .where(cb.equal(author.get("name"), authorName));
+            return cb.exists(subquery);
+        };
+    }
+
+    public static Specification<Book> hasPolicyType(String policyType) {
+        return (root, query, cb) -> cb.equal(root.get("policyType"), policyType);
+    }
+
+    public static Specification<Book> isAvailable() {
+        return (root, query, cb) -> cb.greaterThan(root.get("copiesAvailable"), 0);
+    }
+}
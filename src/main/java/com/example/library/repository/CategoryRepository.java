@@ -4,8 +4,11 @@ package com.example.library.repository;
 import com.example.library.model.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface CategoryRepository extends JpaRepository<Category, Long> {
     Optional<Category> findByName(String name);
+    List<Category> findByNameIn(Collection<String> names);
 }
\ No newline at end of file
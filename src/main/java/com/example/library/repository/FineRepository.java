@@ -2,10 +2,23 @@ package com.example.library.repository;
 
 import com.example.library.model.Fine;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
 public interface FineRepository extends JpaRepository<Fine, Long> {
     List<Fine> findByLoanId(Long loanId);
     List<Fine> findByLoanUserId(Long userId);
+    Optional<Fine> findFirstByLoanIdAndAccruedThroughIsNotNullAndDatePaidIsNullOrderByAccruedThroughDesc(Long loanId);
+
+    // How far the loan has been charged by accruing fines, paid or not
+    @Query("select max(f.accruedThrough) from Fine f where f.loan.id = :loanId")
+    Optional<LocalDate> findLatestAccruedThroughByLoanId(@Param("loanId") Long loanId);
+
+    @Query("select coalesce(sum(f.amount), 0) from Fine f where f.loan.user.id = :userId and f.datePaid is null")
+    BigDecimal sumUnpaidAmountByUserId(@Param("userId") Long userId);
 }
\ No newline at end of file
@@ -3,9 +3,11 @@ package com.example.library.repository;
 import com.example.library.model.IndustryIdentifier;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface IndustryIdentifierRepository extends JpaRepository<IndustryIdentifier, Long> {
     List<IndustryIdentifier> findByBookId(String bookId);
     List<IndustryIdentifier> findByType(String type);
+    List<IndustryIdentifier> findByIdentifierIn(Collection<String> identifiers);
 }
\ No newline at end of file
@@ -0,0 +1,8 @@
+// JobCheckpointRepository.java
+package com.example.library.repository;
+
+import com.example.library.model.JobCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface JobCheckpointRepository extends JpaRepository<JobCheckpoint, String> {
+}
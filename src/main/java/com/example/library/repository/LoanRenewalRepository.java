@@ -3,8 +3,16 @@ package com.example.library.repository;
 
 import com.example.library.model.LoanRenewal;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
 import java.util.List;
 
 public interface LoanRenewalRepository extends JpaRepository<LoanRenewal, Long> {
     List<LoanRenewal> findByLoanIdOrderByRenewalDateDesc(Long loanId);
+
+    // Renewal history for a batch of loans, with the renewing users joined in
+    @Query("select r from LoanRenewal r join fetch r.createdBy where r.loan.id in :loanIds order by r.renewalDate desc")
+    List<LoanRenewal> findWithCreatedByByLoanIdIn(@Param("loanIds") Collection<Long> loanIds);
 }
\ No newline at end of file
@@ -2,14 +2,43 @@
 package com.example.library.repository;
 
 import com.example.library.model.Loan;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
-public interface LoanRepository extends JpaRepository<Loan, Long> {
+public interface LoanRepository extends JpaRepository<Loan, Long>, JpaSpecificationExecutor<Loan> {
+    // List queries join the eager to-one associations instead of loading each one separately
+    @Override
+    @EntityGraph(attributePaths = {"book", "user", "loanPolicy"})
+    List<Loan> findAll();
+
+    @EntityGraph(attributePaths = {"book", "user", "loanPolicy"})
     List<Loan> findByUserId(Long userId);
+
+    @EntityGraph(attributePaths = {"book", "user", "loanPolicy"})
     List<Loan> findByBookId(String bookId);
-    List<Loan> findByBookIdAndReturnDateIsNull(String bookId);
+
+    @EntityGraph(attributePaths = {"book", "user", "loanPolicy"})
+    List<Loan> findByIdIn(Collection<Long> ids);
 
     int countByUserIdAndReturnDateIsNull(Long userId);
     int countByReturnDateIsNull();
+    long countByBookIdAndReturnDateIsNull(String bookId);
+
+    // Active loans of one user grouped by loan policy item type (null when the loan has no policy)
+    @Query("select p.itemType, count(l) from Loan l left join l.loanPolicy p " +
+            "where l.user.id = :userId and l.returnDate is null group by p.itemType")
+    List<Object[]> countActiveLoansByPolicyType(@Param("userId") Long userId);
+
+    // Returns 0 when the loan was already returned, so concurrent returns release the copy only once
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Loan l set l.returnDate = :returnDate where l.id = :id and l.returnDate is null")
+    int markReturned(@Param("id") Long id, @Param("returnDate") LocalDate returnDate);
 }
\ No newline at end of file
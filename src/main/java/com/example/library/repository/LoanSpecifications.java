@@ -0,0 +1,65 @@
+// LoanSpecifications.java
+package com.example.library.repository;
+
+import com.example.library.model.Loan;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+
+public final class LoanSpecifications {
+
+    private LoanSpecifications() {
+    }
+
+    // Keyset predicate for ORDER BY due_date, id
+    public static Specification<Loan> after(LocalDate dueDate, Long id) {
+        return (root, query, cb) -> cb.or(
+                cb.greaterThan(root.get("dueDate"), dueDate),
+                cb.and(
+                        cb.equal(root.get("dueDate"), dueDate),
+                        cb.greaterThan(root.get("id"), id)));
+    }
+
+    public static Specification<Loan> isActive() {
+        return (root, query, cb) -> cb.isNull(root.get("returnDate"));
+    }
+
+    public static Specification<Loan> isReturned() {
+        return (root, query, cb) -> cb.isNotNull(root.get("returnDate"));
+    }
+
+    // Unreturned loans whose effective due date (renewal due date when renewed) has passed
+    public static Specification<Loan> isOverdue(LocalDate today) {
+        return isActive().and(dueBefore(today));
+    }
+
+    // The effective due date bounds are spelled out as two branches rather than COALESCE,
+    // so due_date and renewal_due_date can each be served by their own index
+    public static Specification<Loan> dueBefore(LocalDate date) {
+        return (root, query, cb) -> cb.or(
+                cb.and(
+                        cb.isNull(root.get("renewalDueDate")),
+                        cb.lessThan(root.get("dueDate"), date)),
+                cb.lessThan(root.get("renewalDueDate"), date));
+    }
+
+    public static Specification<Loan> dueAfter(LocalDate date) {
+        return (root, query, cb) -> cb.or(
+                cb.and(
+                        cb.isNull(root.get("renewalDueDate")),
+                        cb.greaterThan(root.get("dueDate"), date)),
+                cb.greaterThan(root.get("renewalDueDate"), date));
+    }
+
+    public static Specification<Loan> hasPolicyType(String policyType) {
+        return (root, query, cb) -> cb.equal(root.get("loanPolicy").get("itemType"), policyType);
+    }
+
+    public static Specification<Loan> hasBook(String bookId) {
+        return (root, query, cb) -> cb.equal(root.get("book").get("id"), bookId);
+    }
+
+    public static Specification<Loan> hasUser(Long userId) {
+        return (root, query, cb) -> cb.equal(root.get("user").get("id"), userId);
+    }
+}
@@ -3,17 +3,36 @@
 package com.example.library.repository;
 
 import com.example.library.model.Reservation;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 
 public interface ReservationRepository extends JpaRepository<Reservation, Long> {
+    @Override
+    @EntityGraph(attributePaths = {"book", "user"})
+    List<Reservation> findAll();
+
+    @EntityGraph(attributePaths = {"book", "user"})
     List<Reservation> findByUserId(Long userId);
+
+    @EntityGraph(attributePaths = {"book", "user"})
     List<Reservation> findByBookId(String bookId);
-    Optional<Reservation> findByBookIdAndUserIdAndStatus(String bookId, Long userId, Reservation.Status status);
-    List<Reservation> findByBookIdAndStatus(String bookId, Reservation.Status status);
-    List<Reservation> findByBookIdAndStatusOrderByReservationDateAsc(String bookId, Reservation.Status status);
-    long countByBookIdAndStatus(String bookId, Reservation.Status status);
+
+    long countByBookIdAndStatusAndExpirationDateAfter(String bookId, Reservation.Status status, LocalDateTime now);
 
     int countByUserId(Long id);
+    int countByUserIdAndStatus(Long userId, Reservation.Status status);
+
+    // Queue position (1-based) of each given active reservation among the active reservations
+    // of its book, computed in one pass over idx_reservation_book_status. Rows are [id, position].
+    @Query(value = "SELECT q.id, q.queue_position FROM (" +
+            "SELECT r.id, ROW_NUMBER() OVER (PARTITION BY r.book_id ORDER BY r.reservation_date, r.id) AS queue_position " +
+            "FROM reservations r WHERE r.status = 'ACTIVE' AND r.book_id IN (:bookIds)) q " +
+            "WHERE q.id IN (:ids)", nativeQuery = true)
+    List<Object[]> findQueuePositions(@Param("bookIds") Collection<String> bookIds, @Param("ids") Collection<Long> ids);
 }
\ No newline at end of file
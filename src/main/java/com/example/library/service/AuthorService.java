@@ -21,6 +21,9 @@ public class AuthorService {
     @Autowired
     private BookRepository bookRepository;
 
+    @Autowired
+    private NameResolutionCache nameResolutionCache;
+
     public List<Author> getAllAuthors() {
         return authorRepository.findAll();
     }
@@ -44,11 +47,15 @@ public class AuthorService {
     public AuthorDTO saveAuthorDTO(AuthorDTO authorDTO) {
         Author author = convertToEntity(authorDTO);
         Author savedAuthor = authorRepository.save(author);
+        // The author may have been renamed, so drop whatever name pointed at this id
+        nameResolutionCache.authors().invalidateAfterCommit(savedAuthor.getId(), savedAuthor.getName());
         return convertToDTO(savedAuthor);
     }
 
+    @Transactional
     public void deleteAuthor(Long id) {
         authorRepository.deleteById(id);
+        nameResolutionCache.authors().invalidateAfterCommit(id, null);
     }
 
     private AuthorDTO convertToDTO(Author author) {
@@ -0,0 +1,193 @@
+// BookExportService.java
+package com.example.library.service;
+
+import com.example.library.dto.BookExportDTO;
+import com.example.library.model.*;
+import com.example.library.repository.BookRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+@Service
+public class BookExportService {
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format fromString(String value) {
+            try {
+                return Format.valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + value);
+            }
+        }
+    }
+
+    private static final String CSV_HEADER = "id,title,publishedDate,description,averageRating,ratingsCount," +
+            "thumbnailUrl,copiesOwned,copiesAvailable,policyType,authors,categories,industryIdentifiers";
+    private static final String CSV_LIST_SEPARATOR = "|";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${library.export.chunk-size:500}")
+    private int chunkSize;
+
+    // Walks the catalog in id-ordered keyset chunks. Each chunk loads its books with one query and
+    // each collection with one more, so authors, categories and identifiers are never joined
+    // together (which would multiply the rows returned). The persistence context is cleared after
+    // every chunk, so memory use does not grow with the catalog.
+    @Transactional(readOnly = true)
+    public void exportCatalog(Format format, OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        if (format == Format.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        String lastId = null;
+        while (true) {
+            List<Book> books = loadChunk(lastId);
+            if (books.isEmpty()) {
+                break;
+            }
+            for (Book book : books) {
+                BookExportDTO dto = convertToExportDTO(book);
+                if (format == Format.CSV) {
+                    writeCsvRow(writer, dto);
+                } else {
+                    writer.write(objectMapper.writeValueAsString(dto));
+                    writer.write('\n');
+                }
+            }
+            writer.flush();
+            lastId = books.get(books.size() - 1).getId();
+            entityManager.clear();
+        }
+        writer.flush();
+    }
+
+    private List<Book> loadChunk(String afterId) {
+        TypedQuery<Book> query = afterId == null
+                ? entityManager.createQuery("select b from Book b order by b.id", Book.class)
+                : entityManager.createQuery("select b from Book b where b.id > :afterId order by b.id", Book.class)
+                        .setParameter("afterId", afterId);
+        List<Book> books = query
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .setMaxResults(chunkSize)
+                .getResultList();
+        if (books.isEmpty()) {
+            return books;
+        }
+
+        // Initializes the collections of the books already in the persistence context
+        List<String> ids = books.stream().map(Book::getId).collect(Collectors.toList());
+        bookRepository.findWithAuthorsByIdIn(ids);
+        bookRepository.findWithCategoriesByIdIn(ids);
+        bookRepository.findWithIdentifiersByIdIn(ids);
+        return books;
+    }
+
+    private BookExportDTO convertToExportDTO(Book book) {
+        BookExportDTO dto = new BookExportDTO();
+        dto.setId(book.getId());
+        dto.setTitle(book.getTitle());
+        dto.setPublishedDate(book.getPublishedDate());
+        dto.setDescription(book.getDescription());
+        dto.setAverageRating(book.getAverageRating());
+        dto.setRatingsCount(book.getRatingsCount());
+        dto.setThumbnailUrl(book.getThumbnailUrl());
+        dto.setCopiesOwned(book.getCopiesOwned());
+        dto.setCopiesAvailable(book.getCopiesAvailable());
+        dto.setPolicyType(book.getPolicyType());
+        dto.setAuthors(book.getAuthors().stream()
+                .map(Author::getName)
+                .sorted()
+                .collect(Collectors.toList()));
+        dto.setCategories(book.getCategories().stream()
+                .map(Category::getName)
+                .sorted()
+                .collect(Collectors.toList()));
+        dto.setIndustryIdentifiers(book.getIndustryIdentifiers().stream()
+                .map(identifier -> {
+                    BookExportDTO.Identifier exported = new BookExportDTO.Identifier();
+                    exported.setType(identifier.getType());
+                    exported.setIdentifier(identifier.getIdentifier());
+                    return exported;
+                })
+                .collect(Collectors.toList()));
+        return dto;
+    }
+
+    private void writeCsvRow(Writer writer, BookExportDTO dto) throws IOException {
+        List<String> identifiers = dto.getIndustryIdentifiers().stream()
+                .map(identifier -> identifier.getType() + ":" + identifier.getIdentifier())
+                .collect(Collectors.toList());
+
+        writer.write(String.join(",",
+                csv(dto.getId()),
+                csv(dto.getTitle()),
+                csv(dto.getPublishedDate()),
+                csv(dto.getDescription()),
+                csv(dto.getAverageRating()),
+                csv(dto.getRatingsCount()),
+                csv(dto.getThumbnailUrl()),
+                csv(dto.getCopiesOwned()),
+                csv(dto.getCopiesAvailable()),
+                csv(dto.getPolicyType()),
+                csv(String.join(CSV_LIST_SEPARATOR, dto.getAuthors())),
+                csv(String.join(CSV_LIST_SEPARATOR, dto.getCategories())),
+                csv(String.join(CSV_LIST_SEPARATOR, identifiers))));
+        writer.write('\n');
+    }
+
+    private String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.contains(",") || text.contains("\"") || text.contains("\n") || text.contains("\r")) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
+}
@@ -0,0 +1,327 @@
+// BookImportService.java
+package com.example.library.service;
+
+import com.example.library.dto.BookDTO;
+import com.example.library.dto.BulkImportResultDTO;
+import com.example.library.dto.GoogleBooksDTO;
+import com.example.library.model.Author;
+import com.example.library.model.Category;
+import com.example.library.repository.AuthorRepository;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.CategoryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Bulk import of Google Books volumes. Each chunk resolves all author and category
+// names with one IN query per table and writes books, join rows and identifiers
+// with JDBC batches (enable rewriteBatchedStatements on the MySQL URL to get
+// multi-row inserts on the wire).
+@Service
+public class BookImportService {
+    private static final Logger logger = LoggerFactory.getLogger(BookImportService.class);
+
+    private static final String INSERT_BOOK_SQL =
+            "INSERT INTO books (id, title, published_date, description, average_rating, ratings_count, " +
+            "thumbnail_url, copies_owned, copies_available, policy_type) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_AUTHOR_SQL = "INSERT INTO authors (name) VALUES (?)";
+    private static final String INSERT_CATEGORY_SQL = "INSERT INTO categories (name) VALUES (?)";
+    private static final String INSERT_BOOK_AUTHOR_SQL = "INSERT INTO book_authors (book_id, author_id) VALUES (?, ?)";
+    private static final String INSERT_BOOK_CATEGORY_SQL = "INSERT INTO book_categories (book_id, category_id) VALUES (?, ?)";
+    private static final String INSERT_IDENTIFIER_SQL =
+            "INSERT INTO industry_identifiers (book_id, type, identifier) VALUES (?, ?, ?)";
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+
+    @Autowired
+    private IdentifierIndex identifierIndex;
+
+    @Autowired
+    private NameResolutionCache nameResolutionCache;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${library.import.chunk-size:500}")
+    private int chunkSize;
+
+    public BulkImportResultDTO importGoogleBooks(List<GoogleBooksDTO> volumes) {
+        long start = System.currentTimeMillis();
+        Map<GoogleBooksDTO, BulkImportResultDTO.ItemResult> results = new IdentityHashMap<>();
+        List<GoogleBooksDTO> valid = new ArrayList<>();
+        Set<String> seenIds = new HashSet<>();
+
+        for (GoogleBooksDTO volume : volumes) {
+            String error = validate(volume);
+            if (error == null && !seenIds.add(volume.getId())) {
+                error = "Duplicate id in request";
+            }
+            if (error != null) {
+                results.put(volume, failure(volume, error));
+            } else {
+                valid.add(volume);
+            }
+        }
+
+        for (int from = 0; from < valid.size(); from += chunkSize) {
+            List<GoogleBooksDTO> chunk = valid.subList(from, Math.min(from + chunkSize, valid.size()));
+            try {
+                results.putAll(importChunk(chunk));
+            } catch (RuntimeException e) {
+                // Retry one by one so a single bad volume does not fail its whole chunk
+                logger.warn("Bulk import chunk of {} failed, retrying items individually: {}",
+                        chunk.size(), e.getMessage());
+                for (GoogleBooksDTO volume : chunk) {
+                    try {
+                        results.putAll(importChunk(List.of(volume)));
+                    } catch (RuntimeException itemError) {
+                        results.put(volume, failure(volume, rootMessage(itemError)));
+                    }
+                }
+            }
+        }
+
+        BulkImportResultDTO result = new BulkImportResultDTO();
+        result.setResults(volumes.stream().map(results::get).collect(Collectors.toList()));
+        result.setTotal(volumes.size());
+        result.setImported((int) result.getResults().stream().filter(BulkImportResultDTO.ItemResult::isSuccess).count());
+        result.setFailed(result.getTotal() - result.getImported());
+        result.setElapsedMillis(System.currentTimeMillis() - start);
+        result.setItemsPerSecond(result.getElapsedMillis() == 0
+                ? result.getImported()
+                : result.getImported() * 1000.0 / result.getElapsedMillis());
+
+        logger.info("Bulk import finished: {} imported, {} failed in {} ms ({} items/s)",
+                result.getImported(), result.getFailed(), result.getElapsedMillis(),
+                String.format("%.1f", result.getItemsPerSecond()));
+        return result;
+    }
+
+    private Map<GoogleBooksDTO, BulkImportResultDTO.ItemResult> importChunk(List<GoogleBooksDTO> chunk) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        return transactionTemplate.execute(status -> {
+            Map<GoogleBooksDTO, BulkImportResultDTO.ItemResult> results = new IdentityHashMap<>();
+
+            Set<String> existingIds = new HashSet<>(bookRepository.findExistingIds(
+                    chunk.stream().map(GoogleBooksDTO::getId).collect(Collectors.toList())));
+            List<GoogleBooksDTO> toInsert = new ArrayList<>();
+            for (GoogleBooksDTO volume : chunk) {
+                if (existingIds.contains(volume.getId())) {
+                    results.put(volume, failure(volume, "Book already exists in the database"));
+                } else {
+                    toInsert.add(volume);
+                }
+            }
+            if (toInsert.isEmpty()) {
+                return results;
+            }
+
+            Map<String, Long> authorIds = resolveNames(
+                    namesOf(toInsert, GoogleBooksDTO.VolumeInfo::getAuthors),
+                    nameResolutionCache.authors(),
+                    ids -> authorRepository.findAllById(ids).stream()
+                            .collect(Collectors.toMap(Author::getId, Author::getName)),
+                    names -> authorRepository.findByNameIn(names).stream()
+                            .collect(Collectors.toMap(Author::getName, Author::getId, (a, b) -> a)),
+                    INSERT_AUTHOR_SQL);
+            Map<String, Long> categoryIds = resolveNames(
+                    namesOf(toInsert, GoogleBooksDTO.VolumeInfo::getCategories),
+                    nameResolutionCache.categories(),
+                    ids -> categoryRepository.findAllById(ids).stream()
+                            .collect(Collectors.toMap(Category::getId, Category::getName)),
+                    names -> categoryRepository.findByNameIn(names).stream()
+                            .collect(Collectors.toMap(Category::getName, Category::getId, (a, b) -> a)),
+                    INSERT_CATEGORY_SQL);
+
+            List<Object[]> books = new ArrayList<>();
+            List<Object[]> bookAuthors = new ArrayList<>();
+            List<Object[]> bookCategories = new ArrayList<>();
+            List<Object[]> identifiers = new ArrayList<>();
+            for (GoogleBooksDTO volume : toInsert) {
+                GoogleBooksDTO.VolumeInfo info = volume.getVolumeInfo();
+                books.add(new Object[]{
+                        volume.getId(), info.getTitle(), info.getPublishedDate(), info.getDescription(),
+                        info.getAverageRating(), info.getRatingsCount(),
+                        info.getImageLinks() != null ? info.getImageLinks().getThumbnail() : null,
+                        1, 1, "BOOK"});
+                for (Long authorId : idsFor(info.getAuthors(), authorIds)) {
+                    bookAuthors.add(new Object[]{volume.getId(), authorId});
+                }
+                for (Long categoryId : idsFor(info.getCategories(), categoryIds)) {
+                    bookCategories.add(new Object[]{volume.getId(), categoryId});
+                }
+                if (info.getIndustryIdentifiers() != null) {
+                    for (GoogleBooksDTO.IndustryIdentifier identifier : info.getIndustryIdentifiers()) {
+                        identifiers.add(new Object[]{volume.getId(), identifier.getType(), identifier.getIdentifier()});
+                        identifierIndex.putAfterCommit(identifier.getIdentifier(), volume.getId());
+                    }
+                }
+            }
+
+            jdbcTemplate.batchUpdate(INSERT_BOOK_SQL, books);
+            jdbcTemplate.batchUpdate(INSERT_BOOK_AUTHOR_SQL, bookAuthors);
+            jdbcTemplate.batchUpdate(INSERT_BOOK_CATEGORY_SQL, bookCategories);
+            jdbcTemplate.batchUpdate(INSERT_IDENTIFIER_SQL, identifiers);
+
+            for (GoogleBooksDTO volume : toInsert) {
+                bookSearchIndex.indexAfterCommit(convertToDTO(volume));
+                BulkImportResultDTO.ItemResult itemResult = new BulkImportResultDTO.ItemResult();
+                itemResult.setId(volume.getId());
+                itemResult.setSuccess(true);
+                results.put(volume, itemResult);
+            }
+            return results;
+        });
+    }
+
+    // Maps each name (keyed case-insensitively, like the MySQL collation) to its id. Cached ids
+    // are checked with one IN query by id, and dropped when their row is gone or renamed. The
+    // other names are looked up with one IN query; the ones that still do not exist are
+    // inserted in one batch and their ids read back with a second IN query.
+    private Map<String, Long> resolveNames(Set<String> names,
+                                           NameResolutionCache.NameCache cache,
+                                           Function<Collection<Long>, Map<Long, String>> namesById,
+                                           Function<Collection<String>, Map<String, Long>> lookup,
+                                           String insertSql) {
+        Map<String, Long> ids = new HashMap<>();
+        if (names.isEmpty()) {
+            return ids;
+        }
+        Map<String, Long> cached = cache.getAll(names);
+        if (!cached.isEmpty()) {
+            Map<Long, String> current = namesById.apply(cached.values());
+            cached.forEach((key, id) -> {
+                String currentName = current.get(id);
+                if (currentName != null && key(currentName).equals(key)) {
+                    ids.put(key, id);
+                } else {
+                    cache.invalidateName(key);
+                }
+            });
+        }
+
+        List<String> uncached = names.stream()
+                .filter(name -> !ids.containsKey(key(name)))
+                .collect(Collectors.toList());
+        if (uncached.isEmpty()) {
+            return ids;
+        }
+        lookup.apply(uncached).forEach((name, id) -> {
+            ids.put(key(name), id);
+            cache.put(name, id);
+        });
+
+        Map<String, String> missing = new LinkedHashMap<>();
+        for (String name : uncached) {
+            if (!ids.containsKey(key(name))) {
+                missing.putIfAbsent(key(name), name);
+            }
+        }
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate(insertSql, missing.values().stream()
+                    .map(name -> new Object[]{name})
+                    .collect(Collectors.toList()));
+            lookup.apply(missing.values()).forEach((name, id) -> {
+                ids.put(key(name), id);
+                cache.putAfterCommit(name, id);
+            });
+        }
+        return ids;
+    }
+
+    private Set<String> namesOf(List<GoogleBooksDTO> volumes,
+                                Function<GoogleBooksDTO.VolumeInfo, List<String>> extractor) {
+        Set<String> names = new LinkedHashSet<>();
+        for (GoogleBooksDTO volume : volumes) {
+            List<String> values = extractor.apply(volume.getVolumeInfo());
+            if (values != null) {
+                values.stream().filter(name -> name != null && !name.isBlank()).forEach(names::add);
+            }
+        }
+        return names;
+    }
+
+    private Set<Long> idsFor(List<String> names, Map<String, Long> ids) {
+        if (names == null) {
+            return Set.of();
+        }
+        return names.stream()
+                .filter(name -> name != null && !name.isBlank())
+                .map(name -> ids.get(key(name)))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private String key(String name) {
+        return NameResolutionCache.key(name);
+    }
+
+    private String validate(GoogleBooksDTO volume) {
+        if (volume == null) {
+            return "Missing volume";
+        }
+        if (volume.getId() == null || volume.getId().isBlank()) {
+            return "Missing id";
+        }
+        if (volume.getVolumeInfo() == null || volume.getVolumeInfo().getTitle() == null
+                || volume.getVolumeInfo().getTitle().isBlank()) {
+            return "Missing title";
+        }
+        return null;
+    }
+
+    private BookDTO convertToDTO(GoogleBooksDTO volume) {
+        GoogleBooksDTO.VolumeInfo info = volume.getVolumeInfo();
+        BookDTO dto = new BookDTO();
+        dto.setId(volume.getId());
+        dto.setTitle(info.getTitle());
+        dto.setPublishedDate(info.getPublishedDate());
+        dto.setDescription(info.getDescription());
+        dto.setAverageRating(info.getAverageRating());
+        dto.setRatingsCount(info.getRatingsCount());
+        dto.setThumbnailUrl(info.getImageLinks() != null ? info.getImageLinks().getThumbnail() : null);
+        dto.setCopiesOwned(1);
+        dto.setCopiesAvailable(1);
+        dto.setAuthors(info.getAuthors() != null ? new HashSet<>(info.getAuthors()) : new HashSet<>());
+        dto.setCategories(info.getCategories() != null ? new HashSet<>(info.getCategories()) : new HashSet<>());
+        return dto;
+    }
+
+    private BulkImportResultDTO.ItemResult failure(GoogleBooksDTO volume, String message) {
+        BulkImportResultDTO.ItemResult itemResult = new BulkImportResultDTO.ItemResult();
+        itemResult.setId(volume != null ? volume.getId() : null);
+        itemResult.setSuccess(false);
+        itemResult.setMessage(message);
+        return itemResult;
+    }
+
+    private String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null) {
+            root = root.getCause();
+        }
+        return root.getMessage();
+    }
+}
@@ -0,0 +1,333 @@
+// BookSearchIndex.java
+package com.example.library.service;
+
+import com.example.library.dto.BookDTO;
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.model.Category;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BookSpecifications;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+// In-memory inverted index over the local catalog with BM25 ranking.
+// Title, author and category terms are weighted above description terms.
+// A rebuild loads the catalog into a new index while searches keep using the current one,
+// then swaps it in whole; books indexed meanwhile are replayed onto it first, so a change
+// committed during the rebuild is never overwritten by the older row the rebuild read.
+@Component
+public class BookSearchIndex {
+    private static final Logger logger = LoggerFactory.getLogger(BookSearchIndex.class);
+
+    private static final float TITLE_WEIGHT = 3.0f;
+    private static final float AUTHOR_WEIGHT = 2.0f;
+    private static final float CATEGORY_WEIGHT = 2.0f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+
+    // BM25 parameters
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Prefix expansions score below exact term matches and are capped per query term
+    private static final double PREFIX_MATCH_FACTOR = 0.7;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private static final int REBUILD_CHUNK_SIZE = 1000;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "is",
+            "it", "of", "on", "or", "the", "to", "with");
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private Index current = new Index();
+    // Books indexed while a rebuild runs, or null outside one; guarded by lock
+    private List<Document> indexedDuringRebuild;
+
+    public record SearchHit(String bookId, double score) {
+    }
+
+    public record SearchResult(long totalHits, List<SearchHit> hits) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+
+        lock.writeLock().lock();
+        try {
+            indexedDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Index rebuilt = new Index();
+        try {
+            // Walk the catalog in keyset-ordered chunks so the whole table is never in memory at once
+            String[] lastKey = null;
+            while (true) {
+                String[] after = lastKey;
+                List<IndexedBook> chunk = transactionTemplate.execute(status -> loadChunk(after));
+                if (chunk == null || chunk.isEmpty()) {
+                    break;
+                }
+                for (IndexedBook book : chunk) {
+                    rebuilt.put(document(book));
+                }
+                IndexedBook last = chunk.get(chunk.size() - 1);
+                lastKey = new String[]{last.title(), last.id()};
+            }
+        } catch (RuntimeException e) {
+            // Keep serving the current index
+            lock.writeLock().lock();
+            try {
+                indexedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            indexedDuringRebuild.forEach(rebuilt::put);
+            indexedDuringRebuild = null;
+            current = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        logger.info("Search index built with {} books in {} ms", rebuilt.documents.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    // Indexes the book once the surrounding transaction commits, or immediately outside one
+    public void indexAfterCommit(BookDTO book) {
+        IndexedBook indexedBook = new IndexedBook(book.getId(), book.getTitle(), book.getDescription(),
+                book.getAuthors(), book.getCategories());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    index(indexedBook);
+                }
+            });
+        } else {
+            index(indexedBook);
+        }
+    }
+
+    public SearchResult search(String query, int page, int size) {
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty()) {
+            return new SearchResult(0, List.of());
+        }
+
+        Map<String, Double> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            Index index = current;
+            int documentCount = index.documents.size();
+            if (documentCount == 0) {
+                return new SearchResult(0, List.of());
+            }
+            double averageLength = index.totalDocumentLength / documentCount;
+
+            for (String queryTerm : new LinkedHashSet<>(queryTerms)) {
+                // Best match per book for this query term, whether exact or by prefix
+                Map<String, Double> termScores = new HashMap<>();
+                int expansions = 0;
+                for (Map.Entry<String, Map<String, Float>> entry :
+                        index.postings.subMap(queryTerm, true, queryTerm + Character.MAX_VALUE, false).entrySet()) {
+                    // The exact term sorts first, so every key after the cap is a further expansion
+                    boolean exact = entry.getKey().equals(queryTerm);
+                    if (!exact && ++expansions > MAX_PREFIX_EXPANSIONS) {
+                        break;
+                    }
+                    double factor = exact ? 1.0 : PREFIX_MATCH_FACTOR;
+                    Map<String, Float> termPostings = entry.getValue();
+                    double idf = idf(documentCount, termPostings.size());
+
+                    for (Map.Entry<String, Float> posting : termPostings.entrySet()) {
+                        double score = factor * idf * bm25TermFrequency(
+                                posting.getValue(), index.documentLengths.get(posting.getKey()), averageLength);
+                        termScores.merge(posting.getKey(), score, Math::max);
+                    }
+                }
+                termScores.forEach((bookId, score) -> scores.merge(bookId, score, Double::sum));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<SearchHit> ranked = scores.entrySet().stream()
+                .map(entry -> new SearchHit(entry.getKey(), entry.getValue()))
+                .sorted(Comparator.comparingDouble(SearchHit::score).reversed()
+                        .thenComparing(SearchHit::bookId))
+                .skip((long) page * size)
+                .limit(size)
+                .collect(Collectors.toList());
+        return new SearchResult(scores.size(), ranked);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return current.documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<IndexedBook> loadChunk(String[] after) {
+        Specification<Book> spec = after == null
+                ? Specification.where(null)
+                : BookSpecifications.after(after[0], after[1]);
+        List<Book> books = bookRepository.findBy(spec, query -> query
+                .sortBy(Sort.by("title", "id"))
+                .limit(REBUILD_CHUNK_SIZE)
+                .all());
+        if (books.isEmpty()) {
+            return List.of();
+        }
+
+        List<String> ids = books.stream().map(Book::getId).collect(Collectors.toList());
+        bookRepository.findWithAuthorsByIdIn(ids);
+        bookRepository.findWithCategoriesByIdIn(ids);
+
+        return books.stream()
+                .map(book -> new IndexedBook(book.getId(), book.getTitle(), book.getDescription(),
+                        book.getAuthors().stream().map(Author::getName).collect(Collectors.toSet()),
+                        book.getCategories().stream().map(Category::getName).collect(Collectors.toSet())))
+                .collect(Collectors.toList());
+    }
+
+    private void index(IndexedBook book) {
+        Document document = document(book);
+        lock.writeLock().lock();
+        try {
+            current.put(document);
+            if (indexedDuringRebuild != null) {
+                indexedDuringRebuild.add(document);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Document document(IndexedBook book) {
+        Map<String, Float> termFrequencies = new HashMap<>();
+        addTerms(termFrequencies, book.title(), TITLE_WEIGHT);
+        addTerms(termFrequencies, book.description(), DESCRIPTION_WEIGHT);
+        if (book.authors() != null) {
+            book.authors().forEach(author -> addTerms(termFrequencies, author, AUTHOR_WEIGHT));
+        }
+        if (book.categories() != null) {
+            book.categories().forEach(category -> addTerms(termFrequencies, category, CATEGORY_WEIGHT));
+        }
+        float length = (float) termFrequencies.values().stream().mapToDouble(Float::doubleValue).sum();
+        return new Document(book.id(), termFrequencies, length);
+    }
+
+    private void addTerms(Map<String, Float> termFrequencies, String text, float weight) {
+        for (String term : tokenize(text)) {
+            termFrequencies.merge(term, weight, Float::sum);
+        }
+    }
+
+    private double idf(int documentCount, int documentFrequency) {
+        return Math.log(1 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    private double bm25TermFrequency(float termFrequency, float documentLength, double averageLength) {
+        return termFrequency * (K1 + 1)
+                / (termFrequency + K1 * (1 - B + B * documentLength / averageLength));
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        // Fold accents so "Garcia" matches "García"
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+
+        List<String> tokens = new ArrayList<>();
+        for (String token : normalized.split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty() && !STOP_WORDS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private record IndexedBook(String id, String title, String description,
+                               Set<String> authors, Set<String> categories) {
+    }
+
+    private record Document(String bookId, Map<String, Float> termFrequencies, float length) {
+    }
+
+    private static final class Index {
+        // term -> (book id -> weighted term frequency); sorted so prefixes are a range scan
+        private final TreeMap<String, Map<String, Float>> postings = new TreeMap<>();
+        // book id -> (term -> weighted term frequency), used to remove a book's old postings
+        private final Map<String, Map<String, Float>> documents = new HashMap<>();
+        private final Map<String, Float> documentLengths = new HashMap<>();
+        private double totalDocumentLength;
+
+        void put(Document document) {
+            remove(document.bookId());
+            document.termFrequencies().forEach((term, frequency) ->
+                    postings.computeIfAbsent(term, key -> new HashMap<>()).put(document.bookId(), frequency));
+            documents.put(document.bookId(), document.termFrequencies());
+            documentLengths.put(document.bookId(), document.length());
+            totalDocumentLength += document.length();
+        }
+
+        private void remove(String bookId) {
+            Map<String, Float> previous = documents.remove(bookId);
+            if (previous == null) {
+                return;
+            }
+            for (String term : previous.keySet()) {
+                Map<String, Float> termPostings = postings.get(term);
+                if (termPostings != null) {
+                    termPostings.remove(bookId);
+                    if (termPostings.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+            Float length = documentLengths.remove(bookId);
+            if (length != null) {
+                totalDocumentLength -= length;
+            }
+        }
+    }
+}
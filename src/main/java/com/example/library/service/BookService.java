@@ -2,16 +2,21 @@
 package com.example.library.service;
 
 import com.example.library.dto.BookDTO;
+import com.example.library.dto.CursorPageDTO;
 import com.example.library.dto.BookInventoryStatusDTO;
+import com.example.library.dto.BookSearchResultDTO;
 import com.example.library.dto.GoogleBooksDTO;
+import com.example.library.dto.IdentifierLookupResultDTO;
 import com.example.library.exceptions.BookDeleteException;
 import com.example.library.exceptions.BookNotFoundException;
 import com.example.library.exceptions.InvalidInventoryUpdateException;
 import com.example.library.model.*;
 import com.example.library.repository.*;
-import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -34,15 +39,151 @@ public class BookService {
     private LoanRepository loanRepository;
 
     @Autowired
-    private ReservationRepository reservationRepository;
+    private BookSearchIndex bookSearchIndex;
+
+    @Autowired
+    private NameResolutionCache nameResolutionCache;
+
+    @Autowired
+    private IdentifierIndex identifierIndex;
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int MAX_IDENTIFIER_BATCH = 1000;
 
     // Basic CRUD Methods
+    @Transactional(readOnly = true)
     public List<BookDTO> getAllBooksDTO() {
-        return bookRepository.findAll().stream()
+        List<Book> books = bookRepository.findAllWithAuthors();
+        // Initializes the categories of the same (already managed) books
+        bookRepository.findAllWithCategories();
+        return books.stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
+    // Keyset-paginated listing ordered by title, then id
+    @Transactional(readOnly = true)
+    public CursorPageDTO<BookDTO> getBooksPage(String cursor, Integer size, String category,
+                                               String author, String policyType, boolean availableOnly) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+
+        Specification<Book> spec = Specification.where(null);
+        if (cursor != null && !cursor.isBlank()) {
+            String[] key = KeysetCursor.decode(cursor, 2);
+            spec = spec.and(BookSpecifications.after(key[0], key[1]));
+        }
+        if (category != null && !category.isBlank()) {
+            spec = spec.and(BookSpecifications.hasCategory(category));
+        }
+        if (author != null && !author.isBlank()) {
+            spec = spec.and(BookSpecifications.hasAuthor(author));
+        }
+        if (policyType != null && !policyType.isBlank()) {
+            spec = spec.and(BookSpecifications.hasPolicyType(policyType));
+        }
+        if (availableOnly) {
+            spec = spec.and(BookSpecifications.isAvailable());
+        }
+
+        // Fetch one extra row to find out whether another page follows
+        List<Book> books = bookRepository.findBy(spec, query -> query
+                .sortBy(Sort.by("title", "id"))
+                .limit(pageSize + 1)
+                .all());
+
+        boolean hasMore = books.size() > pageSize;
+        if (hasMore) {
+            books = books.subList(0, pageSize);
+        }
+
+        CursorPageDTO<BookDTO> page = new CursorPageDTO<>();
+        page.setItems(convertToDTOs(books));
+        page.setSize(page.getItems().size());
+        if (hasMore) {
+            Book last = books.get(books.size() - 1);
+            page.setNextCursor(KeysetCursor.encode(last.getTitle(), last.getId()));
+        }
+        return page;
+    }
+
+    // Full-text search over the local catalog, served from the in-memory index
+    @Transactional(readOnly = true)
+    public BookSearchResultDTO searchLocalBooks(String query, Integer page, Integer size) {
+        int pageNumber = page == null ? 0 : Math.max(page, 0);
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+
+        BookSearchIndex.SearchResult result = bookSearchIndex.search(query, pageNumber, pageSize);
+        List<String> ids = result.hits().stream()
+                .map(BookSearchIndex.SearchHit::bookId)
+                .collect(Collectors.toList());
+
+        BookSearchResultDTO dto = new BookSearchResultDTO();
+        dto.setQuery(query);
+        dto.setTotalHits(result.totalHits());
+        dto.setPage(pageNumber);
+        dto.setSize(ids.size());
+        dto.setItems(getBooksDTOByIds(ids));
+        return dto;
+    }
+
+    // Returns the books in the order of the given ids, skipping ids that no longer exist
+    @Transactional(readOnly = true)
+    public List<BookDTO> getBooksDTOByIds(List<String> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<String, Book> booksById = bookRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Book::getId, book -> book));
+        List<Book> ordered = ids.stream()
+                .map(booksById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return convertToDTOs(ordered);
+    }
+
+    // ISBN-10 and ISBN-13 spellings of the same number resolve to the same book
+    @Transactional(readOnly = true)
+    public Optional<BookDTO> getBookDTOByIdentifier(String identifier) {
+        String bookId = identifierIndex.resolve(List.of(identifier)).get(identifier);
+        if (bookId == null) {
+            return Optional.empty();
+        }
+        return getBooksDTOByIds(List.of(bookId)).stream().findFirst();
+    }
+
+    // Resolves a batch of scanned identifiers with one index pass and one book query
+    @Transactional(readOnly = true)
+    public IdentifierLookupResultDTO resolveIdentifiers(List<String> identifiers) {
+        if (identifiers.size() > MAX_IDENTIFIER_BATCH) {
+            throw new IllegalArgumentException("At most " + MAX_IDENTIFIER_BATCH + " identifiers can be resolved at once");
+        }
+        List<String> distinct = identifiers.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+        Map<String, String> bookIds = identifierIndex.resolve(distinct);
+        Map<String, BookDTO> booksById = getBooksDTOByIds(bookIds.values().stream().distinct().collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(BookDTO::getId, book -> book));
+
+        Map<String, BookDTO> resolved = new LinkedHashMap<>();
+        List<String> unresolved = new ArrayList<>();
+        for (String identifier : distinct) {
+            BookDTO book = booksById.get(bookIds.get(identifier));
+            if (book != null) {
+                resolved.put(identifier, book);
+            } else {
+                unresolved.add(identifier);
+            }
+        }
+
+        IdentifierLookupResultDTO result = new IdentifierLookupResultDTO();
+        result.setResolved(resolved);
+        result.setUnresolved(unresolved);
+        return result;
+    }
+
     public Optional<BookDTO> getBookDTOById(String id) {
         return bookRepository.findById(id)
                 .map(this::convertToDTO);
@@ -63,17 +204,7 @@ public class BookService {
 
             // Preserve or update authors
             if (bookDTO.getAuthors() != null) {
-                Set<Author> authors = new HashSet<>();
-                for (String authorName : bookDTO.getAuthors()) {
-                    Author author = authorRepository.findByName(authorName)
-                            .orElseGet(() -> {
-                                Author newAuthor = new Author();
-                                newAuthor.setName(authorName);
-                                return authorRepository.save(newAuthor);
-                            });
-                    authors.add(author);
-                }
-                book.setAuthors(authors);
+                book.setAuthors(resolveAuthors(bookDTO.getAuthors()));
             } else {
                 // Keep existing authors if none provided
                 book.setAuthors(existingBook.getAuthors());
@@ -81,17 +212,7 @@ public class BookService {
 
             // Preserve or update categories
             if (bookDTO.getCategories() != null) {
-                Set<Category> categories = new HashSet<>();
-                for (String categoryName : bookDTO.getCategories()) {
-                    Category category = categoryRepository.findByName(categoryName)
-                            .orElseGet(() -> {
-                                Category newCategory = new Category();
-                                newCategory.setName(categoryName);
-                                return categoryRepository.save(newCategory);
-                            });
-                    categories.add(category);
-                }
-                book.setCategories(categories);
+                book.setCategories(resolveCategories(bookDTO.getCategories()));
             } else {
                 // Keep existing categories if none provided
                 book.setCategories(existingBook.getCategories());
@@ -99,16 +220,19 @@ public class BookService {
         }
 
         Book savedBook = bookRepository.save(book);
-        return convertToDTO(savedBook);
+        BookDTO savedDTO = convertToDTO(savedBook, bookDTO.getAuthors(), bookDTO.getCategories());
+        bookSearchIndex.indexAfterCommit(savedDTO);
+        return savedDTO;
     }
 
     @Transactional
     public BookDTO updateBookInventory(String id, int newCopiesOwned) {
-        Book book = bookRepository.findById(id)
-                .orElseThrow(() -> new BookNotFoundException(id));
+        if (!bookRepository.existsById(id)) {
+            throw new BookNotFoundException(id);
+        }
 
         // Get count of books currently on loan
-        long booksOnLoan = loanRepository.findByBookIdAndReturnDateIsNull(id).size();
+        long booksOnLoan = loanRepository.countByBookIdAndReturnDateIsNull(id);
 
         // Validate the new inventory level
         if (newCopiesOwned < booksOnLoan) {
@@ -117,32 +241,33 @@ public class BookService {
             );
         }
 
-        // Calculate new copies available
-        int newCopiesAvailable = newCopiesOwned - (int)booksOnLoan;
-
-        // Update the book
-        book.setCopiesOwned(newCopiesOwned);
-        book.setCopiesAvailable(newCopiesAvailable);
+        // Apply the change as a delta in one conditional UPDATE, so checkouts and returns
+        // committed meanwhile are not overwritten
+        if (bookRepository.updateCopiesOwned(id, newCopiesOwned) == 0) {
+            throw new InvalidInventoryUpdateException(
+                    "Cannot reduce copies owned below number of books currently on loan"
+            );
+        }
 
-        Book updatedBook = bookRepository.save(book);
-        return convertToDTO(updatedBook);
+        Book updatedBook = bookRepository.findById(id)
+                .orElseThrow(() -> new BookNotFoundException(id));
+        BookDTO updatedDTO = convertToDTO(updatedBook);
+        bookSearchIndex.indexAfterCommit(updatedDTO);
+        return updatedDTO;
     }
 
     // Helper method to get current inventory status
     public BookInventoryStatusDTO getBookInventoryStatus(String id) {
-        Book book = bookRepository.findById(id)
+        BookRepository.InventoryCounts counts = bookRepository
+                .findInventoryCounts(id, Reservation.Status.ACTIVE)
                 .orElseThrow(() -> new BookNotFoundException(id));
 
-        long booksOnLoan = loanRepository.findByBookIdAndReturnDateIsNull(id).size();
-        long activeReservations = reservationRepository
-                .findByBookIdAndStatus(id, Reservation.Status.ACTIVE).size();
-
         return BookInventoryStatusDTO.builder()
-                .copiesOwned(book.getCopiesOwned())
-                .copiesAvailable(book.getCopiesAvailable())
-                .copiesOnLoan(booksOnLoan)
-                .activeReservations(activeReservations)
-                .minimumCopiesRequired(booksOnLoan)
+                .copiesOwned(counts.getCopiesOwned())
+                .copiesAvailable(counts.getCopiesAvailable())
+                .copiesOnLoan(counts.getCopiesOnLoan())
+                .activeReservations(counts.getActiveReservations())
+                .minimumCopiesRequired(counts.getCopiesOnLoan())
                 .build();
     }
 
@@ -168,54 +293,18 @@ public class BookService {
         book.setCopiesAvailable(1);
         book.setPolicyType("BOOK"); // Default policy type
 
-        // Save the book first to establish the ID
-        Book savedBook = bookRepository.save(book);
-
-        // Handle authors
+        // Handle authors (the owning side of the join table is Book, so one save covers them)
         if (googleBook.getVolumeInfo().getAuthors() != null) {
-            Set<Author> authors = new HashSet<>();
-            for (String authorName : googleBook.getVolumeInfo().getAuthors()) {
-                Author author = authorRepository.findByName(authorName)
-                        .orElseGet(() -> {
-                            Author newAuthor = new Author();
-                            newAuthor.setName(authorName);
-                            return authorRepository.save(newAuthor);
-                        });
-
-                // Add book to author's books
-                if (author.getBooks() == null) {
-                    author.setBooks(new HashSet<>());
-                }
-                author.getBooks().add(savedBook);
-
-                // Add author to book's authors
-                authors.add(author);
-
-                // Save the updated author
-                authorRepository.save(author);
-            }
-
-            // Set and save the book with its authors
-            savedBook.setAuthors(authors);
-            savedBook = bookRepository.save(savedBook);
+            book.setAuthors(resolveAuthors(googleBook.getVolumeInfo().getAuthors()));
         }
 
         // Handle categories
         if (googleBook.getVolumeInfo().getCategories() != null) {
-            Set<Category> categories = new HashSet<>();
-            for (String categoryName : googleBook.getVolumeInfo().getCategories()) {
-                Category category = categoryRepository.findByName(categoryName)
-                        .orElseGet(() -> {
-                            Category newCategory = new Category();
-                            newCategory.setName(categoryName);
-                            return categoryRepository.save(newCategory);
-                        });
-                categories.add(category);
-            }
-            savedBook.setCategories(categories);
-            savedBook = bookRepository.save(savedBook);
+            book.setCategories(resolveCategories(googleBook.getVolumeInfo().getCategories()));
         }
 
+        Book savedBook = bookRepository.save(book);
+
         // Handle industry identifiers
         if (googleBook.getVolumeInfo().getIndustryIdentifiers() != null) {
             for (GoogleBooksDTO.IndustryIdentifier identifier :
@@ -225,14 +314,121 @@ public class BookService {
                 industryIdentifier.setType(identifier.getType());
                 industryIdentifier.setIdentifier(identifier.getIdentifier());
                 industryIdentifierRepository.save(industryIdentifier);
+                identifierIndex.putAfterCommit(identifier.getIdentifier(), savedBook.getId());
+            }
+        }
+
+        BookDTO savedDTO = convertToDTO(savedBook,
+                googleBook.getVolumeInfo().getAuthors() != null ? googleBook.getVolumeInfo().getAuthors() : List.of(),
+                googleBook.getVolumeInfo().getCategories() != null ? googleBook.getVolumeInfo().getCategories() : List.of());
+        bookSearchIndex.indexAfterCommit(savedDTO);
+        return savedDTO;
+    }
+
+    // Name resolution: the rows behind cached ids are loaded with one IN query, and a name
+    // whose row is gone or renamed since it was cached falls back to a lookup by name, which
+    // creates the row when it does not exist yet
+    private Set<Author> resolveAuthors(Collection<String> names) {
+        Map<String, Author> cached = new HashMap<>();
+        Map<String, Long> cachedIds = nameResolutionCache.authors().getAll(names);
+        for (Author author : authorRepository.findAllById(cachedIds.values())) {
+            String key = NameResolutionCache.key(author.getName());
+            if (author.getId().equals(cachedIds.get(key))) {
+                cached.put(key, author);
+            }
+        }
+
+        Set<Author> authors = new HashSet<>();
+        for (String authorName : names) {
+            Author cachedAuthor = cached.get(NameResolutionCache.key(authorName));
+            if (cachedAuthor != null) {
+                authors.add(cachedAuthor);
+                continue;
+            }
+            if (cachedIds.containsKey(NameResolutionCache.key(authorName))) {
+                nameResolutionCache.authors().invalidateName(authorName);
+            }
+            Author author = authorRepository.findByName(authorName)
+                    .map(existing -> {
+                        nameResolutionCache.authors().put(authorName, existing.getId());
+                        return existing;
+                    })
+                    .orElseGet(() -> {
+                        Author newAuthor = new Author();
+                        newAuthor.setName(authorName);
+                        Author created = authorRepository.save(newAuthor);
+                        nameResolutionCache.authors().putAfterCommit(authorName, created.getId());
+                        return created;
+                    });
+            authors.add(author);
+        }
+        return authors;
+    }
+
+    private Set<Category> resolveCategories(Collection<String> names) {
+        Map<String, Category> cached = new HashMap<>();
+        Map<String, Long> cachedIds = nameResolutionCache.categories().getAll(names);
+        for (Category category : categoryRepository.findAllById(cachedIds.values())) {
+            String key = NameResolutionCache.key(category.getName());
+            if (category.getId().equals(cachedIds.get(key))) {
+                cached.put(key, category);
             }
         }
 
-        return convertToDTO(savedBook);
+        Set<Category> categories = new HashSet<>();
+        for (String categoryName : names) {
+            Category cachedCategory = cached.get(NameResolutionCache.key(categoryName));
+            if (cachedCategory != null) {
+                categories.add(cachedCategory);
+                continue;
+            }
+            if (cachedIds.containsKey(NameResolutionCache.key(categoryName))) {
+                nameResolutionCache.categories().invalidateName(categoryName);
+            }
+            Category category = categoryRepository.findByName(categoryName)
+                    .map(existing -> {
+                        nameResolutionCache.categories().put(categoryName, existing.getId());
+                        return existing;
+                    })
+                    .orElseGet(() -> {
+                        Category newCategory = new Category();
+                        newCategory.setName(categoryName);
+                        Category created = categoryRepository.save(newCategory);
+                        nameResolutionCache.categories().putAfterCommit(categoryName, created.getId());
+                        return created;
+                    });
+            categories.add(category);
+        }
+        return categories;
     }
 
     // Conversion Methods
+
+    // Converts a batch of books with a constant number of queries. Must run inside a
+    // transaction so the fetched associations land on the same managed instances.
+    private List<BookDTO> convertToDTOs(List<Book> books) {
+        if (books.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<String> ids = books.stream()
+                .map(Book::getId)
+                .collect(Collectors.toList());
+        bookRepository.findWithAuthorsByIdIn(ids);
+        bookRepository.findWithCategoriesByIdIn(ids);
+
+        return books.stream()
+                .map(this::convertToDTO)
+                .collect(Collectors.toList());
+    }
+
     private BookDTO convertToDTO(Book book) {
+        return convertToDTO(book, null, null);
+    }
+
+    // Known author/category names (e.g. the ones just written) are used as-is, which avoids
+    // initializing the reference proxies created from cached ids
+    private BookDTO convertToDTO(Book book, Collection<String> authorNames, Collection<String> categoryNames) {
         BookDTO dto = new BookDTO();
         dto.setId(book.getId());
         dto.setTitle(book.getTitle());
@@ -245,7 +441,9 @@ public class BookService {
         dto.setCopiesAvailable(book.getCopiesAvailable());
         dto.setPolicyType(book.getPolicyType());
 
-        if (book.getAuthors() != null) {
+        if (authorNames != null) {
+            dto.setAuthors(new HashSet<>(authorNames));
+        } else if (book.getAuthors() != null) {
             dto.setAuthors(book.getAuthors().stream()
                     .map(Author::getName)
                     .collect(Collectors.toSet()));
@@ -253,7 +451,9 @@ public class BookService {
             dto.setAuthors(new HashSet<>());
         }
 
-        if (book.getCategories() != null) {
+        if (categoryNames != null) {
+            dto.setCategories(new HashSet<>(categoryNames));
+        } else if (book.getCategories() != null) {
             dto.setCategories(book.getCategories().stream()
                     .map(Category::getName)
                     .collect(Collectors.toSet()));
@@ -282,11 +482,6 @@ public class BookService {
     }
 
     public int getBookCount() {
-
-        return bookRepository.findAll()
-                .stream()
-                .mapToInt(Book::getCopiesOwned)
-                .sum();
-
+        return (int) bookRepository.sumCopiesOwned();
     }
 }
\ No newline at end of file
@@ -0,0 +1,142 @@
+// BorrowerCounters.java
+package com.example.library.service;
+
+import com.example.library.config.BorrowingLimitProperties;
+import com.example.library.exceptions.BorrowingLimitExceededException;
+import com.example.library.model.User;
+import com.example.library.repository.FineRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+// Per-user borrowing counters (active loans overall and per policy type, active reservations)
+// used to enforce BorrowingLimitProperties without counting rows on every checkout. They live
+// in borrower_counters and borrower_policy_counters and change in the circulation transaction:
+// a slot is taken with a conditional increment, which fails at the limit, and holds the row
+// lock until commit, so concurrent checkouts by one member on any node are serialized and a
+// rollback gives the slot back. A user's rows are seeded from the loans and reservations the
+// first time they are needed. Unpaid fines are summed when checked.
+@Component
+public class BorrowerCounters {
+    private static final String SEED_USER_SQL =
+            "INSERT INTO borrower_counters (user_id, active_loans, active_reservations) VALUES (?, " +
+            "(SELECT COUNT(*) FROM loans WHERE user_id = ? AND return_date IS NULL), " +
+            "(SELECT COUNT(*) FROM reservations WHERE user_id = ? AND status = 'ACTIVE')) " +
+            "ON DUPLICATE KEY UPDATE user_id = user_id";
+    private static final String SEED_POLICY_SQL =
+            "INSERT INTO borrower_policy_counters (user_id, item_type, active_loans) VALUES (?, ?, " +
+            "(SELECT COUNT(*) FROM loans l JOIN loan_policies p ON p.id = l.loan_policy_id " +
+            "WHERE l.user_id = ? AND l.return_date IS NULL AND p.item_type = ?)) " +
+            "ON DUPLICATE KEY UPDATE user_id = user_id";
+
+    private static final String ACQUIRE_LOAN_SQL =
+            "UPDATE borrower_counters SET active_loans = active_loans + 1 WHERE user_id = ? AND active_loans < ?";
+    private static final String ACQUIRE_POLICY_LOAN_SQL =
+            "UPDATE borrower_policy_counters SET active_loans = active_loans + 1 " +
+            "WHERE user_id = ? AND item_type = ? AND active_loans < ?";
+    private static final String ACQUIRE_RESERVATION_SQL =
+            "UPDATE borrower_counters SET active_reservations = active_reservations + 1 " +
+            "WHERE user_id = ? AND active_reservations < ?";
+
+    // Rows not seeded yet are left alone: their seed counts the loans and reservations as they are then
+    private static final String RELEASE_LOAN_SQL =
+            "UPDATE borrower_counters SET active_loans = GREATEST(active_loans - 1, 0) WHERE user_id = ?";
+    private static final String RELEASE_POLICY_LOAN_SQL =
+            "UPDATE borrower_policy_counters SET active_loans = GREATEST(active_loans - 1, 0) " +
+            "WHERE user_id = ? AND item_type = ?";
+    private static final String RELEASE_RESERVATION_SQL =
+            "UPDATE borrower_counters SET active_reservations = GREATEST(active_reservations - 1, 0) " +
+            "WHERE user_id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FineRepository fineRepository;
+
+    private final BorrowingLimitProperties limits;
+
+    public BorrowerCounters(BorrowingLimitProperties limits) {
+        this.limits = limits;
+    }
+
+    // Takes a loan slot for the user, or throws if a role, policy or fine limit is reached.
+    // Must run in the checkout transaction; a slot taken by a failing batch item is given back.
+    public void acquireLoan(User user, String policyType) {
+        checkFines(user.getId());
+
+        Integer roleLimit = limits.getMaxLoansByRole().get(user.getRole().name());
+        if (!acquireUserSlot(ACQUIRE_LOAN_SQL, user.getId(), roleLimit)) {
+            throw new BorrowingLimitExceededException(
+                    "Borrowing limit reached: at most " + roleLimit + " concurrent loans");
+        }
+        if (policyType == null) {
+            return;
+        }
+        Integer policyLimit = limits.getMaxLoansByPolicy().get(policyType);
+        if (!acquirePolicySlot(user.getId(), policyType, policyLimit)) {
+            jdbcTemplate.update(RELEASE_LOAN_SQL, user.getId());
+            throw new BorrowingLimitExceededException(
+                    "Borrowing limit reached: at most " + policyLimit + " concurrent loans of type " + policyType);
+        }
+    }
+
+    // Gives back a slot taken earlier in the same transaction for a checkout that did not happen
+    public void releaseLoan(Long userId, String policyType) {
+        loanEnded(userId, policyType);
+    }
+
+    public void loanEnded(Long userId, String policyType) {
+        jdbcTemplate.update(RELEASE_LOAN_SQL, userId);
+        if (policyType != null) {
+            jdbcTemplate.update(RELEASE_POLICY_LOAN_SQL, userId, policyType);
+        }
+    }
+
+    public void acquireReservation(User user) {
+        checkFines(user.getId());
+
+        Integer limit = limits.getMaxReservationsByRole().get(user.getRole().name());
+        if (!acquireUserSlot(ACQUIRE_RESERVATION_SQL, user.getId(), limit)) {
+            throw new BorrowingLimitExceededException(
+                    "Reservation limit reached: at most " + limit + " active reservations");
+        }
+    }
+
+    public void reservationEnded(Long userId) {
+        jdbcTemplate.update(RELEASE_RESERVATION_SQL, userId);
+    }
+
+    // A missing row is seeded and the increment tried once more
+    private boolean acquireUserSlot(String sql, Long userId, Integer limit) {
+        int max = limit != null ? limit : Integer.MAX_VALUE;
+        if (jdbcTemplate.update(sql, userId, max) == 1) {
+            return true;
+        }
+        jdbcTemplate.update(SEED_USER_SQL, userId, userId, userId);
+        return jdbcTemplate.update(sql, userId, max) == 1;
+    }
+
+    private boolean acquirePolicySlot(Long userId, String policyType, Integer limit) {
+        int max = limit != null ? limit : Integer.MAX_VALUE;
+        if (jdbcTemplate.update(ACQUIRE_POLICY_LOAN_SQL, userId, policyType, max) == 1) {
+            return true;
+        }
+        jdbcTemplate.update(SEED_POLICY_SQL, userId, policyType, userId, policyType);
+        return jdbcTemplate.update(ACQUIRE_POLICY_LOAN_SQL, userId, policyType, max) == 1;
+    }
+
+    private void checkFines(Long userId) {
+        BigDecimal threshold = limits.getFineBlockThreshold();
+        if (threshold == null) {
+            return;
+        }
+        BigDecimal unpaidFines = fineRepository.sumUnpaidAmountByUserId(userId);
+        if (unpaidFines.compareTo(threshold) > 0) {
+            throw new BorrowingLimitExceededException(
+                    "Unpaid fines of " + unpaidFines + " exceed the limit of " + threshold);
+        }
+    }
+}
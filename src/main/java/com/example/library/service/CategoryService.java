@@ -5,6 +5,8 @@ import com.example.library.model.Category;
 import com.example.library.repository.CategoryRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
 import java.util.List;
 import java.util.Optional;
 
@@ -13,6 +15,9 @@ public class CategoryService {
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private NameResolutionCache nameResolutionCache;
+
     public List<Category> getAllCategories() {
         return categoryRepository.findAll();
     }
@@ -21,11 +26,17 @@ public class CategoryService {
         return categoryRepository.findById(id);
     }
 
+    @Transactional
     public Category saveCategory(Category category) {
-        return categoryRepository.save(category);
+        Category savedCategory = categoryRepository.save(category);
+        // The category may have been renamed, so drop whatever name pointed at this id
+        nameResolutionCache.categories().invalidateAfterCommit(savedCategory.getId(), savedCategory.getName());
+        return savedCategory;
     }
 
+    @Transactional
     public void deleteCategory(Long id) {
         categoryRepository.deleteById(id);
+        nameResolutionCache.categories().invalidateAfterCommit(id, null);
     }
 }
\ No newline at end of file
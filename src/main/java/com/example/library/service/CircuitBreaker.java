@@ -0,0 +1,88 @@
+// CircuitBreaker.java
+package com.example.library.service;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+// Minimal consecutive-failure circuit breaker. After the threshold is reached the
+// circuit opens and rejects calls; once the open period has passed a single trial
+// call is let through (half-open) and its outcome closes or re-opens the circuit.
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final LongSupplier nanoClock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private boolean trialInFlight;
+    private long timesOpened;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, System::nanoTime);
+    }
+
+    CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier nanoClock) {
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (nanoClock.getAsLong() - openedAtNanos < openDurationNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        // Late failures from calls started before the circuit opened don't extend the open period
+        if (state == State.OPEN) {
+            return;
+        }
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAtNanos = nanoClock.getAsLong();
+            trialInFlight = false;
+            timesOpened++;
+        }
+    }
+
+    // For outcomes that say nothing about upstream health (e.g. a 4xx for a bad query)
+    public synchronized void onIgnored() {
+        trialInFlight = false;
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && nanoClock.getAsLong() - openedAtNanos >= openDurationNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized long getTimesOpened() {
+        return timesOpened;
+    }
+}
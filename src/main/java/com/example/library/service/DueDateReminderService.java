@@ -0,0 +1,228 @@
+// DueDateReminderService.java
+package com.example.library.service;
+
+import com.example.library.dto.DueDateReminderDTO;
+import com.example.library.dto.NotificationDTO;
+import com.example.library.model.LoanPolicy;
+import com.example.library.repository.LoanPolicyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Collectors;
+
+// Sends due-date reminders according to LoanPolicy.reminderDays. Only open loans whose
+// due date falls inside the largest reminder window are read, in keyset-ordered chunks
+// over the due date indexes, so the cost follows the number of loans coming due rather
+// than the number of open loans. Each loan gets the reminder for the closest offset it
+// has reached, once; a missed run therefore sends one reminder, not several.
+//
+// Reminders are claimed by setting last_reminder_sent with a conditional batch update and
+// written to the notification outbox in the same transaction, so nodes running the job at
+// the same time never queue the same reminder twice, and a chunk whose outbox write fails
+// keeps its claims unset for the next run. NotificationDispatcher delivers and retries them.
+@Service
+public class DueDateReminderService {
+    private static final Logger logger = LoggerFactory.getLogger(DueDateReminderService.class);
+
+    // Renewed loans are due on renewal_due_date, the others on due_date; each pass
+    // walks one of the two columns
+    private static final String RENEWED_LOANS_PASS = "renewal_due_date";
+    private static final String ORIGINAL_LOANS_PASS = "due_date";
+
+    private static final String SELECT_DUE_LOANS_SQL =
+            "SELECT l.id, l.user_id, u.email, u.first_name, u.last_name, l.book_id, b.title, " +
+            "l.%1$s, l.last_reminder_sent, l.loan_policy_id " +
+            "FROM loans l " +
+            "JOIN users u ON u.id = l.user_id " +
+            "JOIN books b ON b.id = l.book_id " +
+            "WHERE l.%1$s BETWEEN ? AND ? %2$s " +
+            "AND l.return_date IS NULL " +
+            "AND (l.last_reminder_sent IS NULL OR l.last_reminder_sent < ?) " +
+            "AND (l.%1$s > ? OR (l.%1$s = ? AND l.id > ?)) " +
+            "ORDER BY l.%1$s, l.id " +
+            "LIMIT ?";
+
+    private static final String CLAIM_SQL =
+            "UPDATE loans SET last_reminder_sent = ? " +
+            "WHERE id = ? AND (last_reminder_sent IS NULL OR last_reminder_sent < ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private LoanPolicyRepository loanPolicyRepository;
+
+    @Autowired
+    private NotificationOutbox notificationOutbox;
+
+    @Value("${library.reminders.chunk-size:1000}")
+    private int chunkSize;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private record DueLoan(DueDateReminderDTO reminder, LocalDate claimBefore) {
+    }
+
+    public DueDateReminderService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(cron = "${library.reminders.cron:0 0 8 * * *}")
+    public int sendDueReminders() {
+        return sendDueReminders(LocalDate.now());
+    }
+
+    public int sendDueReminders(LocalDate today) {
+        long start = System.currentTimeMillis();
+
+        // Offsets per policy, ascending so the closest reached offset is found first
+        Map<Long, List<Integer>> offsetsByPolicy = new HashMap<>();
+        for (LoanPolicy policy : loanPolicyRepository.findAll()) {
+            if (policy.getReminderDays() != null && !policy.getReminderDays().isEmpty()) {
+                offsetsByPolicy.put(policy.getId(), policy.getReminderDays().stream()
+                        .filter(Objects::nonNull)
+                        .sorted()
+                        .collect(Collectors.toList()));
+            }
+        }
+        int maxOffset = offsetsByPolicy.values().stream()
+                .mapToInt(offsets -> offsets.get(offsets.size() - 1))
+                .max()
+                .orElse(-1);
+        if (maxOffset < 0) {
+            return 0;
+        }
+
+        LocalDateTime sentAt = LocalDateTime.of(today, LocalTime.now().truncatedTo(ChronoUnit.SECONDS));
+        int sent = sendPass(RENEWED_LOANS_PASS, "", today, maxOffset, offsetsByPolicy, sentAt)
+                + sendPass(ORIGINAL_LOANS_PASS, "AND l.renewal_due_date IS NULL", today, maxOffset, offsetsByPolicy, sentAt);
+
+        logger.info("Sent {} due-date reminders in {} ms", sent, System.currentTimeMillis() - start);
+        return sent;
+    }
+
+    private int sendPass(String dueColumn, String extraCondition, LocalDate today, int maxOffset,
+                         Map<Long, List<Integer>> offsetsByPolicy, LocalDateTime sentAt) {
+        String sql = String.format(SELECT_DUE_LOANS_SQL, dueColumn, extraCondition);
+        LocalDate lastDue = today.minusDays(1);
+        long lastId = 0;
+        int sent = 0;
+
+        while (true) {
+            List<Object[]> rows = jdbcTemplate.query(sql, (rs, rowNum) -> new Object[]{
+                            rs.getLong(1), rs.getLong(2), rs.getString(3),
+                            rs.getString(4) + " " + rs.getString(5), rs.getString(6), rs.getString(7),
+                            rs.getDate(8).toLocalDate(),
+                            rs.getTimestamp(9) != null ? rs.getTimestamp(9).toLocalDateTime() : null,
+                            rs.getObject(10) != null ? rs.getLong(10) : null},
+                    Date.valueOf(today), Date.valueOf(today.plusDays(maxOffset)),
+                    Timestamp.valueOf(today.atStartOfDay()),
+                    Date.valueOf(lastDue), Date.valueOf(lastDue), lastId,
+                    chunkSize);
+            if (rows.isEmpty()) {
+                return sent;
+            }
+
+            List<DueLoan> due = new ArrayList<>();
+            for (Object[] row : rows) {
+                DueLoan dueLoan = toDueLoan(row, today, offsetsByPolicy);
+                if (dueLoan != null) {
+                    due.add(dueLoan);
+                }
+            }
+            sent += deliver(due, sentAt);
+
+            Object[] last = rows.get(rows.size() - 1);
+            lastDue = (LocalDate) last[6];
+            lastId = (Long) last[0];
+            if (rows.size() < chunkSize) {
+                return sent;
+            }
+        }
+    }
+
+    // Picks the smallest configured offset the loan has reached and checks that the
+    // reminder for it has not gone out yet
+    private DueLoan toDueLoan(Object[] row, LocalDate today, Map<Long, List<Integer>> offsetsByPolicy) {
+        List<Integer> offsets = offsetsByPolicy.get((Long) row[8]);
+        if (offsets == null) {
+            return null;
+        }
+        LocalDate dueDate = (LocalDate) row[6];
+        long daysUntilDue = ChronoUnit.DAYS.between(today, dueDate);
+        Integer offset = offsets.stream().filter(days -> days >= daysUntilDue).findFirst().orElse(null);
+        if (offset == null) {
+            return null;
+        }
+
+        LocalDate claimBefore = dueDate.minusDays(offset);
+        LocalDateTime lastReminderSent = (LocalDateTime) row[7];
+        if (lastReminderSent != null && !lastReminderSent.toLocalDate().isBefore(claimBefore)) {
+            return null;
+        }
+
+        DueDateReminderDTO reminder = new DueDateReminderDTO();
+        reminder.setLoanId((Long) row[0]);
+        reminder.setUserId((Long) row[1]);
+        reminder.setEmail((String) row[2]);
+        reminder.setUserName((String) row[3]);
+        reminder.setBookId((String) row[4]);
+        reminder.setBookTitle((String) row[5]);
+        reminder.setDueDate(dueDate);
+        reminder.setDaysBeforeDue(offset);
+        return new DueLoan(reminder, claimBefore);
+    }
+
+    private int deliver(List<DueLoan> due, LocalDateTime sentAt) {
+        if (due.isEmpty()) {
+            return 0;
+        }
+        try {
+            return transactionTemplate.execute(status -> claimAndEnqueue(due, sentAt));
+        } catch (RuntimeException e) {
+            logger.error("Queueing reminders failed for {} loans; they will be retried on the next run", due.size(), e);
+            return 0;
+        }
+    }
+
+    private int claimAndEnqueue(List<DueLoan> due, LocalDateTime sentAt) {
+        Timestamp sentAtTimestamp = Timestamp.valueOf(sentAt);
+        int[] claimed = jdbcTemplate.batchUpdate(CLAIM_SQL, due.stream()
+                .map(loan -> new Object[]{sentAtTimestamp, loan.reminder().getLoanId(),
+                        Timestamp.valueOf(loan.claimBefore().atStartOfDay())})
+                .collect(Collectors.toList()));
+
+        List<NotificationDTO> notifications = new ArrayList<>();
+        for (int i = 0; i < due.size(); i++) {
+            if (claimed[i] == 1) {
+                notifications.add(toNotification(due.get(i).reminder()));
+            }
+        }
+        notificationOutbox.enqueueAll(NotificationOutbox.DUE_DATE_REMINDER, notifications);
+        return notifications.size();
+    }
+
+    private NotificationDTO toNotification(DueDateReminderDTO reminder) {
+        NotificationDTO notification = new NotificationDTO();
+        notification.setUserId(reminder.getUserId());
+        notification.setEmail(reminder.getEmail());
+        notification.setMessage(String.format("Book '%s' borrowed by '%s' is due on %s (loan %d, %d-day reminder).",
+                reminder.getBookTitle(), reminder.getUserName(), reminder.getDueDate(),
+                reminder.getLoanId(), reminder.getDaysBeforeDue()));
+        return notification;
+    }
+}
@@ -0,0 +1,38 @@
+// FileNotificationChannel.java
+package com.example.library.service;
+
+import com.example.library.dto.NotificationDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Appends notifications as NDJSON to a spool file, for a mailer process to pick up
+@Component
+@ConditionalOnProperty(name = "library.notifications.channel", havingValue = "file")
+public class FileNotificationChannel implements NotificationChannel {
+    private final Path spoolFile;
+    private final ObjectMapper objectMapper;
+
+    public FileNotificationChannel(@Value("${library.notifications.spool-file:notifications.ndjson}") String spoolFile,
+                                   ObjectMapper objectMapper) {
+        this.spoolFile = Path.of(spoolFile);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public synchronized void send(NotificationDTO notification) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(spoolFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(objectMapper.writeValueAsString(notification));
+            writer.newLine();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+// FineAccrualService.java
+package com.example.library.service;
+
+import com.example.library.model.JobCheckpoint;
+import com.example.library.repository.JobCheckpointRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+// Nightly accrual of overdue fines for loans that are still out, so balances are current
+// before the book comes back. Each open overdue loan has one unpaid accruing fine whose
+// accrued_through date records how far it has been charged; a run only adds the days
+// since then. Loans are walked by id in chunks, and every chunk's fine updates, fine
+// inserts and checkpoint commit together, so a run that dies part way resumes after the
+// last committed chunk. The writes are guarded (update only if accrued_through is
+// unchanged, insert only if no accruing fine exists), so re-running a chunk adds nothing.
+@Service
+public class FineAccrualService {
+    private static final Logger logger = LoggerFactory.getLogger(FineAccrualService.class);
+
+    static final String JOB_NAME = "fine-accrual";
+
+    private static final String SELECT_OVERDUE_SQL =
+            "SELECT l.id, l.due_date, l.renewal_due_date, " +
+            "(SELECT MAX(f.accrued_through) FROM fines f WHERE f.loan_id = l.id) AS accrued_through, " +
+            "(SELECT MAX(f.id) FROM fines f WHERE f.loan_id = l.id " +
+            "AND f.accrued_through IS NOT NULL AND f.date_paid IS NULL) AS open_fine_id " +
+            "FROM loans l " +
+            "WHERE l.return_date IS NULL AND l.id > ? AND (l.due_date < ? OR l.renewal_due_date < ?) " +
+            "ORDER BY l.id " +
+            "LIMIT ?";
+
+    private static final String ACCRUE_SQL =
+            "UPDATE fines SET amount = amount + ?, accrued_through = ?, reason = ? " +
+            "WHERE id = ? AND accrued_through = ? AND date_paid IS NULL";
+
+    private static final String OPEN_FINE_SQL =
+            "INSERT INTO fines (loan_id, amount, reason, date_issued, accrued_through) " +
+            "SELECT ?, ?, ?, ?, ? FROM DUAL WHERE NOT EXISTS " +
+            "(SELECT 1 FROM fines WHERE loan_id = ? AND accrued_through IS NOT NULL AND date_paid IS NULL)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JobCheckpointRepository jobCheckpointRepository;
+
+    @Autowired
+    private FineService fineService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${library.fines.accrual-chunk-size:1000}")
+    private int chunkSize;
+
+    @Scheduled(cron = "${library.fines.accrual-cron:0 30 1 * * *}")
+    public int accrueFines() {
+        return accrueFines(LocalDate.now());
+    }
+
+    // Charges overdue days up to and including asOf; returns the number of fines changed
+    public int accrueFines(LocalDate asOf) {
+        long start = System.currentTimeMillis();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        JobCheckpoint checkpoint = jobCheckpointRepository.findById(JOB_NAME)
+                .filter(existing -> existing.getRunDate().equals(asOf))
+                .orElseGet(() -> newCheckpoint(asOf));
+        if (checkpoint.isCompleted()) {
+            return 0;
+        }
+        if (checkpoint.getLastId() > 0) {
+            logger.info("Resuming fine accrual for {} after loan {}", asOf, checkpoint.getLastId());
+        }
+
+        int changed = 0;
+        while (true) {
+            long afterId = checkpoint.getLastId();
+            Integer chunkChanged = transactionTemplate.execute(status -> accrueChunk(asOf, checkpoint, afterId));
+            if (chunkChanged == null || chunkChanged < 0) {
+                break;
+            }
+            changed += chunkChanged;
+        }
+        logger.info("Fine accrual for {} changed {} fines in {} ms", asOf, changed, System.currentTimeMillis() - start);
+        return changed;
+    }
+
+    // Returns the number of fines changed, or -1 once no loans are left
+    private int accrueChunk(LocalDate asOf, JobCheckpoint checkpoint, long afterId) {
+        Date asOfDate = Date.valueOf(asOf);
+        List<Object[]> loans = jdbcTemplate.query(SELECT_OVERDUE_SQL, (rs, rowNum) -> new Object[]{
+                        rs.getLong(1),
+                        rs.getDate(2).toLocalDate(),
+                        rs.getDate(3) != null ? rs.getDate(3).toLocalDate() : null,
+                        rs.getDate(4) != null ? rs.getDate(4).toLocalDate() : null,
+                        rs.getObject(5) != null ? rs.getLong(5) : null},
+                afterId, asOfDate, asOfDate, chunkSize);
+
+        List<Object[]> updates = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        for (Object[] loan : loans) {
+            Long loanId = (Long) loan[0];
+            LocalDate dueDate = loan[2] != null ? (LocalDate) loan[2] : (LocalDate) loan[1];
+            LocalDate accruedThrough = (LocalDate) loan[3];
+            Long openFineId = (Long) loan[4];
+
+            LocalDate chargedThrough = accruedThrough != null && accruedThrough.isAfter(dueDate) ? accruedThrough : dueDate;
+            long newDays = ChronoUnit.DAYS.between(chargedThrough, asOf);
+            if (newDays <= 0) {
+                continue;
+            }
+            BigDecimal delta = fineService.calculateFineAmount(newDays);
+            String reason = "Overdue book - " + ChronoUnit.DAYS.between(dueDate, asOf) + " days late";
+
+            if (openFineId != null) {
+                updates.add(new Object[]{delta, asOfDate, reason, openFineId, Date.valueOf(accruedThrough)});
+            } else {
+                inserts.add(new Object[]{loanId, delta, reason, asOfDate, asOfDate, loanId});
+            }
+        }
+
+        int changed = 0;
+        for (int count : jdbcTemplate.batchUpdate(ACCRUE_SQL, updates)) {
+            changed += count > 0 ? 1 : 0;
+        }
+        for (int count : jdbcTemplate.batchUpdate(OPEN_FINE_SQL, inserts)) {
+            changed += count > 0 ? 1 : 0;
+        }
+
+        if (loans.isEmpty()) {
+            checkpoint.setCompleted(true);
+        } else {
+            checkpoint.setLastId((Long) loans.get(loans.size() - 1)[0]);
+        }
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        jobCheckpointRepository.save(checkpoint);
+        return loans.isEmpty() ? -1 : changed;
+    }
+
+    private JobCheckpoint newCheckpoint(LocalDate runDate) {
+        JobCheckpoint checkpoint = new JobCheckpoint();
+        checkpoint.setJobName(JOB_NAME);
+        checkpoint.setRunDate(runDate);
+        checkpoint.setLastId(0L);
+        checkpoint.setCompleted(false);
+        return checkpoint;
+    }
+}
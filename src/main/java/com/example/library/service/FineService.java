@@ -70,13 +70,14 @@ public class FineService {
         dto.setReason(fine.getReason());
         dto.setDateIssued(fine.getDateIssued());
         dto.setDatePaid(fine.getDatePaid());
+        dto.setAccruedThrough(fine.getAccruedThrough());
         dto.setIsPaid(fine.getDatePaid() != null);
 
         // Calculate days overdue
         if (loan.getReturnDate() != null) {
-            dto.setDaysOverdue(ChronoUnit.DAYS.between(loan.getDueDate(), loan.getReturnDate()));
+            dto.setDaysOverdue(ChronoUnit.DAYS.between(loan.effectiveDueDate(), loan.getReturnDate()));
         } else {
-            dto.setDaysOverdue(ChronoUnit.DAYS.between(loan.getDueDate(), LocalDate.now()));
+            dto.setDaysOverdue(ChronoUnit.DAYS.between(loan.effectiveDueDate(), LocalDate.now()));
         }
 
         return dto;
@@ -84,7 +85,8 @@ public class FineService {
 
     @Transactional
     public FineDTO createFineForOverdueBook(Loan loan) {
-        LocalDate dueDate = loan.getDueDate();
+        // Renewals move the due date, the same way the nightly accrual job sees it
+        LocalDate dueDate = loan.effectiveDueDate();
         LocalDate returnDate = loan.getReturnDate() != null ? loan.getReturnDate() : LocalDate.now();
 
         long daysOverdue = ChronoUnit.DAYS.between(dueDate, returnDate);
@@ -92,7 +94,32 @@ public class FineService {
             return null;
         }
 
-        BigDecimal fineAmount = calculateFineAmount(daysOverdue);
+        // Top up the fine the nightly accrual job has been growing instead of charging twice
+        Optional<Fine> accruing = fineRepository
+                .findFirstByLoanIdAndAccruedThroughIsNotNullAndDatePaidIsNullOrderByAccruedThroughDesc(loan.getId());
+        if (accruing.isPresent()) {
+            Fine fine = accruing.get();
+            long remainingDays = ChronoUnit.DAYS.between(fine.getAccruedThrough(), returnDate);
+            if (remainingDays > 0) {
+                fine.setAmount(fine.getAmount().add(calculateFineAmount(remainingDays)));
+                fine.setAccruedThrough(returnDate);
+            }
+            fine.setReason("Overdue book - " + daysOverdue + " days late");
+            Fine savedFine = fineRepository.save(fine);
+            reservationService.processNextReservation(loan.getBook().getId());
+            return convertToDTO(savedFine);
+        }
+
+        // Days already charged by an accruing fine that has since been paid are not charged again
+        LocalDate chargedThrough = fineRepository.findLatestAccruedThroughByLoanId(loan.getId())
+                .filter(accruedThrough -> accruedThrough.isAfter(dueDate))
+                .orElse(dueDate);
+        long daysToCharge = ChronoUnit.DAYS.between(chargedThrough, returnDate);
+        if (daysToCharge <= 0) {
+            reservationService.processNextReservation(loan.getBook().getId());
+            return null;
+        }
+        BigDecimal fineAmount = calculateFineAmount(daysToCharge);
 
         Fine fine = new Fine();
         fine.setLoan(loan);
@@ -101,14 +128,13 @@ public class FineService {
         fine.setDateIssued(LocalDate.now());
 
         Fine savedFine = fineRepository.save(fine);
-
         // After creating fine, check for reservations
         reservationService.processNextReservation(loan.getBook().getId());
 
         return convertToDTO(savedFine);
     }
 
-    private BigDecimal calculateFineAmount(long daysOverdue) {
+    BigDecimal calculateFineAmount(long daysOverdue) {
         BigDecimal ratePerDay = new BigDecimal("0.50");
         return ratePerDay.multiply(BigDecimal.valueOf(daysOverdue));
     }
@@ -1,27 +1,226 @@
 // GoogleBooksService.java
 package com.example.library.service;
 
+import com.example.library.config.GoogleBooksProperties;
+import com.example.library.dto.CacheStatsDTO;
+import com.example.library.dto.GoogleBooksClientStatsDTO;
 import com.example.library.dto.GoogleBooksSearchResultDTO;
+import com.example.library.exceptions.GoogleBooksUnavailableException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Non-blocking client for the Google Books volumes API. No request thread ever waits
+// on the upstream: calls go through the JDK HttpClient (pooled connections, connect and
+// read timeouts), a bulkhead bounds how many are in flight, and a circuit breaker stops
+// calling a failing upstream. When a call cannot be made or fails, the last good result
+// for the query is served instead.
 @Service
 public class GoogleBooksService {
+    private static final Logger logger = LoggerFactory.getLogger(GoogleBooksService.class);
+
+    private final GoogleBooksProperties properties;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final Semaphore bulkhead;
+    private final CircuitBreaker circuitBreaker;
+
+    // Completed results are cached with a TTL and a size bound. While a lookup is in flight
+    // its future is in the cache too, so concurrent identical queries share one upstream call.
+    // Failed lookups are dropped from the cache automatically.
+    private final AsyncCache<String, GoogleBooksSearchResultDTO> searchCache;
+    private final Cache<String, GoogleBooksSearchResultDTO> staleResults;
+
+    private final LongAdder upstreamCalls = new LongAdder();
+    private final LongAdder upstreamErrors = new LongAdder();
+    private final LongAdder upstreamLatencyMillis = new LongAdder();
+    private final AtomicLong maxUpstreamLatencyMillis = new AtomicLong();
+    private final LongAdder bulkheadRejections = new LongAdder();
+    private final LongAdder circuitRejections = new LongAdder();
+    private final LongAdder staleFallbacks = new LongAdder();
+
+    public GoogleBooksService(GoogleBooksProperties properties) {
+        this.properties = properties;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(properties.getConnectTimeoutMs()))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.objectMapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.bulkhead = new Semaphore(properties.getMaxConcurrentRequests());
+        this.circuitBreaker = new CircuitBreaker(properties.getCircuitBreakerFailureThreshold(),
+                Duration.ofSeconds(properties.getCircuitBreakerOpenSeconds()));
+        this.searchCache = Caffeine.newBuilder()
+                .maximumSize(properties.getCacheMaxSize())
+                .expireAfterWrite(Duration.ofSeconds(properties.getCacheTtlSeconds()))
+                .recordStats()
+                .buildAsync();
+        this.staleResults = Caffeine.newBuilder()
+                .maximumSize(properties.getStaleMaxSize())
+                .expireAfterWrite(Duration.ofHours(properties.getStaleTtlHours()))
+                .build();
+    }
 
-    private final String GOOGLE_BOOKS_API_URL = "https://www.googleapis.com/books/v1/volumes";
-    private final RestTemplate restTemplate;
+    public CompletableFuture<GoogleBooksSearchResultDTO> searchBooks(String query) {
+        String key = normalizeQuery(query);
+        return searchCache.get(key, (cacheKey, executor) -> fetchFromUpstream(cacheKey))
+                .exceptionally(error -> fallback(key, error));
+    }
+
+    public GoogleBooksClientStatsDTO getStats() {
+        CacheStats stats = searchCache.synchronous().stats();
+        CacheStatsDTO cacheStats = new CacheStatsDTO();
+        cacheStats.setName("googleBooksSearch");
+        cacheStats.setSize(searchCache.synchronous().estimatedSize());
+        cacheStats.setHitCount(stats.hitCount());
+        cacheStats.setMissCount(stats.missCount());
+        cacheStats.setHitRate(stats.hitRate());
+        cacheStats.setEvictionCount(stats.evictionCount());
 
-    public GoogleBooksService() {
-        this.restTemplate = new RestTemplate();
+        GoogleBooksClientStatsDTO dto = new GoogleBooksClientStatsDTO();
+        dto.setCache(cacheStats);
+        long calls = upstreamCalls.sum();
+        dto.setUpstreamCalls(calls);
+        dto.setUpstreamErrors(upstreamErrors.sum());
+        dto.setAverageUpstreamLatencyMs(calls == 0 ? 0 : (double) upstreamLatencyMillis.sum() / calls);
+        dto.setMaxUpstreamLatencyMs(maxUpstreamLatencyMillis.get());
+        dto.setCircuitState(circuitBreaker.getState().name());
+        dto.setCircuitOpenedCount(circuitBreaker.getTimesOpened());
+        dto.setBulkheadRejections(bulkheadRejections.sum());
+        dto.setCircuitRejections(circuitRejections.sum());
+        dto.setStaleFallbacks(staleFallbacks.sum());
+        dto.setInFlightRequests(properties.getMaxConcurrentRequests() - bulkhead.availablePermits());
+        return dto;
     }
 
-    public GoogleBooksSearchResultDTO searchBooks(String query) {
-        String url = UriComponentsBuilder.fromHttpUrl(GOOGLE_BOOKS_API_URL)
+    private CompletableFuture<GoogleBooksSearchResultDTO> fetchFromUpstream(String query) {
+        URI uri = UriComponentsBuilder.fromHttpUrl(properties.getApiUrl())
                 .queryParam("q", query)
+                .encode()
                 .build()
-                .toUriString();
+                .toUri();
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(properties.getReadTimeoutMs()))
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+
+        if (!circuitBreaker.tryAcquirePermission()) {
+            circuitRejections.increment();
+            return CompletableFuture.failedFuture(
+                    new GoogleBooksUnavailableException("Google Books circuit is open"));
+        }
+        if (!bulkhead.tryAcquire()) {
+            circuitBreaker.onIgnored();
+            bulkheadRejections.increment();
+            return CompletableFuture.failedFuture(
+                    new GoogleBooksUnavailableException("Too many concurrent Google Books requests"));
+        }
+
+        long start = System.nanoTime();
+        upstreamCalls.increment();
+        CompletableFuture<HttpResponse<byte[]>> response;
+        try {
+            response = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        return response
+                .thenApply(this::parseResponse)
+                .whenComplete((result, error) -> {
+                    bulkhead.release();
+                    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+                    upstreamLatencyMillis.add(elapsedMillis);
+                    maxUpstreamLatencyMillis.accumulateAndGet(elapsedMillis, Math::max);
+
+                    if (error == null) {
+                        circuitBreaker.onSuccess();
+                        staleResults.put(query, result);
+                    } else {
+                        upstreamErrors.increment();
+                        if (isUpstreamFault(error)) {
+                            circuitBreaker.onFailure();
+                        } else {
+                            circuitBreaker.onIgnored();
+                        }
+                    }
+                });
+    }
+
+    private GoogleBooksSearchResultDTO parseResponse(HttpResponse<byte[]> response) {
+        int status = response.statusCode();
+        if (status < 200 || status >= 300) {
+            throw new UpstreamStatusException(status);
+        }
+        try {
+            return objectMapper.readValue(response.body(), GoogleBooksSearchResultDTO.class);
+        } catch (IOException e) {
+            throw new CompletionException(new GoogleBooksUnavailableException("Unreadable Google Books response", e));
+        }
+    }
+
+    private GoogleBooksSearchResultDTO fallback(String query, Throwable error) {
+        Throwable cause = unwrap(error);
+        GoogleBooksSearchResultDTO stale = staleResults.getIfPresent(query);
+        if (stale != null) {
+            staleFallbacks.increment();
+            logger.warn("Serving stale Google Books result for '{}': {}", query, cause.toString());
+            return stale;
+        }
+        if (cause instanceof GoogleBooksUnavailableException unavailable) {
+            throw unavailable;
+        }
+        throw new GoogleBooksUnavailableException("Google Books request failed: " + cause, cause);
+    }
+
+    // Timeouts, I/O errors, throttling and 5xx responses count against the circuit; other 4xx do not
+    private boolean isUpstreamFault(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof UpstreamStatusException statusException) {
+            return statusException.status == 429 || statusException.status >= 500;
+        }
+        return true;
+    }
+
+    private Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    // Queries that differ only in case or whitespace share a cache entry
+    private String normalizeQuery(String query) {
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static class UpstreamStatusException extends GoogleBooksUnavailableException {
+        private final int status;
 
-        return restTemplate.getForObject(url, GoogleBooksSearchResultDTO.class);
+        UpstreamStatusException(int status) {
+            super("Google Books responded with HTTP " + status);
+            this.status = status;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,256 @@
+// HoldShelfService.java
+package com.example.library.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Hold shelf for reservations. A copy that comes back for a title with a queue is taken out of
+// copies_available and held for the head of the queue until its pickup deadline, so only that
+// member can check it out. Pickup deadlines wait in a DelayQueue, loaded from the database at
+// startup and every reload interval (holds placed on other nodes); a hold that lapses is expired
+// and its copy passes straight to the next reservation in line, or back to the shelf when nobody
+// is waiting. All state changes are guarded updates, so a hold collected meanwhile is left alone.
+// The holder is notified through the outbox, in the transaction placing the hold.
+@Service
+public class HoldShelfService {
+    private static final Logger logger = LoggerFactory.getLogger(HoldShelfService.class);
+
+    private static final String CLAIM_COPY_SQL =
+            "UPDATE books SET copies_available = copies_available - 1 WHERE id = ? AND copies_available > 0";
+    private static final String RELEASE_COPY_SQL =
+            "UPDATE books SET copies_available = copies_available + 1 WHERE id = ? AND copies_available < copies_owned";
+    private static final String SELECT_NEXT_SQL =
+            "SELECT r.id, r.user_id, u.username, u.email, b.title FROM reservations r " +
+            "JOIN users u ON u.id = r.user_id JOIN books b ON b.id = r.book_id " +
+            "WHERE r.book_id = ? AND r.status = 'ACTIVE' AND r.expiration_date > ? " +
+            "ORDER BY r.reservation_date, r.id LIMIT 1";
+    private static final String PLACE_HOLD_SQL =
+            "UPDATE reservations SET status = 'ON_HOLD', pickup_deadline = ? WHERE id = ? AND status = 'ACTIVE'";
+    private static final String EXPIRE_HOLD_SQL =
+            "UPDATE reservations SET status = 'EXPIRED', active_marker = NULL " +
+            "WHERE id = ? AND status = 'ON_HOLD' AND pickup_deadline <= ?";
+    private static final String COLLECT_HOLD_SQL =
+            "UPDATE reservations SET status = 'FULFILLED', active_marker = NULL WHERE id = ? AND status = 'ON_HOLD'";
+    private static final String RESTORE_HOLD_SQL =
+            "UPDATE reservations SET status = 'ON_HOLD', active_marker = TRUE WHERE id = ? AND status = 'FULFILLED'";
+    private static final String SELECT_HOLDS_SQL =
+            "SELECT id, book_id, pickup_deadline FROM reservations WHERE status = 'ON_HOLD'";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BorrowerCounters borrowerCounters;
+
+    @Autowired
+    private ReservationExpiryService reservationExpiryService;
+
+    @Autowired
+    private NotificationOutbox notificationOutbox;
+
+    private final TransactionTemplate transactionTemplate;
+    private final DelayQueue<PendingHold> pickupDeadlines = new DelayQueue<>();
+    private final Set<Long> queuedHolds = ConcurrentHashMap.newKeySet();
+
+    @Value("${library.reservations.hold-hours:48}")
+    private long holdHours;
+
+    private record NextReservation(long id, long userId, String username, String email, String bookTitle) {
+    }
+
+    private record PendingHold(long reservationId, String bookId, long deadlineMs) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineMs - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(deadlineMs, ((PendingHold) other).deadlineMs);
+        }
+    }
+
+    public HoldShelfService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Holds a copy that was just put back on the shelf for the next reservation in line. Runs in
+    // the caller's transaction; returns false, leaving the copy on the shelf, when nobody is waiting.
+    public boolean holdForNextReservation(String bookId) {
+        if (jdbcTemplate.update(CLAIM_COPY_SQL, bookId) == 0) {
+            return false;
+        }
+        if (!passToNextReservation(bookId)) {
+            jdbcTemplate.update(RELEASE_COPY_SQL, bookId);
+            return false;
+        }
+        return true;
+    }
+
+    // Collects the member's hold on bookId as part of a checkout. The held copy already left
+    // copies_available when the hold was placed, so the caller must not claim another one.
+    public boolean collectHold(String bookId, Long userId) {
+        return !collectHolds(userId, List.of(bookId)).isEmpty();
+    }
+
+    // Batch form of collectHold: returns the collected reservation id per book
+    public Map<String, Long> collectHolds(Long userId, Collection<String> bookIds) {
+        if (bookIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, Long> holds = new LinkedHashMap<>();
+        String placeholders = String.join(",", Collections.nCopies(bookIds.size(), "?"));
+        List<Object> args = new ArrayList<>();
+        args.add(userId);
+        args.addAll(bookIds);
+        jdbcTemplate.query("SELECT id, book_id FROM reservations " +
+                        "WHERE user_id = ? AND status = 'ON_HOLD' AND book_id IN (" + placeholders + ")",
+                rs -> {
+                    holds.putIfAbsent(rs.getString(2), rs.getLong(1));
+                },
+                args.toArray());
+        if (holds.isEmpty()) {
+            return Map.of();
+        }
+
+        List<Map.Entry<String, Long>> candidates = new ArrayList<>(holds.entrySet());
+        int[] collected = jdbcTemplate.batchUpdate(COLLECT_HOLD_SQL, candidates.stream()
+                .map(hold -> new Object[]{hold.getValue()})
+                .collect(Collectors.toList()));
+        Map<String, Long> result = new HashMap<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            // The pending pickup deadline is left in the queue; its guarded update will not match
+            if (collected[i] == 1) {
+                result.put(candidates.get(i).getKey(), candidates.get(i).getValue());
+            }
+        }
+        return result;
+    }
+
+    // Puts collected holds back when the checkout that collected them is turned down
+    public void restoreHolds(Collection<Long> reservationIds) {
+        if (!reservationIds.isEmpty()) {
+            jdbcTemplate.batchUpdate(RESTORE_HOLD_SQL, reservationIds.stream()
+                    .map(id -> new Object[]{id})
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    // Holds are few (at most one per copy), so every reload reads all of them
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${library.reservations.hold-reload-interval-ms:300000}",
+            initialDelayString = "${library.reservations.hold-reload-interval-ms:300000}")
+    public void reloadHolds() {
+        jdbcTemplate.query(SELECT_HOLDS_SQL, rs -> {
+            enqueue(new PendingHold(rs.getLong(1), rs.getString(2), rs.getTimestamp(3).getTime()));
+        });
+    }
+
+    // Expires the holds whose pickup deadline has passed and cascades their copies; each hold is
+    // released in its own transaction. Returns how many holds were released.
+    @Scheduled(fixedDelayString = "${library.reservations.hold-check-interval-ms:1000}")
+    public int releaseExpiredHolds() {
+        int released = 0;
+        List<PendingHold> failed = new ArrayList<>();
+        PendingHold hold;
+        while ((hold = pickupDeadlines.poll()) != null) {
+            queuedHolds.remove(hold.reservationId());
+            PendingHold lapsed = hold;
+            try {
+                if (Boolean.TRUE.equals(transactionTemplate.execute(status -> releaseHold(lapsed)))) {
+                    released++;
+                }
+            } catch (RuntimeException e) {
+                logger.error("Failed to release hold {}", lapsed.reservationId(), e);
+                failed.add(lapsed);
+            }
+        }
+        failed.forEach(this::enqueue);
+        return released;
+    }
+
+    public int getPendingHoldCount() {
+        return pickupDeadlines.size();
+    }
+
+    private boolean releaseHold(PendingHold hold) {
+        if (jdbcTemplate.update(EXPIRE_HOLD_SQL, hold.reservationId(), new Timestamp(System.currentTimeMillis())) == 0) {
+            // Collected, or released by another node
+            return false;
+        }
+        logger.info("Hold {} on book {} was not picked up in time", hold.reservationId(), hold.bookId());
+        if (!passToNextReservation(hold.bookId())) {
+            jdbcTemplate.update(RELEASE_COPY_SQL, hold.bookId());
+        }
+        return true;
+    }
+
+    // Places a copy already taken off the shelf with the next waiting reservation. Lapsed
+    // reservations the expiry sweep has not reached yet are skipped, and a reservation taken
+    // concurrently fails the guarded update, so the loop moves on to the one after it.
+    private boolean passToNextReservation(String bookId) {
+        LocalDateTime now = LocalDateTime.now();
+        while (true) {
+            List<NextReservation> next = jdbcTemplate.query(SELECT_NEXT_SQL, (rs, rowNum) ->
+                    new NextReservation(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getString(4),
+                            rs.getString(5)),
+                    bookId, Timestamp.valueOf(now));
+            if (next.isEmpty()) {
+                return false;
+            }
+            NextReservation reservation = next.get(0);
+            LocalDateTime pickupDeadline = now.plusHours(holdHours);
+            if (jdbcTemplate.update(PLACE_HOLD_SQL, Timestamp.valueOf(pickupDeadline), reservation.id()) == 1) {
+                borrowerCounters.reservationEnded(reservation.userId());
+                reservationExpiryService.cancelAfterCommit(reservation.id());
+                PendingHold hold = new PendingHold(reservation.id(), bookId, Timestamp.valueOf(pickupDeadline).getTime());
+                afterCommit(() -> enqueue(hold));
+
+                notificationOutbox.enqueue(NotificationOutbox.HOLD_READY, reservation.userId(), reservation.email(),
+                        String.format("Book '%s' is now available for user '%s'. Reservation ID: %d. " +
+                                        "The book will be held until %s.",
+                                reservation.bookTitle(), reservation.username(), reservation.id(), pickupDeadline));
+                return true;
+            }
+        }
+    }
+
+    private void enqueue(PendingHold hold) {
+        if (queuedHolds.add(hold.reservationId())) {
+            pickupDeadlines.add(hold);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+// IdentifierIndex.java
+package com.example.library.service;
+
+import com.example.library.model.IndustryIdentifier;
+import com.example.library.repository.IndustryIdentifierRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// In-memory hash index from industry identifier to book id, so scanned ISBNs resolve
+// without touching the database. ISBN-10 and ISBN-13 spellings share one key (see Isbn).
+// Misses fall back to the indexed identifier column and are added to the index; keys the
+// database does not know either are remembered for a short while, so repeated scans of an
+// unknown code do not query it each time.
+@Component
+public class IdentifierIndex {
+    private static final Logger logger = LoggerFactory.getLogger(IdentifierIndex.class);
+
+    private static final long MAX_REMEMBERED_MISSES = 100_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private IndustryIdentifierRepository industryIdentifierRepository;
+
+    private final Map<String, String> bookIdsByKey = new ConcurrentHashMap<>();
+    private final Cache<String, Boolean> misses;
+
+    public IdentifierIndex(@Value("${library.identifiers.miss-ttl-seconds:60}") long missTtlSeconds) {
+        this.misses = Caffeine.newBuilder()
+                .maximumSize(MAX_REMEMBERED_MISSES)
+                .expireAfterWrite(Duration.ofSeconds(missTtlSeconds))
+                .build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Map<String, String> loaded = new HashMap<>();
+        jdbcTemplate.query("SELECT identifier, book_id FROM industry_identifiers", resultSet -> {
+            String key = Isbn.lookupKey(resultSet.getString(1));
+            if (key != null) {
+                loaded.put(key, resultSet.getString(2));
+            }
+        });
+        bookIdsByKey.putAll(loaded);
+        logger.info("Identifier index built with {} keys in {} ms", loaded.size(), System.currentTimeMillis() - start);
+    }
+
+    // Resolves each identifier to a book id; identifiers that match no book are left out
+    public Map<String, String> resolve(Collection<String> identifiers) {
+        Map<String, String> resolved = new LinkedHashMap<>();
+        Map<String, List<String>> missesByKey = new HashMap<>();
+        for (String identifier : identifiers) {
+            String key = Isbn.lookupKey(identifier);
+            if (key == null) {
+                continue;
+            }
+            String bookId = bookIdsByKey.get(key);
+            if (bookId != null) {
+                resolved.put(identifier, bookId);
+            } else if (misses.getIfPresent(key) == null) {
+                missesByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(identifier);
+            }
+        }
+
+        if (!missesByKey.isEmpty()) {
+            Map<String, String> found = lookUpInDatabase(missesByKey);
+            for (Map.Entry<String, List<String>> miss : missesByKey.entrySet()) {
+                String bookId = found.get(miss.getKey());
+                if (bookId == null) {
+                    misses.put(miss.getKey(), Boolean.TRUE);
+                    continue;
+                }
+                bookIdsByKey.put(miss.getKey(), bookId);
+                for (String identifier : miss.getValue()) {
+                    resolved.put(identifier, bookId);
+                }
+            }
+        }
+        return resolved;
+    }
+
+    public void putAfterCommit(String identifier, String bookId) {
+        String key = Isbn.lookupKey(identifier);
+        if (key != null && bookId != null) {
+            afterCommit(() -> {
+                bookIdsByKey.put(key, bookId);
+                misses.invalidate(key);
+            });
+        }
+    }
+
+    public void removeAfterCommit(String identifier, String bookId) {
+        String key = Isbn.lookupKey(identifier);
+        if (key != null) {
+            afterCommit(() -> bookIdsByKey.remove(key, bookId));
+        }
+    }
+
+    public int size() {
+        return bookIdsByKey.size();
+    }
+
+    // Stored values may be either ISBN spelling and keep whatever hyphens or spaces they were
+    // entered with, so each key is queried compacted, as ISBN-10, and as the caller spelled it
+    private Map<String, String> lookUpInDatabase(Map<String, List<String>> identifiersByKey) {
+        Set<String> keys = identifiersByKey.keySet();
+        Set<String> candidates = new HashSet<>(keys);
+        for (Map.Entry<String, List<String>> entry : identifiersByKey.entrySet()) {
+            String isbn10 = Isbn.toIsbn10(entry.getKey());
+            if (isbn10 != null) {
+                candidates.add(isbn10);
+            }
+            for (String identifier : entry.getValue()) {
+                candidates.add(identifier.trim());
+            }
+        }
+
+        Map<String, String> found = new HashMap<>();
+        for (IndustryIdentifier identifier : industryIdentifierRepository.findByIdentifierIn(candidates)) {
+            String key = Isbn.lookupKey(identifier.getIdentifier());
+            if (keys.contains(key)) {
+                found.put(key, identifier.getBook().getId());
+            }
+        }
+        return found;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.example.library.model.IndustryIdentifier;
 import com.example.library.repository.IndustryIdentifierRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -14,6 +15,9 @@ public class IndustryIdentifierService {
     @Autowired
     private IndustryIdentifierRepository industryIdentifierRepository;
 
+    @Autowired
+    private IdentifierIndex identifierIndex;
+
     public List<IndustryIdentifier> getAllIndustryIdentifiers() {
         return industryIdentifierRepository.findAll();
     }
@@ -30,11 +34,28 @@ public class IndustryIdentifierService {
         return industryIdentifierRepository.findByType(type);
     }
 
+    @Transactional
     public IndustryIdentifier saveIndustryIdentifier(IndustryIdentifier industryIdentifier) {
-        return industryIdentifierRepository.save(industryIdentifier);
+        if (industryIdentifier.getId() != null) {
+            industryIdentifierRepository.findById(industryIdentifier.getId())
+                    .ifPresent(this::removeFromIndex);
+        }
+        IndustryIdentifier saved = industryIdentifierRepository.save(industryIdentifier);
+        if (saved.getBook() != null) {
+            identifierIndex.putAfterCommit(saved.getIdentifier(), saved.getBook().getId());
+        }
+        return saved;
     }
 
+    @Transactional
     public void deleteIndustryIdentifier(Long id) {
+        industryIdentifierRepository.findById(id).ifPresent(this::removeFromIndex);
         industryIdentifierRepository.deleteById(id);
     }
+
+    private void removeFromIndex(IndustryIdentifier industryIdentifier) {
+        if (industryIdentifier.getBook() != null) {
+            identifierIndex.removeAfterCommit(industryIdentifier.getIdentifier(), industryIdentifier.getBook().getId());
+        }
+    }
 }
\ No newline at end of file
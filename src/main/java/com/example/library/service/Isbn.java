@@ -0,0 +1,117 @@
+// Isbn.java
+package com.example.library.service;
+
+import java.util.Locale;
+
+// ISBN parsing and normalization. Every valid ISBN-10 has an equivalent ISBN-13 (978 prefix),
+// so ISBN-13 is used as the canonical form and both spellings resolve to the same book.
+public final class Isbn {
+
+    private Isbn() {
+    }
+
+    // Canonical ISBN-13 for a valid ISBN-10 or ISBN-13 (hyphens, spaces and an "ISBN" prefix
+    // are ignored), or null when the value is not a valid ISBN
+    public static String toIsbn13(String value) {
+        String compact = compact(value);
+        if (compact == null) {
+            return null;
+        }
+        if (compact.length() == 13) {
+            return isValidIsbn13(compact) ? compact : null;
+        }
+        if (compact.length() == 10 && isValidIsbn10(compact)) {
+            String body = "978" + compact.substring(0, 9);
+            return body + isbn13CheckDigit(body);
+        }
+        return null;
+    }
+
+    // ISBN-10 form of a canonical ISBN-13, or null for 979-prefixed numbers that have none
+    public static String toIsbn10(String isbn13) {
+        if (isbn13 == null || !isbn13.startsWith("978")) {
+            return null;
+        }
+        String body = isbn13.substring(3, 12);
+        return body + isbn10CheckDigit(body);
+    }
+
+    // Key used for identifier lookups: the canonical ISBN-13 when the value is an ISBN,
+    // otherwise the trimmed, upper-cased value (e.g. OCLC or publisher identifiers)
+    public static String lookupKey(String value) {
+        if (value == null) {
+            return null;
+        }
+        String isbn13 = toIsbn13(value);
+        if (isbn13 != null) {
+            return isbn13;
+        }
+        String trimmed = value.trim().toUpperCase(Locale.ROOT);
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static String compact(String value) {
+        if (value == null) {
+            return null;
+        }
+        String compact = value.trim().toUpperCase(Locale.ROOT);
+        if (compact.startsWith("ISBN")) {
+            compact = compact.substring(4);
+            if (compact.startsWith("-10") || compact.startsWith("-13")) {
+                compact = compact.substring(3);
+            }
+            if (compact.startsWith(":")) {
+                compact = compact.substring(1);
+            }
+        }
+        StringBuilder digits = new StringBuilder(13);
+        for (int i = 0; i < compact.length(); i++) {
+            char c = compact.charAt(i);
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            if ((c < '0' || c > '9') && c != 'X') {
+                return null;
+            }
+            digits.append(c);
+        }
+        return digits.toString();
+    }
+
+    private static boolean isValidIsbn10(String isbn) {
+        for (int i = 0; i < 9; i++) {
+            if (!Character.isDigit(isbn.charAt(i))) {
+                return false;
+            }
+        }
+        char last = isbn.charAt(9);
+        return (Character.isDigit(last) || last == 'X') && isbn10CheckDigit(isbn.substring(0, 9)) == last;
+    }
+
+    private static boolean isValidIsbn13(String isbn) {
+        for (int i = 0; i < 13; i++) {
+            if (!Character.isDigit(isbn.charAt(i))) {
+                return false;
+            }
+        }
+        return (isbn.startsWith("978") || isbn.startsWith("979"))
+                && isbn13CheckDigit(isbn.substring(0, 12)) == isbn.charAt(12);
+    }
+
+    private static char isbn10CheckDigit(String body) {
+        int sum = 0;
+        for (int i = 0; i < 9; i++) {
+            sum += (10 - i) * (body.charAt(i) - '0');
+        }
+        int check = (11 - sum % 11) % 11;
+        return check == 10 ? 'X' : (char) ('0' + check);
+    }
+
+    private static char isbn13CheckDigit(String body) {
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (i % 2 == 0 ? 1 : 3) * (body.charAt(i) - '0');
+        }
+        return (char) ('0' + (10 - sum % 10) % 10);
+    }
+}
@@ -0,0 +1,34 @@
+// KeysetCursor.java
+package com.example.library.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Opaque cursor tokens for keyset pagination. A cursor holds the sort key values
+// of the last row on a page, so the next page can start right after it.
+public final class KeysetCursor {
+    private static final String SEPARATOR = "\u0000";
+
+    private KeysetCursor() {
+    }
+
+    public static String encode(String... values) {
+        String joined = String.join(SEPARATOR, values);
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(joined.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String[] decode(String cursor, int expectedParts) {
+        String[] parts;
+        try {
+            String joined = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            parts = joined.split(SEPARATOR, -1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (parts.length != expectedParts) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return parts;
+    }
+}
@@ -0,0 +1,105 @@
+// LoanPolicyRegistry.java
+package com.example.library.service;
+
+import com.example.library.model.LoanPolicy;
+import com.example.library.repository.LoanPolicyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+// In-memory snapshot of the loan policies keyed by item type, so checkouts resolve their
+// policy without a query. The snapshot is immutable and swapped as a whole: after a local
+// policy change commits, and periodically to pick up changes made on other nodes.
+// Policies handed out are shared and must not be modified by callers.
+@Component
+public class LoanPolicyRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(LoanPolicyRegistry.class);
+
+    @Autowired
+    private LoanPolicyRepository loanPolicyRepository;
+
+    private final TransactionTemplate loadTransaction;
+
+    private final AtomicReference<Map<String, LoanPolicy>> policiesByItemType = new AtomicReference<>();
+
+    public LoanPolicyRegistry(PlatformTransactionManager transactionManager) {
+        // Loads run in their own transaction so the cached entities are detached from
+        // whichever request happened to trigger the load
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+        this.loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.loadTransaction.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${library.loan-policies.refresh-interval-ms:300000}",
+            initialDelayString = "${library.loan-policies.refresh-interval-ms:300000}")
+    public void reload() {
+        List<LoanPolicy> policies = loadTransaction.execute(status -> loanPolicyRepository.findAll());
+        Map<String, LoanPolicy> loaded = new HashMap<>();
+        for (LoanPolicy policy : policies) {
+            loaded.put(policy.getItemType(), policy);
+        }
+        policiesByItemType.set(Map.copyOf(loaded));
+        logger.debug("Loan policy registry loaded {} policies", loaded.size());
+    }
+
+    // A miss falls back to the database once, covering policies created on another node
+    // since the last refresh
+    public Optional<LoanPolicy> findByItemType(String itemType) {
+        if (itemType == null) {
+            return Optional.empty();
+        }
+        LoanPolicy policy = snapshot().get(itemType);
+        if (policy != null) {
+            return Optional.of(policy);
+        }
+        Optional<LoanPolicy> loaded = loadTransaction.execute(status -> loanPolicyRepository.findByItemType(itemType));
+        loaded.ifPresent(found -> policiesByItemType.updateAndGet(current -> {
+            Map<String, LoanPolicy> updated = new HashMap<>(current);
+            updated.putIfAbsent(found.getItemType(), found);
+            return Map.copyOf(updated);
+        }));
+        return loaded;
+    }
+
+    public List<LoanPolicy> findAll() {
+        List<LoanPolicy> policies = new ArrayList<>(snapshot().values());
+        policies.sort(Comparator.comparing(LoanPolicy::getId));
+        return policies;
+    }
+
+    // Reloads once the surrounding transaction commits, so a rolled back change is never served
+    public void reloadAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reload();
+                }
+            });
+        } else {
+            reload();
+        }
+    }
+
+    private Map<String, LoanPolicy> snapshot() {
+        Map<String, LoanPolicy> current = policiesByItemType.get();
+        if (current == null) {
+            reload();
+            current = policiesByItemType.get();
+        }
+        return current;
+    }
+}
@@ -0,0 +1,88 @@
+// LoanPolicyService.java
+package com.example.library.service;
+
+import com.example.library.model.LoanPolicy;
+import com.example.library.repository.LoanPolicyRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+public class LoanPolicyService {
+    @Autowired
+    private LoanPolicyRepository loanPolicyRepository;
+
+    @Autowired
+    private LoanPolicyRegistry loanPolicyRegistry;
+
+    public List<LoanPolicy> getAllPolicies() {
+        return loanPolicyRegistry.findAll();
+    }
+
+    public Optional<LoanPolicy> getPolicyByItemType(String itemType) {
+        return loanPolicyRegistry.findByItemType(itemType);
+    }
+
+    @Transactional
+    public LoanPolicy createPolicy(LoanPolicy request) {
+        validate(request);
+        if (request.getItemType() == null || request.getItemType().isBlank()) {
+            throw new IllegalArgumentException("Item type is required");
+        }
+        if (loanPolicyRepository.findByItemType(request.getItemType()).isPresent()) {
+            throw new IllegalArgumentException("A loan policy already exists for item type: " + request.getItemType());
+        }
+
+        LoanPolicy policy = new LoanPolicy();
+        policy.setItemType(request.getItemType());
+        applyChanges(policy, request);
+        policy.setCreatedAt(policy.getUpdatedAt());
+
+        LoanPolicy saved = loanPolicyRepository.save(policy);
+        loanPolicyRegistry.reloadAfterCommit();
+        return saved;
+    }
+
+    // The item type is the key books refer to, so it cannot be changed here
+    @Transactional
+    public Optional<LoanPolicy> updatePolicy(String itemType, LoanPolicy request) {
+        validate(request);
+        Optional<LoanPolicy> existing = loanPolicyRepository.findByItemType(itemType);
+        existing.ifPresent(policy -> {
+            applyChanges(policy, request);
+            loanPolicyRepository.save(policy);
+            loanPolicyRegistry.reloadAfterCommit();
+        });
+        return existing;
+    }
+
+    private void validate(LoanPolicy request) {
+        if (request.getLoanPeriodDays() == null || request.getLoanPeriodDays() < 1) {
+            throw new IllegalArgumentException("Loan period must be at least one day");
+        }
+        if (request.getMaxRenewals() == null || request.getMaxRenewals() < 0) {
+            throw new IllegalArgumentException("Max renewals cannot be negative");
+        }
+        if (request.getGracePeriodDays() != null && request.getGracePeriodDays() < 0) {
+            throw new IllegalArgumentException("Grace period cannot be negative");
+        }
+        if (request.getReminderDays() != null
+                && request.getReminderDays().stream().anyMatch(days -> days == null || days < 0)) {
+            throw new IllegalArgumentException("Reminder days must be non-negative");
+        }
+    }
+
+    private void applyChanges(LoanPolicy policy, LoanPolicy request) {
+        policy.setLoanPeriodDays(request.getLoanPeriodDays());
+        policy.setMaxRenewals(request.getMaxRenewals());
+        policy.setGracePeriodDays(request.getGracePeriodDays() != null ? request.getGracePeriodDays() : 0);
+        policy.setReminderDays(request.getReminderDays() != null
+                ? new ArrayList<>(request.getReminderDays()) : new ArrayList<>());
+        policy.setUpdatedAt(LocalDateTime.now());
+    }
+}
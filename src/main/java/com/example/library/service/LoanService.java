@@ -1,20 +1,30 @@
 // LoanService.java
 package com.example.library.service;
 
+import com.example.library.dto.BatchLoanResultDTO;
+import com.example.library.dto.CursorPageDTO;
 import com.example.library.dto.LoanDTO;
 import com.example.library.dto.LoanRenewalDTO;
+import com.example.library.exceptions.BorrowingLimitExceededException;
 import com.example.library.model.*;
 import com.example.library.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.scheduling.annotation.Scheduled;
 
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
@@ -32,7 +42,7 @@ public class LoanService {
     private LoanRenewalRepository loanRenewalRepository;
 
     @Autowired
-    private LoanPolicyRepository loanPolicyRepository;
+    private LoanPolicyRegistry loanPolicyRegistry;
 
     @Autowired
     private ReservationService reservationService;
@@ -43,10 +53,33 @@ public class LoanService {
     @Autowired
     private UserService userService;
 
-    public List<LoanDTO> getAllLoansDTO() {
-        return loanRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    @Autowired
+    private BorrowerCounters borrowerCounters;
+
+    @Autowired
+    private HoldShelfService holdShelfService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private static final int RENEWAL_BATCH_SIZE = 1000;
+    private static final int MAX_CIRCULATION_BATCH = 200;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+
+    private static final String CLAIM_COPY_SQL =
+            "UPDATE books SET copies_available = copies_available - 1 WHERE id = ? AND copies_available > 0";
+    private static final String RELEASE_COPY_SQL =
+            "UPDATE books SET copies_available = copies_available + 1 WHERE id = ? AND copies_available < copies_owned";
+    private static final String MARK_RETURNED_SQL =
+            "UPDATE loans SET return_date = ? WHERE id = ? AND return_date IS NULL";
+    private static final String INSERT_LOAN_SQL =
+            "INSERT INTO loans (book_id, user_id, loan_date, due_date, renewal_count, loan_policy_id) " +
+            "VALUES (?, ?, ?, ?, 0, ?)";
+
+    @Transactional(readOnly = true)
+    public List<LoanDTO> getAllLoansDTO(boolean includeHistory) {
+        return convertToDTOs(loanRepository.findAll(), includeHistory);
     }
 
     public Optional<LoanDTO> getLoanDTOById(Long id) {
@@ -54,16 +87,80 @@ public class LoanService {
                 .map(this::convertToDTO);
     }
 
-    public List<LoanDTO> getLoansDTOByUserId(Long userId) {
-        return loanRepository.findByUserId(userId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public List<LoanDTO> getLoansDTOByUserId(Long userId, boolean includeHistory) {
+        return convertToDTOs(loanRepository.findByUserId(userId), includeHistory);
     }
 
-    public List<LoanDTO> getLoansDTOByBookId(String bookId) {
-        return loanRepository.findByBookId(bookId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public List<LoanDTO> getLoansDTOByBookId(String bookId, boolean includeHistory) {
+        return convertToDTOs(loanRepository.findByBookId(bookId), includeHistory);
+    }
+
+    // Filtered, keyset-paginated loan search ordered by the original due date, then id.
+    // status is one of active, returned or overdue; due bounds apply to the effective due date.
+    // The order stays on due_date, which the keyset index serves: a renewed loan is listed
+    // where its original due date falls, not where its renewal due date does.
+    @Transactional(readOnly = true)
+    public CursorPageDTO<LoanDTO> searchLoans(String cursor, Integer size, String status,
+                                              LocalDate dueBefore, LocalDate dueAfter, String policyType,
+                                              String bookId, Long userId, boolean includeHistory) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+
+        Specification<Loan> spec = Specification.where(null);
+        if (cursor != null && !cursor.isBlank()) {
+            String[] key = KeysetCursor.decode(cursor, 2);
+            try {
+                spec = spec.and(LoanSpecifications.after(LocalDate.parse(key[0]), Long.valueOf(key[1])));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+        if (status != null && !status.isBlank()) {
+            switch (status.toLowerCase(Locale.ROOT)) {
+                case "active" -> spec = spec.and(LoanSpecifications.isActive());
+                case "returned" -> spec = spec.and(LoanSpecifications.isReturned());
+                case "overdue" -> spec = spec.and(LoanSpecifications.isOverdue(LocalDate.now()));
+                default -> throw new IllegalArgumentException("Unknown loan status: " + status);
+            }
+        }
+        if (dueBefore != null) {
+            spec = spec.and(LoanSpecifications.dueBefore(dueBefore));
+        }
+        if (dueAfter != null) {
+            spec = spec.and(LoanSpecifications.dueAfter(dueAfter));
+        }
+        if (policyType != null && !policyType.isBlank()) {
+            spec = spec.and(LoanSpecifications.hasPolicyType(policyType));
+        }
+        if (bookId != null && !bookId.isBlank()) {
+            spec = spec.and(LoanSpecifications.hasBook(bookId));
+        }
+        if (userId != null) {
+            spec = spec.and(LoanSpecifications.hasUser(userId));
+        }
+
+        // Fetch one extra row to find out whether another page follows; project() loads
+        // the to-one associations with the page instead of one query per loan
+        List<Loan> loans = loanRepository.findBy(spec, query -> query
+                .project("book", "user", "loanPolicy")
+                .sortBy(Sort.by("dueDate", "id"))
+                .limit(pageSize + 1)
+                .all());
+
+        boolean hasMore = loans.size() > pageSize;
+        if (hasMore) {
+            loans = loans.subList(0, pageSize);
+        }
+
+        CursorPageDTO<LoanDTO> page = new CursorPageDTO<>();
+        page.setItems(convertToDTOs(loans, includeHistory));
+        page.setSize(page.getItems().size());
+        if (hasMore) {
+            Loan last = loans.get(loans.size() - 1);
+            page.setNextCursor(KeysetCursor.encode(last.getDueDate().toString(), last.getId().toString()));
+        }
+        return page;
     }
 
     @Transactional
@@ -110,27 +207,99 @@ public class LoanService {
         if (loan.getReturnDate() != null) {
             throw new Exception("This book has already been returned");
         }
-
-        loan.setReturnDate(LocalDate.now());
         String bookId = loan.getBook().getId();
 
-        // Update book availability
-        Book book = loan.getBook();
-        synchronized(book) {
-            book.setCopiesAvailable(calculateAvailableCopies(book));
-            bookRepository.save(book);
+        // Both updates are conditional in the database, so a loan returned concurrently
+        // (on this node or another) releases its copy exactly once
+        if (loanRepository.markReturned(loanId, LocalDate.now()) == 0) {
+            throw new Exception("This book has already been returned");
         }
+        bookRepository.incrementCopiesAvailable(bookId);
 
-        // Check for overdue and create fine if necessary
-        if (loan.isOverdue()) {
-            fineService.createFineForOverdueBook(loan);
+        Loan returnedLoan = loanRepository.findById(loanId)
+                .orElseThrow(() -> new Exception("Loan not found"));
+
+        afterReturn(returnedLoan);
+        return convertToDTO(returnedLoan);
+    }
+
+    // Batch return for circulation desks. All loans are claimed with one JDBC batch of
+    // conditional updates and their copies released with a second one; the update
+    // counts give the per-item outcome. Runs in a single transaction.
+    @Transactional
+    public BatchLoanResultDTO batchReturn(List<Long> loanIds) {
+        checkBatchSize(loanIds);
+        List<Long> distinctIds = loanIds.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+
+        Map<Long, Object[]> existing = new HashMap<>();
+        if (!distinctIds.isEmpty()) {
+            String placeholders = String.join(",", Collections.nCopies(distinctIds.size(), "?"));
+            jdbcTemplate.query("SELECT id, book_id, return_date FROM loans WHERE id IN (" + placeholders + ")",
+                    rs -> {
+                        existing.put(rs.getLong(1), new Object[]{rs.getString(2), rs.getDate(3)});
+                    },
+                    distinctIds.toArray());
+        }
+
+        Map<Long, BatchLoanResultDTO.ItemResult> results = new LinkedHashMap<>();
+        List<Long> candidates = new ArrayList<>();
+        for (Long loanId : distinctIds) {
+            Object[] row = existing.get(loanId);
+            BatchLoanResultDTO.ItemResult result = new BatchLoanResultDTO.ItemResult();
+            result.setLoanId(loanId);
+            if (row == null) {
+                result.setMessage("Loan not found");
+            } else {
+                result.setBookId((String) row[0]);
+                if (row[1] != null) {
+                    result.setMessage("This book has already been returned");
+                } else {
+                    candidates.add(loanId);
+                }
+            }
+            results.put(loanId, result);
+        }
+
+        Date today = Date.valueOf(LocalDate.now());
+        int[] returned = jdbcTemplate.batchUpdate(MARK_RETURNED_SQL, candidates.stream()
+                .map(loanId -> new Object[]{today, loanId})
+                .collect(Collectors.toList()));
+        List<Long> returnedIds = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            BatchLoanResultDTO.ItemResult result = results.get(candidates.get(i));
+            if (returned[i] == 1) {
+                returnedIds.add(candidates.get(i));
+                result.setSuccess(true);
+            } else {
+                result.setMessage("This book has already been returned");
+            }
+        }
+
+        jdbcTemplate.batchUpdate(RELEASE_COPY_SQL, returnedIds.stream()
+                .map(loanId -> new Object[]{results.get(loanId).getBookId()})
+                .collect(Collectors.toList()));
+
+        // Loaded after the updates, so the entities already carry their return dates
+        if (!returnedIds.isEmpty()) {
+            for (Loan loan : loanRepository.findByIdIn(returnedIds)) {
+                afterReturn(loan);
+            }
+        }
+
+        return toBatchResult(new ArrayList<>(results.values()));
+    }
+
+    private void afterReturn(Loan returnedLoan) {
+        borrowerCounters.loanEnded(returnedLoan.getUser().getId(),
+                returnedLoan.getLoanPolicy() != null ? returnedLoan.getLoanPolicy().getItemType() : null);
+
+        // Check for a late return and create or top up the fine if necessary
+        if (returnedLoan.wasReturnedLate()) {
+            fineService.createFineForOverdueBook(returnedLoan);
         } else {
             // If no fine needs to be created, process reservations directly
-            reservationService.processNextReservation(bookId);
+            reservationService.processNextReservation(returnedLoan.getBook().getId());
         }
-
-        Loan returnedLoan = loanRepository.save(loan);
-        return convertToDTO(returnedLoan);
     }
 
     @Transactional
@@ -142,33 +311,174 @@ public class LoanService {
                 .orElseThrow(() -> new Exception("User not found"));
 
         // Get policy based on book's policy type
-        LoanPolicy policy = loanPolicyRepository.findByItemType(book.getPolicyType())
+        LoanPolicy policy = loanPolicyRegistry.findByItemType(book.getPolicyType())
                 .orElseThrow(() -> new Exception("No loan policy found for book type: " + book.getPolicyType()));
 
-        synchronized(book) {
-            if (book.getCopiesAvailable() <= 0) {
-                throw new Exception("No copies available for checkout");
+        // Borrowing limits come from the in-memory counters; the slot is given back on rollback
+        borrowerCounters.acquireLoan(user, policy.getItemType());
+
+        // A copy on hold for this member is collected from the hold shelf. Otherwise claim a copy
+        // with a conditional decrement; this is the only availability check that holds under
+        // concurrent checkouts across nodes, and held copies are not counted as available.
+        if (!holdShelfService.collectHold(bookId, userId) && bookRepository.decrementCopiesAvailable(bookId) == 0) {
+            // Checked exceptions commit the transaction, so the slot is given back explicitly
+            borrowerCounters.releaseLoan(userId, policy.getItemType());
+            throw new Exception("No copies available for checkout");
+        }
+
+        Loan loan = new Loan();
+        loan.setBook(book);
+        loan.setUser(user);
+        loan.setLoanDate(LocalDate.now());
+        loan.setDueDate(LocalDate.now().plusDays(policy.getLoanPeriodDays()));
+        loan.setLoanPolicy(policy);
+        loan.setRenewalCount(0);
+
+        return convertToDTO(loanRepository.save(loan));
+    }
+
+    // Batch checkout for circulation desks: the user is looked up once, policies come from
+    // the registry, the user's holds on the cart are collected together, the other copies are
+    // claimed with one JDBC batch of conditional decrements (a title may appear several times
+    // in the cart) and the loans are written with one batch insert. Runs in a single transaction.
+    @Transactional
+    public BatchLoanResultDTO batchCheckout(Long userId, List<String> bookIds) throws Exception {
+        checkBatchSize(bookIds);
+        if (userId == null) {
+            throw new Exception("User not found");
+        }
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new Exception("User not found"));
+
+        Map<String, String> policyTypes = new HashMap<>();
+        Set<String> distinctIds = bookIds.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        if (!distinctIds.isEmpty()) {
+            for (Object[] row : bookRepository.findPolicyTypesByIdIn(distinctIds)) {
+                policyTypes.put((String) row[0], (String) row[1]);
+            }
+        }
+        List<BatchLoanResultDTO.ItemResult> results = new ArrayList<>();
+        List<BatchLoanResultDTO.ItemResult> candidates = new ArrayList<>();
+        List<LoanPolicy> candidatePolicies = new ArrayList<>();
+        for (String bookId : bookIds) {
+            BatchLoanResultDTO.ItemResult result = new BatchLoanResultDTO.ItemResult();
+            result.setBookId(bookId);
+            results.add(result);
+
+            String policyType = policyTypes.get(bookId);
+            if (policyType == null) {
+                result.setMessage("Book not found");
+                continue;
             }
+            LoanPolicy policy = loanPolicyRegistry.findByItemType(policyType).orElse(null);
+            if (policy == null) {
+                result.setMessage("No loan policy found for book type: " + policyType);
+                continue;
+            }
+            candidates.add(result);
+            candidatePolicies.add(policy);
+        }
+
+        // One copy per collected hold; every other item claims a copy from the shelf
+        Map<String, Long> collectedHolds = new HashMap<>(holdShelfService.collectHolds(userId,
+                candidates.stream().map(BatchLoanResultDTO.ItemResult::getBookId).collect(Collectors.toSet())));
+        Long[] holds = new Long[candidates.size()];
+        List<Integer> toClaim = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            holds[i] = collectedHolds.remove(candidates.get(i).getBookId());
+            if (holds[i] == null) {
+                toClaim.add(i);
+            }
+        }
+        int[] claimedFromShelf = jdbcTemplate.batchUpdate(CLAIM_COPY_SQL, toClaim.stream()
+                .map(i -> new Object[]{candidates.get(i).getBookId()})
+                .collect(Collectors.toList()));
+        int[] claimed = new int[candidates.size()];
+        for (int i = 0; i < candidates.size(); i++) {
+            claimed[i] = holds[i] != null ? 1 : 0;
+        }
+        for (int j = 0; j < toClaim.size(); j++) {
+            claimed[toClaim.get(j)] = claimedFromShelf[j];
+        }
 
-            Loan loan = new Loan();
-            loan.setBook(book);
-            loan.setUser(user);
-            loan.setLoanDate(LocalDate.now());
-            loan.setDueDate(LocalDate.now().plusDays(policy.getLoanPeriodDays()));
-            loan.setLoanPolicy(policy);
-            loan.setRenewalCount(0);
+        // Borrowing limits are applied in cart order to the items that got a copy; copies
+        // claimed for items over the limit are put back with one more batch, held ones on hold
+        LocalDate today = LocalDate.now();
+        List<BatchLoanResultDTO.ItemResult> loans = new ArrayList<>();
+        List<LoanPolicy> loanPolicies = new ArrayList<>();
+        List<Object[]> overLimit = new ArrayList<>();
+        List<Long> overLimitHolds = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            BatchLoanResultDTO.ItemResult result = candidates.get(i);
+            if (claimed[i] != 1) {
+                result.setMessage("No copies available for checkout");
+                continue;
+            }
+            try {
+                borrowerCounters.acquireLoan(user, candidatePolicies.get(i).getItemType());
+            } catch (BorrowingLimitExceededException e) {
+                result.setMessage(e.getMessage());
+                if (holds[i] != null) {
+                    overLimitHolds.add(holds[i]);
+                } else {
+                    overLimit.add(new Object[]{result.getBookId()});
+                }
+                continue;
+            }
+            result.setDueDate(today.plusDays(candidatePolicies.get(i).getLoanPeriodDays()));
+            loans.add(result);
+            loanPolicies.add(candidatePolicies.get(i));
+        }
+        if (!overLimit.isEmpty()) {
+            jdbcTemplate.batchUpdate(RELEASE_COPY_SQL, overLimit);
+        }
+        holdShelfService.restoreHolds(overLimitHolds);
+
+        if (!loans.isEmpty()) {
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(
+                    connection -> connection.prepareStatement(INSERT_LOAN_SQL, new String[]{"id"}),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            BatchLoanResultDTO.ItemResult result = loans.get(i);
+                            ps.setString(1, result.getBookId());
+                            ps.setLong(2, userId);
+                            ps.setDate(3, Date.valueOf(today));
+                            ps.setDate(4, Date.valueOf(result.getDueDate()));
+                            ps.setLong(5, loanPolicies.get(i).getId());
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return loans.size();
+                        }
+                    },
+                    keyHolder);
+
+            List<Map<String, Object>> keys = keyHolder.getKeyList();
+            for (int i = 0; i < loans.size(); i++) {
+                loans.get(i).setLoanId(((Number) keys.get(i).values().iterator().next()).longValue());
+                loans.get(i).setSuccess(true);
+            }
+        }
 
-            // Update book availability
-            book.setCopiesAvailable(calculateAvailableCopies(book) - 1);
-            bookRepository.save(book);
+        return toBatchResult(results);
+    }
 
-            return convertToDTO(loanRepository.save(loan));
+    private void checkBatchSize(List<?> items) {
+        if (items == null || items.size() > MAX_CIRCULATION_BATCH) {
+            throw new IllegalArgumentException("A batch must contain between 0 and " + MAX_CIRCULATION_BATCH + " items");
         }
     }
 
-    private int calculateAvailableCopies(Book book) {
-        int activeLoans = loanRepository.findByBookIdAndReturnDateIsNull(book.getId()).size();
-        return book.getCopiesOwned() - activeLoans;
+    private BatchLoanResultDTO toBatchResult(List<BatchLoanResultDTO.ItemResult> results) {
+        BatchLoanResultDTO dto = new BatchLoanResultDTO();
+        dto.setTotal(results.size());
+        dto.setSucceeded((int) results.stream().filter(BatchLoanResultDTO.ItemResult::isSuccess).count());
+        dto.setFailed(dto.getTotal() - dto.getSucceeded());
+        dto.setResults(results);
+        return dto;
     }
 
     private void validateRenewal(Loan loan) throws Exception {
@@ -202,7 +512,33 @@ public class LoanService {
                 .collect(Collectors.toList());
     }
 
+    // Builds DTOs for many loans with one renewal query per batch of loan ids
+    // (renewing users included) instead of one per loan
+    private List<LoanDTO> convertToDTOs(List<Loan> loans, boolean includeHistory) {
+        Map<Long, List<LoanRenewal>> renewalsByLoan = new HashMap<>();
+        if (includeHistory) {
+            List<Long> loanIds = loans.stream().map(Loan::getId).collect(Collectors.toList());
+            for (int from = 0; from < loanIds.size(); from += RENEWAL_BATCH_SIZE) {
+                List<Long> batch = loanIds.subList(from, Math.min(from + RENEWAL_BATCH_SIZE, loanIds.size()));
+                for (LoanRenewal renewal : loanRenewalRepository.findWithCreatedByByLoanIdIn(batch)) {
+                    renewalsByLoan.computeIfAbsent(renewal.getLoan().getId(), id -> new ArrayList<>()).add(renewal);
+                }
+            }
+        }
+
+        return loans.stream()
+                .map(loan -> convertToDTO(loan, includeHistory
+                        ? renewalsByLoan.getOrDefault(loan.getId(), List.of())
+                        : null))
+                .collect(Collectors.toList());
+    }
+
     private LoanDTO convertToDTO(Loan loan) {
+        return convertToDTO(loan, loanRenewalRepository.findByLoanIdOrderByRenewalDateDesc(loan.getId()));
+    }
+
+    // renewals: newest first, or null to leave the history out
+    private LoanDTO convertToDTO(Loan loan, List<LoanRenewal> renewals) {
         LoanDTO dto = new LoanDTO();
         dto.setId(loan.getId());
         dto.setBookId(loan.getBook().getId());
@@ -224,13 +560,11 @@ public class LoanService {
         // Calculate if the loan is overdue
         dto.setIsOverdue(loan.isOverdue());
 
-        // Get and set renewal history
-        List<LoanRenewal> renewals = loanRenewalRepository
-                .findByLoanIdOrderByRenewalDateDesc(loan.getId());
-
-        dto.setRenewalHistory(renewals.stream()
-                .map(this::convertRenewalToDTO)
-                .collect(Collectors.toList()));
+        if (renewals != null) {
+            dto.setRenewalHistory(renewals.stream()
+                    .map(this::convertRenewalToDTO)
+                    .collect(Collectors.toList()));
+        }
 
         return dto;
     }
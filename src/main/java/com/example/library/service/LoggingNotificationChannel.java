@@ -0,0 +1,24 @@
+// LoggingNotificationChannel.java
+package com.example.library.service;
+
+import com.example.library.dto.NotificationDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Default channel: writes notifications to the application log (in a real system, this would send an email/SMS)
+@Component
+@ConditionalOnProperty(name = "library.notifications.channel", havingValue = "log", matchIfMissing = true)
+public class LoggingNotificationChannel implements NotificationChannel {
+    private static final Logger logger = LoggerFactory.getLogger(LoggingNotificationChannel.class);
+
+    @Override
+    public void send(NotificationDTO notification) {
+        logger.info("NOTIFICATION: to user {} <{}>: {} (notification {})",
+                notification.getUserId(),
+                notification.getEmail(),
+                notification.getMessage(),
+                notification.getId());
+    }
+}
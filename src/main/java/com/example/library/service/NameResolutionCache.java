@@ -0,0 +1,124 @@
+// NameResolutionCache.java
+package com.example.library.service;
+
+import com.example.library.dto.CacheStatsDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+
+// Bounded name -> id caches for authors and categories, so cataloguing does not
+// look up the same names on every write. Names are keyed case-insensitively to
+// match the MySQL collation of the unique name columns.
+@Component
+public class NameResolutionCache {
+
+    private final NameCache authors;
+    private final NameCache categories;
+
+    public NameResolutionCache(@Value("${library.cache.names.max-size:10000}") long maxSize,
+                               @Value("${library.cache.names.ttl-minutes:10}") long ttlMinutes) {
+        this.authors = new NameCache("authors", maxSize, Duration.ofMinutes(ttlMinutes));
+        this.categories = new NameCache("categories", maxSize, Duration.ofMinutes(ttlMinutes));
+    }
+
+    public NameCache authors() {
+        return authors;
+    }
+
+    public NameCache categories() {
+        return categories;
+    }
+
+    public List<CacheStatsDTO> stats() {
+        return List.of(authors.stats(), categories.stats());
+    }
+
+    public static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    public static class NameCache {
+        private final String name;
+        private final Cache<String, Long> ids;
+
+        NameCache(String name, long maxSize, Duration ttl) {
+            this.name = name;
+            this.ids = Caffeine.newBuilder()
+                    .maximumSize(maxSize)
+                    .expireAfterWrite(ttl)
+                    .recordStats()
+                    .build();
+        }
+
+        public Long get(String name) {
+            return ids.getIfPresent(key(name));
+        }
+
+        // Cached ids for the given names, keyed by normalized name; misses are left out
+        public Map<String, Long> getAll(Collection<String> names) {
+            Set<String> keys = new HashSet<>();
+            names.forEach(name -> keys.add(key(name)));
+            return ids.getAllPresent(keys);
+        }
+
+        public void put(String name, Long id) {
+            ids.put(key(name), id);
+        }
+
+        // For rows created in the current transaction: only cache them once they exist for everyone
+        public void putAfterCommit(String name, Long id) {
+            afterCommit(() -> put(name, id));
+        }
+
+        public void invalidate(Long id) {
+            ids.asMap().values().removeIf(id::equals);
+        }
+
+        public void invalidateName(String name) {
+            ids.invalidate(key(name));
+        }
+
+        // For rows renamed or deleted in the current transaction: a lookup running alongside it
+        // still sees the old row and may cache it again, so the entries are dropped on commit
+        public void invalidateAfterCommit(Long id, String name) {
+            afterCommit(() -> {
+                invalidate(id);
+                if (name != null) {
+                    invalidateName(name);
+                }
+            });
+        }
+
+        private static void afterCommit(Runnable action) {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        action.run();
+                    }
+                });
+            } else {
+                action.run();
+            }
+        }
+
+        CacheStatsDTO stats() {
+            CacheStats stats = ids.stats();
+            CacheStatsDTO dto = new CacheStatsDTO();
+            dto.setName(name);
+            dto.setSize(ids.estimatedSize());
+            dto.setHitCount(stats.hitCount());
+            dto.setMissCount(stats.missCount());
+            dto.setHitRate(stats.hitRate());
+            dto.setEvictionCount(stats.evictionCount());
+            return dto;
+        }
+    }
+}
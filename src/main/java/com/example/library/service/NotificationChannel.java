@@ -0,0 +1,11 @@
+// NotificationChannel.java
+package com.example.library.service;
+
+import com.example.library.dto.NotificationDTO;
+
+// Delivery channel for outbox notifications. Called once per notification; throwing makes
+// the dispatcher retry it later with backoff. Delivery is at least once, so a notification
+// may be repeated if a node stops between sending it and recording it as sent.
+public interface NotificationChannel {
+    void send(NotificationDTO notification) throws Exception;
+}
@@ -0,0 +1,151 @@
+// NotificationDispatcher.java
+package com.example.library.service;
+
+import com.example.library.dto.NotificationDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Drains the notification outbox to the NotificationChannel in batches of due rows, read in
+// (next_attempt_at, id) order over the outbox index. Each batch is leased to this node with a
+// conditional update that also counts the attempt, so nodes dispatching at the same time never
+// pick the same notification; a node that stops mid-batch leaves its lease to run out and the
+// notification is sent again. Failed deliveries are retried with exponential backoff until
+// library.notifications.max-attempts, then marked FAILED.
+@Service
+public class NotificationDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    private static final String SELECT_DUE_SQL =
+            "SELECT id, type, user_id, email, message, created_at, attempts FROM notification_outbox " +
+            "WHERE status = 'PENDING' AND next_attempt_at <= ? ORDER BY next_attempt_at, id LIMIT ?";
+    private static final String CLAIM_SQL =
+            "UPDATE notification_outbox SET attempts = attempts + 1, next_attempt_at = ? " +
+            "WHERE id = ? AND status = 'PENDING' AND attempts = ?";
+    private static final String SENT_SQL =
+            "UPDATE notification_outbox SET status = 'SENT', sent_at = ?, last_error = NULL WHERE id = ?";
+    private static final String RETRY_SQL =
+            "UPDATE notification_outbox SET next_attempt_at = ?, last_error = ? WHERE id = ?";
+    private static final String FAILED_SQL =
+            "UPDATE notification_outbox SET status = 'FAILED', last_error = ? WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NotificationChannel notificationChannel;
+
+    @Value("${library.notifications.batch-size:100}")
+    private int batchSize;
+
+    @Value("${library.notifications.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${library.notifications.backoff-base-ms:5000}")
+    private long backoffBaseMs;
+
+    @Value("${library.notifications.backoff-max-ms:3600000}")
+    private long backoffMaxMs;
+
+    @Value("${library.notifications.lease-ms:300000}")
+    private long leaseMs;
+
+    @Scheduled(fixedDelayString = "${library.notifications.dispatch-interval-ms:1000}")
+    public int dispatch() {
+        return dispatch(System.currentTimeMillis());
+    }
+
+    // Delivers the notifications due by nowMs; returns how many were sent
+    public int dispatch(long nowMs) {
+        int sent = 0;
+        while (true) {
+            List<NotificationDTO> due = jdbcTemplate.query(SELECT_DUE_SQL, (rs, rowNum) -> {
+                NotificationDTO notification = new NotificationDTO();
+                notification.setId(rs.getLong(1));
+                notification.setType(rs.getString(2));
+                notification.setUserId(rs.getObject(3) != null ? rs.getLong(3) : null);
+                notification.setEmail(rs.getString(4));
+                notification.setMessage(rs.getString(5));
+                notification.setCreatedAt(rs.getTimestamp(6).toLocalDateTime());
+                notification.setAttempt(rs.getInt(7) + 1);
+                return notification;
+            }, new Timestamp(nowMs), batchSize);
+            if (due.isEmpty()) {
+                break;
+            }
+            sent += deliver(claim(due, nowMs), nowMs);
+            if (due.size() < batchSize) {
+                break;
+            }
+        }
+        return sent;
+    }
+
+    private List<NotificationDTO> claim(List<NotificationDTO> due, long nowMs) {
+        Timestamp leaseEnd = new Timestamp(nowMs + leaseMs);
+        int[] claimed = jdbcTemplate.batchUpdate(CLAIM_SQL, due.stream()
+                .map(notification -> new Object[]{leaseEnd, notification.getId(), notification.getAttempt() - 1})
+                .collect(Collectors.toList()));
+        List<NotificationDTO> leased = new ArrayList<>();
+        for (int i = 0; i < due.size(); i++) {
+            if (claimed[i] == 1) {
+                leased.add(due.get(i));
+            }
+        }
+        return leased;
+    }
+
+    private int deliver(List<NotificationDTO> notifications, long nowMs) {
+        List<Object[]> sent = new ArrayList<>();
+        List<Object[]> retries = new ArrayList<>();
+        List<Object[]> failed = new ArrayList<>();
+        Timestamp now = new Timestamp(nowMs);
+        for (NotificationDTO notification : notifications) {
+            try {
+                notificationChannel.send(notification);
+                sent.add(new Object[]{now, notification.getId()});
+            } catch (Exception e) {
+                String error = truncate(e.toString());
+                if (notification.getAttempt() >= maxAttempts) {
+                    logger.error("Giving up on notification {} after {} attempts: {}",
+                            notification.getId(), notification.getAttempt(), error);
+                    failed.add(new Object[]{error, notification.getId()});
+                } else {
+                    logger.warn("Notification {} failed (attempt {}), will retry: {}",
+                            notification.getId(), notification.getAttempt(), error);
+                    retries.add(new Object[]{new Timestamp(nowMs + backoffMs(notification.getAttempt())),
+                            error, notification.getId()});
+                }
+            }
+        }
+
+        if (!sent.isEmpty()) {
+            jdbcTemplate.batchUpdate(SENT_SQL, sent);
+        }
+        if (!retries.isEmpty()) {
+            jdbcTemplate.batchUpdate(RETRY_SQL, retries);
+        }
+        if (!failed.isEmpty()) {
+            jdbcTemplate.batchUpdate(FAILED_SQL, failed);
+        }
+        return sent.size();
+    }
+
+    // Doubles with every failed attempt, up to backoff-max-ms
+    private long backoffMs(int attempt) {
+        return Math.min(backoffBaseMs << Math.min(attempt - 1, 30), backoffMaxMs);
+    }
+
+    private static String truncate(String error) {
+        return error.length() <= 500 ? error : error.substring(0, 500);
+    }
+}
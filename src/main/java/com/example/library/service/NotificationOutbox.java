@@ -0,0 +1,48 @@
+// NotificationOutbox.java
+package com.example.library.service;
+
+import com.example.library.dto.NotificationDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Transactional outbox for patron notifications. Rows are written in the transaction making
+// the change being reported, so they commit or roll back with it; NotificationDispatcher
+// delivers them afterwards, off the request path.
+@Service
+public class NotificationOutbox {
+    public static final String HOLD_READY = "HOLD_READY";
+    public static final String DUE_DATE_REMINDER = "DUE_DATE_REMINDER";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO notification_outbox (type, user_id, email, message, status, attempts, next_attempt_at, created_at) " +
+            "VALUES (?, ?, ?, ?, 'PENDING', 0, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String type, Long userId, String email, String message) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.update(INSERT_SQL, type, userId, email, message, now, now);
+    }
+
+    // Batch form of enqueue; only the user id, email and message of each notification are used
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueAll(String type, List<NotificationDTO> notifications) {
+        if (notifications.isEmpty()) {
+            return;
+        }
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.batchUpdate(INSERT_SQL, notifications.stream()
+                .map(notification -> new Object[]{type, notification.getUserId(), notification.getEmail(),
+                        notification.getMessage(), now, now})
+                .collect(Collectors.toList()));
+    }
+}
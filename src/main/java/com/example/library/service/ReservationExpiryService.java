@@ -0,0 +1,190 @@
+// ReservationExpiryService.java
+package com.example.library.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+// Expires ACTIVE reservations once their expiration date passes. Upcoming expirations are held
+// in a timer wheel: seeded at startup and topped up every reseed interval from the
+// (status, expiration_date) index, and fed directly by new reservations on this node. Each tick
+// only touches the reservations that fell due, with one guarded batch update, so a reservation
+// expired by another node (or fulfilled meanwhile) is simply skipped.
+@Service
+public class ReservationExpiryService {
+    private static final Logger logger = LoggerFactory.getLogger(ReservationExpiryService.class);
+
+    private static final int WHEEL_SIZE = 64;
+    private static final int WHEEL_LEVELS = 4;
+
+    private static final String SELECT_EXPIRING_SQL =
+            "SELECT id, expiration_date FROM reservations " +
+            "WHERE status = 'ACTIVE' AND expiration_date < ? AND id > ? ORDER BY id LIMIT ?";
+    private static final String EXPIRE_SQL =
+            "UPDATE reservations SET status = 'EXPIRED', active_marker = NULL " +
+            "WHERE id = ? AND status = 'ACTIVE' AND expiration_date <= ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BorrowerCounters borrowerCounters;
+
+    private final TransactionTemplate transactionTemplate;
+    private final TimerWheel<Long> wheel;
+    private final long reseedIntervalMs;
+
+    @Value("${library.reservations.expiry-batch-size:500}")
+    private int batchSize;
+
+    public ReservationExpiryService(PlatformTransactionManager transactionManager,
+                                    @Value("${library.reservations.expiry-tick-ms:1000}") long tickMs,
+                                    @Value("${library.reservations.expiry-reseed-interval-ms:3600000}") long reseedIntervalMs) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.wheel = new TimerWheel<>(System.currentTimeMillis(), tickMs, WHEEL_SIZE, WHEEL_LEVELS);
+        this.reseedIntervalMs = reseedIntervalMs;
+    }
+
+    // Loads every ACTIVE reservation that expires before the next reseed; later ones are
+    // picked up by a later reseed, which keeps the wheel small
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${library.reservations.expiry-reseed-interval-ms:3600000}",
+            initialDelayString = "${library.reservations.expiry-reseed-interval-ms:3600000}")
+    public void reseed() {
+        // A minute of overlap so nothing slips between two reseeds
+        Timestamp horizon = new Timestamp(System.currentTimeMillis() + reseedIntervalMs + 60_000);
+        long afterId = 0;
+        int loaded = 0;
+        while (true) {
+            List<long[]> rows = jdbcTemplate.query(SELECT_EXPIRING_SQL,
+                    (rs, rowNum) -> new long[]{rs.getLong(1), rs.getTimestamp(2).getTime()},
+                    horizon, afterId, batchSize);
+            synchronized (wheel) {
+                for (long[] row : rows) {
+                    wheel.schedule(row[0], row[1]);
+                }
+            }
+            loaded += rows.size();
+            if (rows.size() < batchSize) {
+                break;
+            }
+            afterId = rows.get(rows.size() - 1)[0];
+        }
+        logger.debug("Reservation expiry wheel seeded with {} reservations", loaded);
+    }
+
+    @Scheduled(fixedDelayString = "${library.reservations.expiry-tick-ms:1000}")
+    public void tick() {
+        expireDue(System.currentTimeMillis());
+    }
+
+    // Expires the reservations that fell due by nowMs; returns how many were expired
+    public int expireDue(long nowMs) {
+        List<Long> due;
+        synchronized (wheel) {
+            due = wheel.advance(nowMs);
+        }
+        if (due.isEmpty()) {
+            return 0;
+        }
+
+        Timestamp now = new Timestamp(nowMs);
+        int expired = 0;
+        List<Long> failed = new ArrayList<>();
+        for (int from = 0; from < due.size(); from += batchSize) {
+            List<Long> batch = due.subList(from, Math.min(from + batchSize, due.size()));
+            try {
+                Integer count = transactionTemplate.execute(status -> expireBatch(batch, now));
+                expired += count != null ? count : 0;
+            } catch (RuntimeException e) {
+                logger.error("Failed to expire {} reservations", batch.size(), e);
+                failed.addAll(batch);
+            }
+        }
+        // Already taken off the wheel, so put them back to be tried again on the next tick
+        synchronized (wheel) {
+            for (Long reservationId : failed) {
+                wheel.schedule(reservationId, nowMs);
+            }
+        }
+        if (expired > 0) {
+            logger.info("Expired {} reservations", expired);
+        }
+        return expired;
+    }
+
+    // Registers a reservation once the transaction creating it commits
+    public void scheduleAfterCommit(Long reservationId, LocalDateTime expirationDate) {
+        long deadlineMs = Timestamp.valueOf(expirationDate).getTime();
+        afterCommit(() -> {
+            synchronized (wheel) {
+                wheel.schedule(reservationId, deadlineMs);
+            }
+        });
+    }
+
+    public void cancelAfterCommit(Long reservationId) {
+        afterCommit(() -> {
+            synchronized (wheel) {
+                wheel.cancel(reservationId);
+            }
+        });
+    }
+
+    public int getScheduledCount() {
+        synchronized (wheel) {
+            return wheel.size();
+        }
+    }
+
+    private int expireBatch(List<Long> reservationIds, Timestamp now) {
+        Map<Long, Long> userIds = new HashMap<>();
+        String placeholders = String.join(",", Collections.nCopies(reservationIds.size(), "?"));
+        jdbcTemplate.query("SELECT id, user_id FROM reservations WHERE id IN (" + placeholders + ")",
+                rs -> {
+                    userIds.put(rs.getLong(1), rs.getLong(2));
+                },
+                reservationIds.toArray());
+
+        int[] updated = jdbcTemplate.batchUpdate(EXPIRE_SQL, reservationIds.stream()
+                .map(id -> new Object[]{id, now})
+                .collect(Collectors.toList()));
+
+        int expired = 0;
+        for (int i = 0; i < reservationIds.size(); i++) {
+            if (updated[i] == 1) {
+                expired++;
+                borrowerCounters.reservationEnded(userIds.get(reservationIds.get(i)));
+            }
+        }
+        return expired;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -2,19 +2,30 @@
 package com.example.library.service;
 
 import com.example.library.dto.ReservationDTO;
+import com.example.library.exceptions.BorrowingLimitExceededException;
 import com.example.library.model.*;
 import com.example.library.repository.ReservationRepository;
 import com.example.library.repository.BookRepository;
 import com.example.library.repository.UserRepository;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,12 +39,35 @@ public class ReservationService {
     @Autowired
     private UserRepository userRepository;
 
-    private static final Logger logger = LoggerFactory.getLogger(ReservationService.class);
+    @Autowired
+    private BorrowerCounters borrowerCounters;
+
+    @Autowired
+    private ReservationExpiryService reservationExpiryService;
+
+    @Autowired
+    private HoldShelfService holdShelfService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private static final int QUEUE_POSITION_BATCH_SIZE = 1000;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public ReservationService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    private static final String INSERT_RESERVATION_SQL =
+            "INSERT INTO reservations (book_id, user_id, reservation_date, expiration_date, status, active_marker) " +
+            "VALUES (?, ?, ?, ?, 'ACTIVE', TRUE)";
+    private static final String SELECT_OPEN_RESERVATION_SQL =
+            "SELECT id, reservation_date, expiration_date, status, pickup_deadline FROM reservations " +
+            "WHERE book_id = ? AND user_id = ? AND active_marker = TRUE";
 
     public List<ReservationDTO> getAllReservationsDTO() {
-        return reservationRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return convertToDTOs(reservationRepository.findAll());
     }
 
     public Optional<ReservationDTO> getReservationDTOById(Long id) {
@@ -42,18 +76,40 @@ public class ReservationService {
     }
 
     public List<ReservationDTO> getReservationsDTOByUserId(Long userId) {
-        return reservationRepository.findByUserId(userId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return convertToDTOs(reservationRepository.findByUserId(userId));
     }
 
     public List<ReservationDTO> getReservationsDTOByBookId(String bookId) {
-        return reservationRepository.findByBookId(bookId).stream()
-                .map(this::convertToDTO)
+        return convertToDTOs(reservationRepository.findByBookId(bookId));
+    }
+
+    // Builds DTOs with the queue positions of all active reservations looked up together,
+    // one window query per batch instead of a scan of the book's queue per reservation
+    private List<ReservationDTO> convertToDTOs(List<Reservation> reservations) {
+        List<Reservation> active = reservations.stream()
+                .filter(reservation -> reservation.getStatus() == Reservation.Status.ACTIVE)
+                .collect(Collectors.toList());
+
+        Map<Long, Integer> positions = new HashMap<>();
+        for (int from = 0; from < active.size(); from += QUEUE_POSITION_BATCH_SIZE) {
+            List<Reservation> batch = active.subList(from, Math.min(from + QUEUE_POSITION_BATCH_SIZE, active.size()));
+            Set<String> bookIds = batch.stream().map(reservation -> reservation.getBook().getId()).collect(Collectors.toSet());
+            List<Long> ids = batch.stream().map(Reservation::getId).collect(Collectors.toList());
+            for (Object[] row : reservationRepository.findQueuePositions(bookIds, ids)) {
+                positions.put(((Number) row[0]).longValue(), ((Number) row[1]).intValue());
+            }
+        }
+
+        return reservations.stream()
+                .map(reservation -> convertToDTO(reservation, positions.get(reservation.getId())))
                 .collect(Collectors.toList());
     }
 
     private ReservationDTO convertToDTO(Reservation reservation) {
+        return convertToDTOs(List.of(reservation)).get(0);
+    }
+
+    private ReservationDTO convertToDTO(Reservation reservation, Integer queuePosition) {
         ReservationDTO dto = new ReservationDTO();
         dto.setId(reservation.getId());
         dto.setBookId(reservation.getBook().getId());
@@ -63,96 +119,123 @@ public class ReservationService {
         dto.setReservationDate(reservation.getReservationDate());
         dto.setExpirationDate(reservation.getExpirationDate());
         dto.setStatus(reservation.getStatus());
+        dto.setPickupDeadline(reservation.getPickupDeadline());
 
-        // Calculate queue position if status is ACTIVE
-        if (reservation.getStatus() == Reservation.Status.ACTIVE) {
-            dto.setQueuePosition(calculateQueuePosition(reservation));
-        }
+        // Only ACTIVE reservations have a queue position
+        dto.setQueuePosition(queuePosition);
 
         return dto;
     }
 
-    private Integer calculateQueuePosition(Reservation reservation) {
-        List<Reservation> activeReservations = reservationRepository
-                .findByBookIdAndStatusOrderByReservationDateAsc(
-                        reservation.getBook().getId(),
-                        Reservation.Status.ACTIVE
-                );
-
-        for (int i = 0; i < activeReservations.size(); i++) {
-            if (activeReservations.get(i).getId().equals(reservation.getId())) {
-                return i + 1;
-            }
-        }
-        return null;
-    }
-
+    // Reservations past their expiration date no longer count, even before the sweeper marks them
     public boolean hasActiveReservations(String bookId) {
-        return reservationRepository.countByBookIdAndStatus(
+        return reservationRepository.countByBookIdAndStatusAndExpirationDateAfter(
                 bookId,
-                Reservation.Status.ACTIVE
+                Reservation.Status.ACTIVE,
+                LocalDateTime.now()
         ) > 0;
     }
 
-    @Transactional
+    // Creates the member's reservation, or returns their open one for the book. The insert fails
+    // with a duplicate key when the (book, user, active_marker) unique key already holds an open
+    // reservation, so concurrent requests (double clicks, retries) end up with a single one and
+    // the losers simply get it back. The reservation limit is taken before the insert and handed
+    // back by the rollback when the member already has an open reservation.
+    // The insert runs in its own transaction, and a loser reads the open reservation after it
+    // ends: a read inside it could miss a row committed after its snapshot, and a locking read
+    // would deadlock with the other losers, which all hold a shared lock from the duplicate key.
     public ReservationDTO reserveBook(String bookId, Long userId) throws Exception {
-        Book book = bookRepository.findById(bookId)
-                .orElseThrow(() -> new Exception("Book not found"));
+        List<Object[]> bookRows = bookRepository.findTitleAndCopiesAvailableById(bookId);
+        if (bookRows.isEmpty()) {
+            throw new Exception("Book not found");
+        }
+        Object[] bookRow = bookRows.get(0);
 
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new Exception("User not found"));
 
-        if (book.getCopiesAvailable() > 0) {
+        if (bookRow[1] != null && (Integer) bookRow[1] > 0) {
             throw new Exception("Book is available for immediate checkout, no need for reservation");
         }
 
-        // Check if user already has an active reservation for this book
-        Optional<Reservation> existingReservation = reservationRepository
-                .findByBookIdAndUserIdAndStatus(bookId, userId, Reservation.Status.ACTIVE);
-        if (existingReservation.isPresent()) {
-            throw new Exception("You already have an active reservation for this book");
-        }
+        // Only the id and title are read when building the DTO
+        Book book = new Book();
+        book.setId(bookId);
+        book.setTitle((String) bookRow[0]);
 
+        LocalDateTime now = LocalDateTime.now();
         Reservation reservation = new Reservation();
         reservation.setBook(book);
         reservation.setUser(user);
-        reservation.setReservationDate(LocalDateTime.now());
-        reservation.setExpirationDate(LocalDateTime.now().plusDays(7));
+        reservation.setReservationDate(now);
+        reservation.setExpirationDate(now.plusDays(7));
         reservation.setStatus(Reservation.Status.ACTIVE);
-
-        Reservation savedReservation = reservationRepository.save(reservation);
-        return convertToDTO(savedReservation);
+        reservation.setActiveMarker(true);
+
+        Long id;
+        try {
+            id = transactionTemplate.execute(status -> insertReservation(reservation, status));
+        } catch (BorrowingLimitExceededException e) {
+            // A member at the limit who asks again for a book they have reserved gets it back
+            Optional<Reservation> open = findOpenReservation(book, user);
+            if (open.isEmpty()) {
+                throw e;
+            }
+            return convertToDTO(open.get());
+        }
+        if (id == null) {
+            return convertToDTO(findOpenReservation(book, user)
+                    .orElseThrow(() -> new Exception("Reservation could not be created")));
+        }
+        reservation.setId(id);
+        return convertToDTO(reservation);
     }
 
-    @Transactional
-    public void processNextReservation(String bookId) {
-        // Get the book
-        Book book = bookRepository.findById(bookId)
-                .orElseThrow(() -> new RuntimeException("Book not found"));
-
-        // Only process if there are available copies
-        if (book.getCopiesAvailable() <= 0) {
-            return;
+    // Returns the new reservation's id, or null if the member already has an open one
+    private Long insertReservation(Reservation reservation, TransactionStatus status) {
+        borrowerCounters.acquireReservation(reservation.getUser());
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        try {
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(INSERT_RESERVATION_SQL, new String[]{"id"});
+                ps.setString(1, reservation.getBook().getId());
+                ps.setLong(2, reservation.getUser().getId());
+                ps.setTimestamp(3, Timestamp.valueOf(reservation.getReservationDate()));
+                ps.setTimestamp(4, Timestamp.valueOf(reservation.getExpirationDate()));
+                return ps;
+            }, keyHolder);
+        } catch (DuplicateKeyException e) {
+            status.setRollbackOnly();
+            return null;
         }
 
-        // Get the next active reservation in queue
-        List<Reservation> activeReservations = reservationRepository
-                .findByBookIdAndStatusOrderByReservationDateAsc(bookId, Reservation.Status.ACTIVE);
-
-        if (!activeReservations.isEmpty()) {
-            Reservation nextReservation = activeReservations.get(0);
+        long id = keyHolder.getKey().longValue();
+        reservationExpiryService.scheduleAfterCommit(id, reservation.getExpirationDate());
+        return id;
+    }
 
-            // Update reservation status
-            nextReservation.setStatus(Reservation.Status.FULFILLED);
-            reservationRepository.save(nextReservation);
+    private Optional<Reservation> findOpenReservation(Book book, User user) {
+        return jdbcTemplate.query(SELECT_OPEN_RESERVATION_SQL, (rs, rowNum) -> {
+            Reservation reservation = new Reservation();
+            reservation.setId(rs.getLong(1));
+            reservation.setBook(book);
+            reservation.setUser(user);
+            reservation.setReservationDate(rs.getTimestamp(2).toLocalDateTime());
+            reservation.setExpirationDate(rs.getTimestamp(3).toLocalDateTime());
+            reservation.setStatus(Reservation.Status.valueOf(rs.getString(4)));
+            Timestamp pickupDeadline = rs.getTimestamp(5);
+            reservation.setPickupDeadline(pickupDeadline != null ? pickupDeadline.toLocalDateTime() : null);
+            reservation.setActiveMarker(true);
+            return reservation;
+        }, book.getId(), user.getId()).stream().findFirst();
+    }
 
-            // Log notification (in a real system, this would send an email/SMS)
-            logger.info("NOTIFICATION: Book '{}' is now available for user '{}'. Reservation ID: {}. " +
-                            "The book will be held for 48 hours.",
-                    book.getTitle(),
-                    nextReservation.getUser().getUsername(),
-                    nextReservation.getId());
-        }
+    // Called when a copy is put back on the shelf: it goes to the hold shelf for the next
+    // reservation in line, if any
+    @Transactional
+    public void processNextReservation(String bookId) {
+        holdShelfService.holdForNextReservation(bookId);
     }
 
     // Modify the existing fulfillReservation method to be internal only
@@ -0,0 +1,111 @@
+// StatsService.java
+package com.example.library.service;
+
+import com.example.library.dto.CacheStatsDTO;
+import com.example.library.dto.LibraryStatsDTO;
+import com.example.library.dto.UserStatsDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+public class StatsService {
+    // Every dashboard figure as a scalar subquery, so the whole set costs one round trip
+    private static final String LIBRARY_STATS_SQL =
+            "SELECT " +
+            "(SELECT COUNT(*) FROM books) AS total_titles, " +
+            "(SELECT COALESCE(SUM(copies_owned), 0) FROM books) AS total_copies, " +
+            "(SELECT COALESCE(SUM(copies_available), 0) FROM books) AS available_copies, " +
+            "(SELECT COUNT(*) FROM users) AS total_users, " +
+            "(SELECT COUNT(*) FROM loans WHERE return_date IS NULL) AS active_loans, " +
+            "(SELECT COUNT(*) FROM loans WHERE return_date IS NULL " +
+            "    AND COALESCE(renewal_due_date, due_date) < ?) AS overdue_loans, " +
+            "(SELECT COUNT(*) FROM reservations WHERE status = 'ACTIVE') AS active_reservations, " +
+            "(SELECT COUNT(*) FROM fines WHERE date_paid IS NULL) AS unpaid_fine_count, " +
+            "(SELECT COALESCE(SUM(amount), 0) FROM fines WHERE date_paid IS NULL) AS unpaid_fine_total";
+
+    private static final String USER_STATS_SQL =
+            "SELECT " +
+            "(SELECT COUNT(*) FROM loans WHERE user_id = ? AND return_date IS NULL) AS active_loans, " +
+            "(SELECT COUNT(*) FROM loans WHERE user_id = ? AND return_date IS NULL " +
+            "    AND COALESCE(renewal_due_date, due_date) < ?) AS overdue_loans, " +
+            "(SELECT COUNT(*) FROM reservations WHERE user_id = ?) AS reservations, " +
+            "(SELECT COUNT(*) FROM reservations WHERE user_id = ? AND status = 'ACTIVE') AS active_reservations, " +
+            "(SELECT COALESCE(SUM(f.amount), 0) FROM fines f JOIN loans l ON l.id = f.loan_id " +
+            "    WHERE l.user_id = ? AND f.date_paid IS NULL) AS unpaid_fine_total";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NameResolutionCache nameResolutionCache;
+
+    @Value("${library.stats.cache-ttl-ms:10000}")
+    private long cacheTtlMillis;
+
+    private volatile LibraryStatsDTO cachedStats;
+    private volatile long cachedAtMillis;
+
+    public LibraryStatsDTO getLibraryStats() {
+        LibraryStatsDTO stats = cachedStats;
+        if (stats != null && System.currentTimeMillis() - cachedAtMillis < cacheTtlMillis) {
+            return stats;
+        }
+
+        // Only one thread refreshes an expired snapshot; the others wait and reuse it
+        synchronized (this) {
+            if (cachedStats != null && System.currentTimeMillis() - cachedAtMillis < cacheTtlMillis) {
+                return cachedStats;
+            }
+            stats = loadLibraryStats();
+            cachedStats = stats;
+            cachedAtMillis = System.currentTimeMillis();
+            return stats;
+        }
+    }
+
+    public UserStatsDTO getUserStats(Long userId) {
+        Date today = Date.valueOf(LocalDate.now());
+        return jdbcTemplate.queryForObject(USER_STATS_SQL, (rs, rowNum) -> {
+            UserStatsDTO dto = new UserStatsDTO();
+            dto.setUserId(userId);
+            dto.setActiveLoans(rs.getLong("active_loans"));
+            dto.setOverdueLoans(rs.getLong("overdue_loans"));
+            dto.setReservations(rs.getLong("reservations"));
+            dto.setActiveReservations(rs.getLong("active_reservations"));
+            dto.setUnpaidFineTotal(rs.getBigDecimal("unpaid_fine_total"));
+            return dto;
+        }, userId, userId, today, userId, userId, userId);
+    }
+
+    public List<CacheStatsDTO> getCacheStats() {
+        List<CacheStatsDTO> stats = new ArrayList<>();
+        stats.addAll(nameResolutionCache.stats());
+        return stats;
+    }
+
+    private LibraryStatsDTO loadLibraryStats() {
+        Date today = Date.valueOf(LocalDate.now());
+        return jdbcTemplate.queryForObject(LIBRARY_STATS_SQL, (rs, rowNum) -> {
+            LibraryStatsDTO dto = new LibraryStatsDTO();
+            dto.setTotalTitles(rs.getLong("total_titles"));
+            dto.setTotalCopies(rs.getLong("total_copies"));
+            dto.setAvailableCopies(rs.getLong("available_copies"));
+            dto.setTotalUsers(rs.getLong("total_users"));
+            dto.setActiveLoans(rs.getLong("active_loans"));
+            dto.setOverdueLoans(rs.getLong("overdue_loans"));
+            dto.setActiveReservations(rs.getLong("active_reservations"));
+            dto.setUnpaidFineCount(rs.getLong("unpaid_fine_count"));
+            dto.setUnpaidFineTotal(rs.getBigDecimal("unpaid_fine_total"));
+            dto.setGeneratedAt(LocalDateTime.now());
+            return dto;
+        }, today);
+    }
+}
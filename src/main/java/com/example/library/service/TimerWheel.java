@@ -0,0 +1,120 @@
+// TimerWheel.java
+package com.example.library.service;
+
+import java.util.*;
+
+// Hierarchical timing wheel. Level 0 has one slot per tick; each level above covers a whole
+// turn of the level below per slot. Scheduling and cancelling are O(1); advancing costs one
+// step per elapsed tick plus the entries that fall due or cascade to a finer level. Deadlines
+// beyond the top level are parked in its last reachable slot and re-placed when they cascade.
+// Not thread-safe on its own; callers synchronize.
+final class TimerWheel<K> {
+    private final long originMs;
+    private final long tickMs;
+    private final int wheelSize;
+    private final long[] levelSpans;
+    private final List<Map<Integer, Set<K>>> levels = new ArrayList<>();
+    private final Map<K, Entry> entries = new HashMap<>();
+    private final Set<K> overdue = new LinkedHashSet<>();
+    private long currentTick;
+
+    private record Entry(long deadlineTick, int level, int slot) {
+    }
+
+    TimerWheel(long nowMs, long tickMs, int wheelSize, int levelCount) {
+        this.originMs = nowMs;
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.levelSpans = new long[levelCount];
+        long span = 1;
+        for (int level = 0; level < levelCount; level++) {
+            levelSpans[level] = span;
+            span *= wheelSize;
+            levels.add(new HashMap<>());
+        }
+    }
+
+    // Schedules or reschedules key; a deadline that has already passed is due on the next advance
+    void schedule(K key, long deadlineMs) {
+        cancel(key);
+        place(key, Math.max(tickOf(deadlineMs), currentTick));
+    }
+
+    boolean cancel(K key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return overdue.remove(key);
+        }
+        Set<K> bucket = levels.get(entry.level()).get(entry.slot());
+        bucket.remove(key);
+        if (bucket.isEmpty()) {
+            levels.get(entry.level()).remove(entry.slot());
+        }
+        return true;
+    }
+
+    // Moves the wheel forward to nowMs and returns the keys whose deadline has been reached
+    List<K> advance(long nowMs) {
+        List<K> due = new ArrayList<>();
+        long targetTick = Math.floorDiv(nowMs - originMs, tickMs);
+        while (currentTick < targetTick) {
+            currentTick++;
+            for (int level = levelSpans.length - 1; level > 0; level--) {
+                if (currentTick % levelSpans[level] == 0) {
+                    cascade(level);
+                }
+            }
+            Set<K> bucket = levels.get(0).remove(slotOf(currentTick, 0));
+            if (bucket != null) {
+                for (K key : bucket) {
+                    entries.remove(key);
+                    due.add(key);
+                }
+            }
+        }
+        due.addAll(overdue);
+        overdue.clear();
+        return due;
+    }
+
+    int size() {
+        return entries.size() + overdue.size();
+    }
+
+    private void cascade(int level) {
+        Set<K> bucket = levels.get(level).remove(slotOf(currentTick, level));
+        if (bucket == null) {
+            return;
+        }
+        for (K key : bucket) {
+            place(key, entries.remove(key).deadlineTick());
+        }
+    }
+
+    private void place(K key, long deadlineTick) {
+        long delta = deadlineTick - currentTick;
+        if (delta <= 0) {
+            overdue.add(key);
+            return;
+        }
+        int top = levelSpans.length - 1;
+        int level = 0;
+        while (level < top && delta >= levelSpans[level + 1]) {
+            level++;
+        }
+        // Park far deadlines in the farthest slot of the top level that is still ahead
+        long placementTick = Math.min(deadlineTick, currentTick + levelSpans[top] * (wheelSize - 1));
+        int slot = slotOf(placementTick, level);
+        levels.get(level).computeIfAbsent(slot, s -> new LinkedHashSet<>()).add(key);
+        entries.put(key, new Entry(deadlineTick, level, slot));
+    }
+
+    private int slotOf(long tick, int level) {
+        return (int) ((tick / levelSpans[level]) % wheelSize);
+    }
+
+    // Deadlines round up, so a key never fires before its deadline
+    private long tickOf(long timeMs) {
+        return Math.floorDiv(timeMs - originMs + tickMs - 1, tickMs);
+    }
+}
@@ -48,6 +48,13 @@ public class UserService {
         return userRepository.findByUsername(username);
     }
 
+    // For access checks: an unknown id belongs to nobody
+    public boolean isUser(Long id, String username) {
+        return userRepository.findById(id)
+                .map(user -> user.getUsername().equals(username))
+                .orElse(false);
+    }
+
     public User registerMember(RegistrationDTO registrationDTO) {
         validateNewUser(registrationDTO.getUsername(), registrationDTO.getEmail());
 
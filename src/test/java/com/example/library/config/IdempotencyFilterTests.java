@@ -0,0 +1,216 @@
+package com.example.library.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs outside a test transaction so each request commits or rolls back its key for real
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(IdempotencyFilter.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdempotencyFilterTests {
+
+    @Autowired
+    private IdempotencyFilter filter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    void clearKeys() {
+        jdbcTemplate.update("DELETE FROM idempotency_keys");
+    }
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void retryIsAnsweredFromTheStoreWithoutRunningAgain() throws Exception {
+        FilterChain chain = respondingWith(200, "{\"id\":42}");
+
+        MockHttpServletResponse first = send("desk1", "/api/loans/checkout", "bookId=b1&userId=7", "key-1", chain);
+        MockHttpServletResponse retry = send("desk1", "/api/loans/checkout", "bookId=b1&userId=7", "key-1", chain);
+
+        assertThat(executions).hasValue(1);
+        assertThat(first.getContentAsString()).isEqualTo("{\"id\":42}");
+        assertThat(retry.getStatus()).isEqualTo(200);
+        assertThat(retry.getContentAsString()).isEqualTo("{\"id\":42}");
+        assertThat(retry.getContentType()).isEqualTo("application/json");
+        assertThat(retry.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(first.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isNull();
+    }
+
+    @Test
+    void clientErrorsAreRecordedButServerErrorsAreNot() throws Exception {
+        send("desk1", "/api/loans/5/return", null, "key-4xx", respondingWith(400, "already returned"));
+        MockHttpServletResponse replayed = send("desk1", "/api/loans/5/return", null, "key-4xx", respondingWith(200, "ok"));
+        assertThat(replayed.getStatus()).isEqualTo(400);
+
+        send("desk1", "/api/fines/9/pay", null, "key-5xx", respondingWith(503, "busy"));
+        MockHttpServletResponse retried = send("desk1", "/api/fines/9/pay", null, "key-5xx", respondingWith(200, "paid"));
+        assertThat(retried.getStatus()).isEqualTo(200);
+        assertThat(executions).hasValue(3);
+    }
+
+    @Test
+    void retryOnAnotherNodeIsAnsweredFromTheSharedStore() throws Exception {
+        IdempotencyFilter otherNode = new IdempotencyFilter(jdbcTemplate, transactionManager, 60_000, 5_000);
+        FilterChain chain = respondingWith(200, "{\"id\":43}");
+
+        send(filter, "desk1", "/api/loans/checkout", "bookId=b3&userId=7", "key-n", chain);
+        MockHttpServletResponse retry = send(otherNode, "desk1", "/api/loans/checkout", "bookId=b3&userId=7",
+                "key-n", chain);
+
+        assertThat(executions).hasValue(1);
+        assertThat(retry.getContentAsString()).isEqualTo("{\"id\":43}");
+        assertThat(retry.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    void serverErrorRollsBackWhatTheRequestWrote() throws Exception {
+        FilterChain failing = (request, response) -> {
+            executions.incrementAndGet();
+            jdbcTemplate.update("INSERT INTO job_checkpoints (job_name, run_date, last_id, completed) " +
+                    "VALUES ('idempotency-test', CURRENT_DATE, 0, FALSE)");
+            ((HttpServletResponse) response).setStatus(500);
+        };
+
+        send("desk1", "/api/fines/10/pay", null, "key-rb", failing);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM job_checkpoints WHERE job_name = 'idempotency-test'",
+                Integer.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM idempotency_keys", Integer.class)).isZero();
+    }
+
+    @Test
+    void expiredKeysArePurged() throws Exception {
+        send("desk1", "/api/loans/6/return", null, "key-old", respondingWith(200, "ok"));
+        send("desk1", "/api/loans/7/return", null, "key-new", respondingWith(200, "ok"));
+        jdbcTemplate.update("UPDATE idempotency_keys SET created_at = ? WHERE idempotency_key = 'key-old'",
+                new Timestamp(System.currentTimeMillis() - 86_400_000L - 1_000));
+
+        assertThat(filter.purgeExpired()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForList("SELECT idempotency_key FROM idempotency_keys", String.class))
+                .containsExactly("key-new");
+    }
+
+    @Test
+    void keysAreScopedToTheUserAndTheRequest() throws Exception {
+        FilterChain chain = respondingWith(200, "renewed");
+        send("desk1", "/api/loans/3/renew", null, "shared", chain);
+
+        MockHttpServletResponse otherUser = send("desk2", "/api/loans/3/renew", null, "shared", chain);
+        assertThat(otherUser.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isNull();
+
+        MockHttpServletResponse otherLoan = send("desk1", "/api/loans/4/renew", null, "shared", chain);
+        assertThat(otherLoan.getStatus()).isEqualTo(422);
+        assertThat(executions).hasValue(2);
+    }
+
+    @Test
+    void requestsWithoutAKeyOrOutsideTheCoveredEndpointsPassThrough() throws Exception {
+        FilterChain chain = respondingWith(200, "ok");
+        send("desk1", "/api/loans/checkout", "bookId=b1&userId=7", null, chain);
+        send("desk1", "/api/loans/checkout", "bookId=b1&userId=7", null, chain);
+        send("desk1", "/api/loans/batch-return", null, "key-b", chain);
+        send("desk1", "/api/loans/batch-return", null, "key-b", chain);
+
+        assertThat(executions).hasValue(4);
+    }
+
+    @Test
+    void concurrentRetryWaitsForTheFirstAttempt() throws Exception {
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        FilterChain slowChain = (request, response) -> {
+            executions.incrementAndGet();
+            firstStarted.countDown();
+            try {
+                releaseFirst.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response.getWriter().write("done");
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<MockHttpServletResponse> first = executor.submit(
+                    () -> send("desk1", "/api/loans/checkout", "bookId=b2&userId=8", "slow", slowChain));
+            assertThat(firstStarted.await(10, TimeUnit.SECONDS)).isTrue();
+            Future<MockHttpServletResponse> retry = executor.submit(
+                    () -> send("desk1", "/api/loans/checkout", "bookId=b2&userId=8", "slow", slowChain));
+
+            Thread.sleep(100);
+            assertThat(retry.isDone()).isFalse();
+            releaseFirst.countDown();
+
+            assertThat(first.get(10, TimeUnit.SECONDS).getContentAsString()).isEqualTo("done");
+            assertThat(retry.get(10, TimeUnit.SECONDS).getContentAsString()).isEqualTo("done");
+            assertThat(executions).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private FilterChain respondingWith(int status, String body) {
+        return (request, response) -> {
+            executions.incrementAndGet();
+            HttpServletResponse httpResponse = (HttpServletResponse) response;
+            httpResponse.setStatus(status);
+            httpResponse.setContentType("application/json");
+            httpResponse.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+    private MockHttpServletResponse send(String username, String path, String query, String key,
+                                         FilterChain chain) throws Exception {
+        return send(filter, username, path, query, key, chain);
+    }
+
+    private MockHttpServletResponse send(IdempotencyFilter filter, String username, String path, String query,
+                                         String key, FilterChain chain) throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(username, null, List.of()));
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setQueryString(query);
+        if (key != null) {
+            request.addHeader(IdempotencyFilter.HEADER, key);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.library.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// A chunk size of 2 makes the export cross several chunk boundaries
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(BookExportService.class)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@TestPropertySource(properties = "library.export.chunk-size=2")
+class BookExportServiceTests {
+
+    @Autowired
+    private BookExportService bookExportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String suffix;
+    private String quoted;
+    private String plain;
+
+    @BeforeEach
+    void setUp() {
+        TestData testData = new TestData(jdbcTemplate);
+        suffix = TestData.suffix();
+
+        quoted = testData.createBook("Say \"Hi\", World", 2, 1);
+        jdbcTemplate.update("UPDATE books SET description = ? WHERE id = ?", "Line one\nline two", quoted);
+        long zed = createName("authors", "Zed " + suffix);
+        long smith = createName("authors", "Smith, J " + suffix);
+        long fiction = createName("categories", "Fiction " + suffix);
+        jdbcTemplate.update("INSERT INTO book_authors (book_id, author_id) VALUES (?, ?), (?, ?)",
+                quoted, zed, quoted, smith);
+        jdbcTemplate.update("INSERT INTO book_categories (book_id, category_id) VALUES (?, ?)", quoted, fiction);
+        jdbcTemplate.update("INSERT INTO industry_identifiers (book_id, type, identifier) VALUES (?, 'ISBN_13', ?)",
+                quoted, "9780306406157");
+
+        plain = testData.createBook("Plain", 1, 1);
+        testData.createBook("Another", 1, 1);
+    }
+
+    @Test
+    void ndjsonWritesOneObjectPerBookWithItsCollections() throws Exception {
+        String output = export(BookExportService.Format.NDJSON);
+
+        Map<String, JsonNode> byId = new HashMap<>();
+        for (String line : output.split("\n")) {
+            JsonNode node = objectMapper.readTree(line);
+            byId.put(node.get("id").asText(), node);
+        }
+        assertThat(byId).hasSize(bookCount());
+
+        JsonNode book = byId.get(quoted);
+        assertThat(book.get("title").asText()).isEqualTo("Say \"Hi\", World");
+        assertThat(book.get("description").asText()).isEqualTo("Line one\nline two");
+        assertThat(book.get("authors")).extracting(JsonNode::asText)
+                .containsExactly("Smith, J " + suffix, "Zed " + suffix);
+        assertThat(book.get("categories")).extracting(JsonNode::asText).containsExactly("Fiction " + suffix);
+        assertThat(book.get("industryIdentifiers").get(0).get("identifier").asText()).isEqualTo("9780306406157");
+
+        JsonNode empty = byId.get(plain);
+        assertThat(empty.get("authors")).isEmpty();
+        assertThat(empty.get("categories")).isEmpty();
+        assertThat(empty.get("industryIdentifiers")).isEmpty();
+    }
+
+    @Test
+    void csvQuotesAndEscapesFieldsThatNeedIt() throws Exception {
+        String output = export(BookExportService.Format.CSV);
+
+        assertThat(output).startsWith("id,title,publishedDate,description,averageRating,ratingsCount," +
+                "thumbnailUrl,copiesOwned,copiesAvailable,policyType,authors,categories,industryIdentifiers\n");
+        assertThat(output).contains("\n" + quoted + ",\"Say \"\"Hi\"\", World\",,\"Line one\nline two\",,,,2,1,BOOK," +
+                "\"Smith, J " + suffix + "|Zed " + suffix + "\",Fiction " + suffix + ",ISBN_13:9780306406157\n");
+        assertThat(output).contains("\n" + plain + ",Plain,,,,,,1,1,BOOK,,,\n");
+    }
+
+    private String export(BookExportService.Format format) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        bookExportService.exportCatalog(format, outputStream);
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+
+    private long createName(String table, String name) {
+        jdbcTemplate.update("INSERT INTO " + table + " (name) VALUES (?)", name);
+        return jdbcTemplate.queryForObject("SELECT id FROM " + table + " WHERE name = ?", Long.class, name);
+    }
+
+    private int bookCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM books", Integer.class);
+    }
+}
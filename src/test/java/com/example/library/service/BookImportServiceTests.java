@@ -0,0 +1,147 @@
+package com.example.library.service;
+
+import com.example.library.dto.BulkImportResultDTO;
+import com.example.library.dto.BulkImportResultDTO.ItemResult;
+import com.example.library.dto.GoogleBooksDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Chunks commit on their own, so the test runs outside a test transaction
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({BookImportService.class, BookSearchIndex.class, IdentifierIndex.class, NameResolutionCache.class})
+@TestPropertySource(properties = "library.import.chunk-size=2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookImportServiceTests {
+
+    @Autowired
+    private BookImportService bookImportService;
+
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+
+    @Autowired
+    private NameResolutionCache nameResolutionCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TestData testData;
+    private String suffix;
+
+    @BeforeEach
+    void setUp() {
+        testData = new TestData(jdbcTemplate);
+        suffix = TestData.suffix();
+    }
+
+    @Test
+    void reportsOneResultPerVolumeInRequestOrder() {
+        GoogleBooksDTO first = volume("a", "First");
+        GoogleBooksDTO untitled = volume("b", null);
+        GoogleBooksDTO noId = volume("c", "No id");
+        noId.setId(" ");
+        GoogleBooksDTO repeated = volume("a", "First again");
+        GoogleBooksDTO second = volume("d", "Second");
+
+        BulkImportResultDTO result = bookImportService.importGoogleBooks(
+                Arrays.asList(first, untitled, null, noId, repeated, second));
+
+        assertThat(result.getTotal()).isEqualTo(6);
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getFailed()).isEqualTo(4);
+        assertThat(result.getResults()).extracting(ItemResult::isSuccess)
+                .containsExactly(true, false, false, false, false, true);
+        assertThat(result.getResults()).extracting(ItemResult::getMessage)
+                .containsExactly(null, "Missing title", "Missing volume", "Missing id", "Duplicate id in request", null);
+        assertThat(bookCount(first.getId(), second.getId())).isEqualTo(2);
+    }
+
+    @Test
+    void booksAlreadyInTheCatalogAreReportedAsDuplicates() {
+        String existing = testData.createBook("Existing", 1, 1);
+        GoogleBooksDTO again = volume("x", "Existing");
+        again.setId(existing);
+        GoogleBooksDTO fresh = volume("y", "Fresh");
+
+        BulkImportResultDTO result = bookImportService.importGoogleBooks(List.of(again, fresh));
+
+        assertThat(result.getResults()).extracting(ItemResult::getMessage)
+                .containsExactly("Book already exists in the database", null);
+        assertThat(jdbcTemplate.queryForObject("SELECT title FROM books WHERE id = ?", String.class, existing))
+                .isEqualTo("Existing");
+        assertThat(bookCount(fresh.getId())).isEqualTo(1);
+    }
+
+    @Test
+    void aFailedChunkIsRetriedItemByItem() {
+        GoogleBooksDTO good = volume("g", "Good");
+        good.getVolumeInfo().setAuthors(List.of("Author " + suffix, "author " + suffix));
+        GoogleBooksDTO bad = volume("h", "Bad");
+        // Identifiers need a type, so this volume's insert fails and takes the chunk with it
+        GoogleBooksDTO.IndustryIdentifier identifier = new GoogleBooksDTO.IndustryIdentifier();
+        identifier.setIdentifier("9780306406157");
+        bad.getVolumeInfo().setIndustryIdentifiers(List.of(identifier));
+        GoogleBooksDTO nextChunk = volume("i", "Next chunk");
+
+        BulkImportResultDTO result = bookImportService.importGoogleBooks(List.of(good, bad, nextChunk));
+
+        assertThat(result.getResults()).extracting(ItemResult::isSuccess).containsExactly(true, false, true);
+        assertThat(result.getResults().get(1).getMessage()).isNotBlank();
+        assertThat(bookCount(good.getId(), bad.getId(), nextChunk.getId())).isEqualTo(2);
+        // Names differing only in case resolve to one author row and one join row
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM book_authors WHERE book_id = ?",
+                Integer.class, good.getId())).isEqualTo(1);
+        assertThat(bookSearchIndex.search("good " + suffix, 0, 10).hits())
+                .extracting(BookSearchIndex.SearchHit::bookId)
+                .contains(good.getId())
+                .doesNotContain(bad.getId());
+    }
+
+    @Test
+    void staleCachedNamesFallBackToTheDatabase() {
+        jdbcTemplate.update("INSERT INTO authors (name) VALUES (?)", "Deleted " + suffix);
+        long deletedId = jdbcTemplate.queryForObject("SELECT id FROM authors WHERE name = ?", Long.class,
+                "Deleted " + suffix);
+        jdbcTemplate.update("DELETE FROM authors WHERE id = ?", deletedId);
+        nameResolutionCache.authors().put("Stale " + suffix, deletedId);
+        GoogleBooksDTO volume = volume("s", "Stale");
+        volume.getVolumeInfo().setAuthors(List.of("Stale " + suffix));
+
+        BulkImportResultDTO result = bookImportService.importGoogleBooks(List.of(volume));
+
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT a.name FROM book_authors ba JOIN authors a " +
+                "ON a.id = ba.author_id WHERE ba.book_id = ?", String.class, volume.getId())).isEqualTo("Stale " + suffix);
+    }
+
+    private GoogleBooksDTO volume(String name, String title) {
+        GoogleBooksDTO volume = new GoogleBooksDTO();
+        volume.setId("vol-" + name + "-" + suffix);
+        GoogleBooksDTO.VolumeInfo info = new GoogleBooksDTO.VolumeInfo();
+        info.setTitle(title != null ? title + " " + suffix : null);
+        volume.setVolumeInfo(info);
+        return volume;
+    }
+
+    private int bookCount(String... ids) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM books WHERE id IN (" +
+                String.join(",", Collections.nCopies(ids.length, "?")) + ")", Integer.class, (Object[]) ids);
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.library.service;
+
+import com.example.library.dto.BookDTO;
+import com.example.library.model.Book;
+import com.example.library.repository.BookRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BookSearchIndexTests {
+
+    private final BookSearchIndex index = new BookSearchIndex();
+
+    @Test
+    void tokenizerFoldsCaseAndAccentsAndDropsStopWords() {
+        assertThat(BookSearchIndex.tokenize("The Lord of the Rings: García's RETURN!"))
+                .containsExactly("lord", "rings", "garcia", "s", "return");
+        assertThat(BookSearchIndex.tokenize("Catch-22 and 1984")).containsExactly("catch", "22", "1984");
+        assertThat(BookSearchIndex.tokenize("  ")).isEmpty();
+        assertThat(BookSearchIndex.tokenize(null)).isEmpty();
+        assertThat(BookSearchIndex.tokenize("the of and")).isEmpty();
+    }
+
+    @Test
+    void exactTermsRankAbovePrefixExpansions() {
+        add("b1", "Foundation", null);
+        add("b2", "Found", null);
+        add("b3", "Dune", null);
+
+        assertThat(index.search("found", 0, 10).hits())
+                .extracting(BookSearchIndex.SearchHit::bookId)
+                .containsExactly("b2", "b1");
+        assertThat(index.search("FOUN", 0, 10).totalHits()).isEqualTo(2);
+        assertThat(index.search("foundations", 0, 10).totalHits()).isZero();
+    }
+
+    @Test
+    void prefixExpansionsAreCappedButTheExactTermAlwaysCounts() {
+        for (int i = 0; i < 70; i++) {
+            add(String.format("x%02d", i), String.format("zeta%02d", i), null);
+        }
+
+        assertThat(index.search("zeta", 0, 100).totalHits()).isEqualTo(64);
+
+        add("exact", "Zeta", null);
+        assertThat(index.search("zeta", 0, 100).totalHits()).isEqualTo(65);
+        assertThat(index.search("zeta", 0, 1).hits())
+                .extracting(BookSearchIndex.SearchHit::bookId)
+                .containsExactly("exact");
+    }
+
+    @Test
+    void bm25WeighsFieldsRareTermsAndAllQueryTerms() {
+        add("title", "Dune", "A desert planet.");
+        add("description", "Sand and Spice", "Notes on dune ecology.");
+        add("both", "Dune Messiah", "Paul rules Arrakis.");
+        add("other", "Arrakis Atlas", null);
+
+        // Matches in the title outweigh matches in the description
+        assertThat(index.search("dune", 0, 10).hits())
+                .extracting(BookSearchIndex.SearchHit::bookId)
+                .containsExactly("title", "both", "description");
+        // A book matching every query term ranks first
+        assertThat(index.search("dune arrakis", 0, 10).hits().get(0).bookId()).isEqualTo("both");
+        // Paging applies after ranking; the total counts every match
+        BookSearchIndex.SearchResult secondPage = index.search("dune", 1, 1);
+        assertThat(secondPage.totalHits()).isEqualTo(3);
+        assertThat(secondPage.hits()).extracting(BookSearchIndex.SearchHit::bookId).containsExactly("both");
+    }
+
+    @Test
+    void reindexingABookReplacesItsTerms() {
+        add("b1", "Neuromancer", null);
+        add("b1", "Count Zero", null);
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.search("neuromancer", 0, 10).totalHits()).isZero();
+        assertThat(index.search("count", 0, 10).totalHits()).isEqualTo(1);
+    }
+
+    @Test
+    void authorsAndCategoriesAreSearchable() {
+        BookDTO book = new BookDTO();
+        book.setId("b1");
+        book.setTitle("Kindred");
+        book.setAuthors(Set.of("Octavia E. Butler"));
+        book.setCategories(Set.of("Science Fiction"));
+        index.indexAfterCommit(book);
+
+        assertThat(index.search("butler", 0, 10).totalHits()).isEqualTo(1);
+        assertThat(index.search("science", 0, 10).totalHits()).isEqualTo(1);
+    }
+
+    @Test
+    void rebuildKeepsBooksIndexedWhileItRan() {
+        add("gone", "Deleted Long Ago", null);
+        BookRepository bookRepository = mock(BookRepository.class);
+        ReflectionTestUtils.setField(index, "bookRepository", bookRepository);
+        ReflectionTestUtils.setField(index, "transactionManager", mock(PlatformTransactionManager.class));
+
+        Book stale = new Book();
+        stale.setId("b1");
+        stale.setTitle("Old Title");
+        // The rename of b1 commits after the rebuild has read the old row
+        when(bookRepository.findBy(any(Specification.class), any()))
+                .thenAnswer(invocation -> {
+                    add("b1", "New Title", null);
+                    // Searches still see the current index until the swap
+                    assertThat(index.search("deleted", 0, 10).totalHits()).isEqualTo(1);
+                    return List.of(stale);
+                })
+                .thenReturn(List.of());
+
+        index.rebuild();
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.search("new", 0, 10).totalHits()).isEqualTo(1);
+        assertThat(index.search("old", 0, 10).totalHits()).isZero();
+        assertThat(index.search("deleted", 0, 10).totalHits()).isZero();
+    }
+
+    // Outside a transaction the book is indexed immediately
+    private void add(String id, String title, String description) {
+        BookDTO book = new BookDTO();
+        book.setId(id);
+        book.setTitle(title);
+        book.setDescription(description);
+        index.indexAfterCommit(book);
+    }
+}
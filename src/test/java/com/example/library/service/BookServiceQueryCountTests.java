@@ -0,0 +1,149 @@
+package com.example.library.service;
+
+import com.example.library.dto.BookDTO;
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.model.Category;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({BookService.class, NameResolutionCache.class})
+class BookServiceQueryCountTests {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private NameResolutionCache nameResolutionCache;
+
+    @MockBean
+    private BookSearchIndex bookSearchIndex;
+
+    @MockBean
+    private IdentifierIndex identifierIndex;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void getAllBooksUsesConstantNumberOfQueries() {
+        long fewBooks = countQueries(3, () -> assertThat(bookService.getAllBooksDTO()).hasSize(3));
+        long manyBooks = countQueries(30, () -> assertThat(bookService.getAllBooksDTO()).hasSize(30));
+
+        assertThat(manyBooks).isEqualTo(fewBooks);
+    }
+
+    @Test
+    void getBooksPageUsesConstantNumberOfQueries() {
+        long fewBooks = countQueries(3, () ->
+                assertThat(bookService.getBooksPage(null, 100, null, null, null, false).getItems()).hasSize(3));
+        long manyBooks = countQueries(30, () ->
+                assertThat(bookService.getBooksPage(null, 100, null, null, null, false).getItems()).hasSize(30));
+
+        assertThat(manyBooks).isEqualTo(fewBooks);
+    }
+
+    @Test
+    void getBooksPageResolvesAuthorsAndCategories() {
+        createBooks(2);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<BookDTO> books = bookService.getBooksPage(null, 10, null, null, null, false).getItems();
+
+        assertThat(books.get(0).getAuthors()).isEqualTo(Set.of("Author book-2-0-a", "Author book-2-0-b"));
+        assertThat(books.get(0).getCategories()).isEqualTo(Set.of("Category book-2-0-a", "Category book-2-0-b"));
+    }
+
+    @Test
+    void staleCachedNamesFallBackToTheDatabaseWhenSavingABook() {
+        createBooks(1);
+        String suffix = TestData.suffix();
+        Author deleted = createAuthor("Deleted " + suffix);
+        entityManager.flush();
+        entityManager.remove(deleted);
+        entityManager.flush();
+        nameResolutionCache.authors().put("Stale " + suffix, deleted.getId());
+
+        BookDTO dto = new BookDTO();
+        dto.setId("book-1-0");
+        dto.setTitle("Title 0");
+        dto.setCopiesOwned(1);
+        dto.setCopiesAvailable(1);
+        dto.setAuthors(Set.of("Stale " + suffix));
+        bookService.saveBookDTO(dto);
+        entityManager.flush();
+
+        assertThat(entityManager.createQuery("select a.name from Book b join b.authors a where b.id = :id",
+                String.class).setParameter("id", "book-1-0").getResultList()).containsExactly("Stale " + suffix);
+        assertThat(nameResolutionCache.authors().get("Stale " + suffix)).isNull();
+    }
+
+    private long countQueries(int bookCount, Runnable action) {
+        entityManager.createQuery("delete from Book").executeUpdate();
+        createBooks(bookCount);
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void createBooks(int count) {
+        for (int i = 0; i < count; i++) {
+            Book book = new Book();
+            book.setId("book-" + count + "-" + i);
+            book.setTitle("Title " + i);
+            book.setCopiesOwned(1);
+            book.setCopiesAvailable(1);
+            book.getAuthors().add(createAuthor("Author " + book.getId() + "-a"));
+            book.getAuthors().add(createAuthor("Author " + book.getId() + "-b"));
+            book.getCategories().add(createCategory("Category " + book.getId() + "-a"));
+            book.getCategories().add(createCategory("Category " + book.getId() + "-b"));
+            entityManager.persist(book);
+        }
+    }
+
+    private Author createAuthor(String name) {
+        Author author = new Author();
+        author.setName(name);
+        entityManager.persist(author);
+        return author;
+    }
+
+    private Category createCategory(String name) {
+        Category category = new Category();
+        category.setName(name);
+        entityManager.persist(category);
+        return category;
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.library.service;
+
+import com.example.library.config.BorrowingLimitProperties;
+import com.example.library.dto.BatchLoanResultDTO;
+import com.example.library.dto.LoanDTO;
+import com.example.library.exceptions.BorrowingLimitExceededException;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Runs outside a test transaction so the counters see real commits and rollbacks
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({LoanService.class, LoanPolicyRegistry.class, BorrowerCounters.class, BorrowingLimitProperties.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BorrowingLimitTests {
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private BorrowingLimitProperties limits;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private ReservationService reservationService;
+
+    @MockBean
+    private FineService fineService;
+
+    @MockBean
+    private UserService userService;
+
+    @MockBean
+    private HoldShelfService holdShelfService;
+
+    private TestData testData;
+    private String policyType;
+
+    @BeforeEach
+    void setUp() {
+        testData = new TestData(jdbcTemplate);
+        policyType = testData.createPolicy(14, "[3, 1]");
+        limits.getMaxLoansByRole().put("MEMBER", 2);
+    }
+
+    @AfterEach
+    void restoreLimits() {
+        limits.getMaxLoansByRole().put("MEMBER", 5);
+        limits.getMaxLoansByPolicy().clear();
+    }
+
+    @Test
+    void memberLimitIsEnforcedAndReturnsFreeASlot() throws Exception {
+        long userId = createUser();
+        LoanDTO first = loanService.checkoutBook(createBook(1), userId);
+        loanService.checkoutBook(createBook(1), userId);
+
+        String third = createBook(1);
+        assertThatThrownBy(() -> loanService.checkoutBook(third, userId))
+                .isInstanceOf(BorrowingLimitExceededException.class);
+        assertThat(copiesAvailable(third)).isEqualTo(1);
+
+        loanService.returnBook(first.getId());
+        loanService.checkoutBook(third, userId);
+        assertThat(loanService.getActiveLoanCountByUser(userId)).isEqualTo(2);
+    }
+
+    @Test
+    void seededCountersAddNoCountQueriesToCheckout() throws Exception {
+        long userId = createUser();
+        loanService.checkoutBook(createBook(1), userId);
+        String book = createBook(1);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        loanService.checkoutBook(book, userId);
+
+        assertThat(Arrays.stream(statistics.getQueries()).filter(query -> query.contains("count(")))
+                .isEmpty();
+    }
+
+    @Test
+    void countersChangedOnAnotherNodeApplyHere() throws Exception {
+        long userId = createUser();
+        loanService.checkoutBook(createBook(1), userId);
+
+        // Another node checks out a second book for the same member
+        jdbcTemplate.update("UPDATE borrower_counters SET active_loans = active_loans + 1 WHERE user_id = ?", userId);
+        String book = createBook(1);
+        assertThatThrownBy(() -> loanService.checkoutBook(book, userId))
+                .isInstanceOf(BorrowingLimitExceededException.class);
+
+        // ... and the member returns it there
+        jdbcTemplate.update("UPDATE borrower_counters SET active_loans = active_loans - 1 WHERE user_id = ?", userId);
+        loanService.checkoutBook(book, userId);
+        assertThat(loanService.getActiveLoanCountByUser(userId)).isEqualTo(2);
+    }
+
+    @Test
+    void failedCheckoutGivesItsSlotBack() throws Exception {
+        long userId = createUser();
+        loanService.checkoutBook(createBook(1), userId);
+
+        String unavailable = createBook(0);
+        assertThatThrownBy(() -> loanService.checkoutBook(unavailable, userId))
+                .hasMessage("No copies available for checkout");
+
+        loanService.checkoutBook(createBook(1), userId);
+        assertThat(loanService.getActiveLoanCountByUser(userId)).isEqualTo(2);
+    }
+
+    @Test
+    void unpaidFinesAboveTheThresholdBlockCheckout() throws Exception {
+        long userId = createUser();
+        String oldBook = createBook(1);
+        long loanId = testData.createLoan(TestData.loan(oldBook, userId).loanDate(LocalDate.now().minusDays(60))
+                .dueDate(LocalDate.now().minusDays(46)).returnDate(LocalDate.now().minusDays(1)));
+        jdbcTemplate.update("INSERT INTO fines (loan_id, amount, reason, date_issued) VALUES (?, ?, 'late', ?)",
+                loanId, limits.getFineBlockThreshold().add(BigDecimal.ONE), Date.valueOf(LocalDate.now()));
+
+        assertThatThrownBy(() -> loanService.checkoutBook(oldBook, userId))
+                .isInstanceOf(BorrowingLimitExceededException.class)
+                .hasMessageContaining("Unpaid fines");
+    }
+
+    @Test
+    void concurrentCheckoutsBySameMemberStayWithinTheLimit() throws Exception {
+        long userId = createUser();
+        List<String> books = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            books.add(createBook(1));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(books.size());
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<LoanDTO>> results = new ArrayList<>();
+            for (String book : books) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return loanService.checkoutBook(book, userId);
+                }));
+            }
+            start.countDown();
+
+            int succeeded = 0;
+            for (Future<LoanDTO> result : results) {
+                try {
+                    result.get(30, TimeUnit.SECONDS);
+                    succeeded++;
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause()).isInstanceOf(BorrowingLimitExceededException.class);
+                }
+            }
+            assertThat(succeeded).isEqualTo(2);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM loans WHERE user_id = ? AND return_date IS NULL",
+                Integer.class, userId)).isEqualTo(2);
+    }
+
+    @Test
+    void batchCheckoutAppliesRoleAndPolicyLimitsPerItem() throws Exception {
+        limits.getMaxLoansByRole().put("MEMBER", 3);
+        limits.getMaxLoansByPolicy().putAll(Map.of(policyType, 2));
+        long userId = createUser();
+
+        String unavailable = createBook(0);
+        BatchLoanResultDTO result = loanService.batchCheckout(userId,
+                List.of(unavailable, createBook(1), createBook(1), createBook(1)));
+
+        assertThat(result.getResults()).extracting(BatchLoanResultDTO.ItemResult::isSuccess)
+                .containsExactly(false, true, true, false);
+        assertThat(result.getResults().get(0).getMessage()).isEqualTo("No copies available for checkout");
+        assertThat(result.getResults().get(3).getMessage()).contains("of type " + policyType);
+        assertThat(loanService.getActiveLoanCountByUser(userId)).isEqualTo(2);
+    }
+
+    private String createBook(int copies) {
+        return testData.createBook("Limits", Math.max(copies, 1), copies, policyType);
+    }
+
+    private long createUser() {
+        return testData.createUser();
+    }
+
+    private int copiesAvailable(String bookId) {
+        return testData.copiesAvailable(bookId);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.library.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+
+// Runs outside a test transaction so a failed chunk really rolls back its claims
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({DueDateReminderService.class, NotificationOutbox.class})
+@TestPropertySource(properties = "library.reminders.chunk-size=2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DueDateReminderServiceTests {
+
+    private static final LocalDate TODAY = LocalDate.of(2030, 3, 10);
+    private static final Pattern LOAN_AND_OFFSET = Pattern.compile("\\(loan (\\d+), (\\d+)-day reminder\\)");
+
+    @Autowired
+    private DueDateReminderService reminderService;
+
+    @SpyBean
+    private NotificationOutbox notificationOutbox;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TestData testData;
+    private long policyId;
+    private String bookId;
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        // Loans left open by earlier tests on the shared database must not be picked up
+        jdbcTemplate.update("UPDATE loans SET return_date = ? WHERE return_date IS NULL", Date.valueOf(TODAY));
+
+        testData = new TestData(jdbcTemplate);
+        String policyType = testData.createPolicy(14, "[7, 3, 1]");
+        policyId = testData.policyId(policyType);
+        bookId = testData.createBook("Dune", 10, 10, policyType);
+        userId = testData.createUser();
+    }
+
+    @Test
+    void sendsTheClosestReachedOffsetOncePerLoan() {
+        long dueInTwoDays = createLoan(TODAY.plusDays(2), null, null);
+        long dueInSixDays = createLoan(TODAY.plusDays(6), null, null);
+        long dueInTenDays = createLoan(TODAY.plusDays(10), null, null);
+        long dueTomorrowAlreadyRemindedForThree = createLoan(TODAY.plusDays(1), null, TODAY.minusDays(2));
+        long dueInThreeDaysRemindedToday = createLoan(TODAY.plusDays(3), null, TODAY);
+        long renewedDueInOneDay = createLoan(TODAY.minusDays(20), TODAY.plusDays(1), null);
+        long renewedLater = createLoan(TODAY.plusDays(1), TODAY.plusDays(30), null);
+
+        assertThat(reminderService.sendDueReminders(TODAY)).isEqualTo(4);
+
+        Map<Long, Integer> offsets = queuedReminders().stream()
+                .map(LOAN_AND_OFFSET::matcher)
+                .filter(Matcher::find)
+                .collect(Collectors.toMap(m -> Long.valueOf(m.group(1)), m -> Integer.valueOf(m.group(2))));
+        assertThat(offsets).containsOnly(
+                Map.entry(dueInTwoDays, 3),
+                Map.entry(dueInSixDays, 7),
+                Map.entry(dueTomorrowAlreadyRemindedForThree, 1),
+                Map.entry(renewedDueInOneDay, 1));
+        assertThat(offsets).doesNotContainKeys(dueInTenDays, dueInThreeDaysRemindedToday, renewedLater);
+
+        // A second run on the same day finds nothing left to send
+        assertThat(reminderService.sendDueReminders(TODAY)).isZero();
+        assertThat(queuedReminders()).hasSize(4);
+    }
+
+    @Test
+    void failedQueueingIsRetriedOnTheNextRun() {
+        long loanId = createLoan(TODAY.plusDays(3), null, null);
+        doThrow(new IllegalStateException("outbox unavailable")).doCallRealMethod()
+                .when(AopTestUtils.<NotificationOutbox>getUltimateTargetObject(notificationOutbox))
+                .enqueueAll(any(), any());
+
+        assertThat(reminderService.sendDueReminders(TODAY)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT last_reminder_sent FROM loans WHERE id = ?",
+                Timestamp.class, loanId)).isNull();
+        assertThat(queuedReminders()).isEmpty();
+
+        assertThat(reminderService.sendDueReminders(TODAY)).isEqualTo(1);
+        assertThat(queuedReminders()).singleElement().asString().contains("(loan " + loanId + ", 3-day reminder)");
+    }
+
+    private long createLoan(LocalDate dueDate, LocalDate renewalDueDate, LocalDate lastReminderSent) {
+        return testData.createLoan(TestData.loan(bookId, userId)
+                .loanDate(TODAY.minusDays(30)).dueDate(dueDate).renewalDueDate(renewalDueDate)
+                .lastReminderSent(lastReminderSent != null ? lastReminderSent.atTime(9, 0) : null)
+                .policyId(policyId));
+    }
+
+    private List<String> queuedReminders() {
+        return jdbcTemplate.queryForList("SELECT message FROM notification_outbox WHERE type = ? AND user_id = ?",
+                String.class, NotificationOutbox.DUE_DATE_REMINDER, userId);
+    }
+}
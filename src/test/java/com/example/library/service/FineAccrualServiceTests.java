@@ -0,0 +1,125 @@
+package com.example.library.service;
+
+import com.example.library.model.JobCheckpoint;
+import com.example.library.repository.JobCheckpointRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Chunks commit on their own, so the test runs outside a test transaction
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({FineAccrualService.class, FineService.class})
+@TestPropertySource(properties = "library.fines.accrual-chunk-size=2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FineAccrualServiceTests {
+
+    private static final LocalDate TODAY = LocalDate.of(2031, 6, 15);
+
+    @Autowired
+    private FineAccrualService fineAccrualService;
+
+    @Autowired
+    private JobCheckpointRepository jobCheckpointRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private ReservationService reservationService;
+
+    @MockBean
+    private BorrowerCounters borrowerCounters;
+
+    private TestData testData;
+    private String bookId;
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        jobCheckpointRepository.deleteAll();
+        // Loans left open by earlier tests on the shared database must not be picked up
+        jdbcTemplate.update("UPDATE loans SET return_date = ? WHERE return_date IS NULL", Date.valueOf(TODAY));
+
+        testData = new TestData(jdbcTemplate);
+        bookId = testData.createBook("Dune", 10, 10);
+        userId = testData.createUser();
+    }
+
+    @Test
+    void accruesOnlyTheDaysSinceTheLastRun() {
+        long overdueFourDays = createLoan(TODAY.minusDays(4), null);
+        long renewedNotYetDue = createLoan(TODAY.minusDays(10), TODAY.plusDays(3));
+        long renewedOverdueOneDay = createLoan(TODAY.minusDays(10), TODAY.minusDays(1));
+        long notDue = createLoan(TODAY.plusDays(2), null);
+
+        assertThat(fineAccrualService.accrueFines(TODAY)).isEqualTo(2);
+        assertThat(openFine(overdueFourDays)).containsEntry("AMOUNT", new BigDecimal("2.00"));
+        assertThat(openFine(renewedOverdueOneDay)).containsEntry("AMOUNT", new BigDecimal("0.50"));
+        assertThat(fines(renewedNotYetDue)).isEmpty();
+        assertThat(fines(notDue)).isEmpty();
+
+        // Same day again: the checkpoint says the run is complete
+        assertThat(fineAccrualService.accrueFines(TODAY)).isZero();
+
+        // Three nights later only the three new days are added, to the same fine
+        assertThat(fineAccrualService.accrueFines(TODAY.plusDays(3))).isEqualTo(3);
+        assertThat(fines(overdueFourDays)).hasSize(1);
+        assertThat(openFine(overdueFourDays))
+                .containsEntry("AMOUNT", new BigDecimal("3.50"))
+                .containsEntry("ACCRUED_THROUGH", Date.valueOf(TODAY.plusDays(3)));
+    }
+
+    @Test
+    void interruptedRunResumesFromCheckpointWithoutDoubleCharging() {
+        long first = createLoan(TODAY.minusDays(2), null);
+        long second = createLoan(TODAY.minusDays(2), null);
+        long third = createLoan(TODAY.minusDays(2), null);
+
+        // Simulate a run that committed its first chunk and then died
+        assertThat(fineAccrualService.accrueFines(TODAY)).isEqualTo(3);
+        JobCheckpoint checkpoint = jobCheckpointRepository.findById(FineAccrualService.JOB_NAME).orElseThrow();
+        checkpoint.setCompleted(false);
+        checkpoint.setLastId(first);
+        jobCheckpointRepository.save(checkpoint);
+
+        // Loans after the checkpoint are revisited, but their fines are already current
+        assertThat(fineAccrualService.accrueFines(TODAY)).isZero();
+        for (long loanId : List.of(first, second, third)) {
+            assertThat(openFine(loanId)).containsEntry("AMOUNT", new BigDecimal("1.00"));
+        }
+        assertThat(jobCheckpointRepository.findById(FineAccrualService.JOB_NAME).orElseThrow().isCompleted()).isTrue();
+    }
+
+    private long createLoan(LocalDate dueDate, LocalDate renewalDueDate) {
+        return testData.createLoan(TestData.loan(bookId, userId)
+                .loanDate(TODAY.minusDays(30)).dueDate(dueDate).renewalDueDate(renewalDueDate));
+    }
+
+    private List<Map<String, Object>> fines(long loanId) {
+        return jdbcTemplate.queryForList("SELECT * FROM fines WHERE loan_id = ?", loanId);
+    }
+
+    private Map<String, Object> openFine(long loanId) {
+        return jdbcTemplate.queryForMap("SELECT amount, accrued_through FROM fines " +
+                "WHERE loan_id = ? AND date_paid IS NULL", loanId);
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.library.service;
+
+import com.example.library.config.GoogleBooksProperties;
+import com.example.library.dto.GoogleBooksClientStatsDTO;
+import com.example.library.dto.GoogleBooksSearchResultDTO;
+import com.example.library.exceptions.GoogleBooksUnavailableException;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GoogleBooksServiceTests {
+
+    private static final String RESPONSE_BODY =
+            "{\"totalItems\":1,\"items\":[{\"id\":\"abc\",\"volumeInfo\":{\"title\":\"Dune\"}}],\"kind\":\"books#volumes\"}";
+
+    private HttpServer server;
+    private final AtomicInteger upstreamRequests = new AtomicInteger();
+    private volatile long responseDelayMillis;
+    private volatile int responseStatus = 200;
+    private GoogleBooksProperties properties;
+    private GoogleBooksService googleBooksService;
+
+    @BeforeEach
+    void startStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/books/v1/volumes", exchange -> {
+            upstreamRequests.incrementAndGet();
+            sleep(responseDelayMillis);
+            byte[] body = responseStatus == 200 ? RESPONSE_BODY.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(responseStatus, body.length == 0 ? -1 : body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        properties = new GoogleBooksProperties();
+        properties.setApiUrl("http://localhost:" + server.getAddress().getPort() + "/books/v1/volumes");
+        properties.setReadTimeoutMs(1000);
+        properties.setMaxConcurrentRequests(4);
+        properties.setCircuitBreakerFailureThreshold(3);
+        googleBooksService = new GoogleBooksService(properties);
+    }
+
+    @AfterEach
+    void stopStubServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void repeatedQueriesAreServedFromCache() {
+        GoogleBooksSearchResultDTO first = googleBooksService.searchBooks("dune").join();
+        GoogleBooksSearchResultDTO second = googleBooksService.searchBooks("  DUNE ").join();
+
+        assertThat(first.getItems()).hasSize(1);
+        assertThat(second).isSameAs(first);
+        assertThat(upstreamRequests.get()).isEqualTo(1);
+
+        GoogleBooksClientStatsDTO stats = googleBooksService.getStats();
+        assertThat(stats.getCache().getHitCount()).isEqualTo(1);
+        assertThat(stats.getCache().getMissCount()).isEqualTo(1);
+        assertThat(stats.getUpstreamCalls()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentIdenticalQueriesShareOneUpstreamCall() throws Exception {
+        responseDelayMillis = 300;
+        int callers = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<GoogleBooksSearchResultDTO>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return googleBooksService.searchBooks("dune").join();
+                }));
+            }
+            start.countDown();
+            for (Future<GoogleBooksSearchResultDTO> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS).getTotalItems()).isEqualTo(1);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(upstreamRequests.get()).isEqualTo(1);
+        assertThat(googleBooksService.getStats().getAverageUpstreamLatencyMs()).isGreaterThanOrEqualTo(300);
+    }
+
+    @Test
+    void differentQueriesGoUpstreamSeparately() {
+        googleBooksService.searchBooks("dune").join();
+        googleBooksService.searchBooks("hobbit").join();
+
+        assertThat(upstreamRequests.get()).isEqualTo(2);
+    }
+
+    @Test
+    void slowUpstreamTimesOutAndServesStaleResult() {
+        properties.setCacheTtlSeconds(0);
+        googleBooksService = new GoogleBooksService(properties);
+        GoogleBooksSearchResultDTO fresh = googleBooksService.searchBooks("dune").join();
+
+        responseDelayMillis = 3000;
+        long start = System.nanoTime();
+        GoogleBooksSearchResultDTO fallback = googleBooksService.searchBooks("dune").join();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(fallback.getTotalItems()).isEqualTo(fresh.getTotalItems());
+        assertThat(elapsedMillis).isLessThan(2500);
+        GoogleBooksClientStatsDTO stats = googleBooksService.getStats();
+        assertThat(stats.getUpstreamErrors()).isEqualTo(1);
+        assertThat(stats.getStaleFallbacks()).isEqualTo(1);
+    }
+
+    @Test
+    void slowUpstreamWithoutStaleResultFailsFast() {
+        responseDelayMillis = 3000;
+        long start = System.nanoTime();
+
+        assertThatThrownBy(() -> googleBooksService.searchBooks("dune").join())
+                .hasCauseInstanceOf(GoogleBooksUnavailableException.class);
+        assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(2500);
+    }
+
+    @Test
+    void repeatedServerErrorsOpenTheCircuit() {
+        responseStatus = 503;
+        for (int i = 0; i < 10; i++) {
+            String query = "query " + i;
+            assertThatThrownBy(() -> googleBooksService.searchBooks(query).join())
+                    .hasCauseInstanceOf(GoogleBooksUnavailableException.class);
+        }
+
+        // After the threshold is reached, calls are rejected without reaching the upstream
+        assertThat(upstreamRequests.get()).isEqualTo(3);
+        GoogleBooksClientStatsDTO stats = googleBooksService.getStats();
+        assertThat(stats.getCircuitState()).isEqualTo("OPEN");
+        assertThat(stats.getCircuitOpenedCount()).isEqualTo(1);
+        assertThat(stats.getCircuitRejections()).isEqualTo(7);
+    }
+
+    @Test
+    void clientErrorsDoNotOpenTheCircuit() {
+        responseStatus = 400;
+        for (int i = 0; i < 10; i++) {
+            String query = "query " + i;
+            assertThatThrownBy(() -> googleBooksService.searchBooks(query).join())
+                    .hasCauseInstanceOf(GoogleBooksUnavailableException.class);
+        }
+
+        assertThat(upstreamRequests.get()).isEqualTo(10);
+        assertThat(googleBooksService.getStats().getCircuitState()).isEqualTo("CLOSED");
+    }
+
+    @Test
+    void bulkheadRejectsCallsBeyondTheConcurrencyLimit() {
+        responseDelayMillis = 500;
+        List<CompletableFuture<GoogleBooksSearchResultDTO>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(googleBooksService.searchBooks("query " + i));
+        }
+
+        int rejected = 0;
+        for (CompletableFuture<GoogleBooksSearchResultDTO> result : results) {
+            try {
+                result.join();
+            } catch (CompletionException e) {
+                rejected++;
+            }
+        }
+
+        assertThat(rejected).isEqualTo(6);
+        assertThat(googleBooksService.getStats().getBulkheadRejections()).isEqualTo(6);
+        assertThat(googleBooksService.getStats().getInFlightRequests()).isZero();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
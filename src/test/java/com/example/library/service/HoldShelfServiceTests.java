@@ -0,0 +1,155 @@
+package com.example.library.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+// Runs outside a test transaction: holds are released in the service's own transactions
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(HoldShelfService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class HoldShelfServiceTests {
+
+    @Autowired
+    private HoldShelfService holdShelfService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private BorrowerCounters borrowerCounters;
+
+    @MockBean
+    private ReservationExpiryService reservationExpiryService;
+
+    @MockBean
+    private NotificationOutbox notificationOutbox;
+
+    private TestData testData;
+    private String suffix;
+
+    @BeforeEach
+    void setUp() {
+        testData = new TestData(jdbcTemplate);
+        suffix = TestData.suffix();
+    }
+
+    @Test
+    void returnedCopyIsHeldForTheHeadOfTheQueueAndOnlyTheHolderCanCollectIt() {
+        String book = createBook("a", 2, 1);
+        long lapsedUser = createUser("lap");
+        long ann = createUser("ann");
+        long bob = createUser("bob");
+        LocalDateTime now = LocalDateTime.now();
+        long lapsed = createReservation(book, lapsedUser, now.minusDays(8), now.minusMinutes(1), "ACTIVE", null);
+        long annFirst = createReservation(book, ann, now.minusDays(2), now.plusDays(5), "ACTIVE", null);
+        long bobSecond = createReservation(book, bob, now.minusDays(1), now.plusDays(6), "ACTIVE", null);
+
+        assertThat(holdShelfService.holdForNextReservation(book)).isTrue();
+
+        assertThat(copiesAvailable(book)).isZero();
+        assertThat(status(lapsed)).isEqualTo("ACTIVE");
+        assertThat(status(annFirst)).isEqualTo("ON_HOLD");
+        assertThat(status(bobSecond)).isEqualTo("ACTIVE");
+        assertThat(pickupDeadline(annFirst)).isCloseTo(now.plusHours(48), within(1, ChronoUnit.MINUTES));
+        verify(borrowerCounters).reservationEnded(ann);
+        verify(reservationExpiryService).cancelAfterCommit(annFirst);
+        verify(notificationOutbox).enqueue(eq(NotificationOutbox.HOLD_READY), eq(ann), eq("ann" + suffix + "@example.com"),
+                contains("Hold a"));
+
+        assertThat(holdShelfService.collectHold(book, bob)).isFalse();
+        assertThat(holdShelfService.collectHold(book, ann)).isTrue();
+        assertThat(status(annFirst)).isEqualTo("FULFILLED");
+        assertThat(copiesAvailable(book)).isZero();
+    }
+
+    @Test
+    void copyStaysOnTheShelfWhenNobodyIsWaiting() {
+        String book = createBook("b", 1, 1);
+
+        assertThat(holdShelfService.holdForNextReservation(book)).isFalse();
+
+        assertThat(copiesAvailable(book)).isEqualTo(1);
+    }
+
+    @Test
+    void lapsedHoldsCascadeToTheNextReservationOrBackToTheShelf() {
+        LocalDateTime now = LocalDateTime.now();
+        String queued = createBook("c", 1, 0);
+        long ann = createUser("ann");
+        long bob = createUser("bob");
+        long annHold = createReservation(queued, ann, now.minusDays(3), now.plusDays(4), "ON_HOLD", now.minusMinutes(1));
+        long bobNext = createReservation(queued, bob, now.minusDays(2), now.plusDays(5), "ACTIVE", null);
+
+        String unwanted = createBook("d", 1, 0);
+        long catHold = createReservation(unwanted, createUser("cat"), now.minusDays(3), now.plusDays(4),
+                "ON_HOLD", now.minusMinutes(1));
+
+        String collected = createBook("e", 1, 0);
+        long dan = createUser("dan");
+        long danHold = createReservation(collected, dan, now.minusDays(3), now.plusDays(4), "ON_HOLD", now.minusMinutes(1));
+
+        holdShelfService.reloadHolds();
+        assertThat(holdShelfService.collectHold(collected, dan)).isTrue();
+        holdShelfService.releaseExpiredHolds();
+
+        assertThat(status(annHold)).isEqualTo("EXPIRED");
+        assertThat(status(bobNext)).isEqualTo("ON_HOLD");
+        assertThat(copiesAvailable(queued)).isZero();
+
+        assertThat(status(catHold)).isEqualTo("EXPIRED");
+        assertThat(copiesAvailable(unwanted)).isEqualTo(1);
+
+        assertThat(status(danHold)).isEqualTo("FULFILLED");
+        assertThat(copiesAvailable(collected)).isZero();
+    }
+
+    private String createBook(String name, int owned, int available) {
+        return testData.createBook("Hold " + name, owned, available);
+    }
+
+    private long createUser(String name) {
+        return testData.createUser(name + suffix);
+    }
+
+    private long createReservation(String bookId, long userId, LocalDateTime reservedAt, LocalDateTime expiresAt,
+                                   String status, LocalDateTime pickupDeadline) {
+        jdbcTemplate.update("INSERT INTO reservations (book_id, user_id, reservation_date, expiration_date, status, " +
+                        "pickup_deadline) VALUES (?, ?, ?, ?, ?, ?)", bookId, userId, Timestamp.valueOf(reservedAt),
+                Timestamp.valueOf(expiresAt), status, pickupDeadline != null ? Timestamp.valueOf(pickupDeadline) : null);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM reservations", Long.class);
+    }
+
+    private String status(long reservationId) {
+        return testData.reservationStatus(reservationId);
+    }
+
+    private LocalDateTime pickupDeadline(long reservationId) {
+        return jdbcTemplate.queryForObject("SELECT pickup_deadline FROM reservations WHERE id = ?",
+                Timestamp.class, reservationId).toLocalDateTime();
+    }
+
+    private int copiesAvailable(String bookId) {
+        return testData.copiesAvailable(bookId);
+    }
+}
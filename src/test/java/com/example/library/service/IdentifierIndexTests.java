@@ -0,0 +1,115 @@
+package com.example.library.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.transaction.TestTransaction;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(IdentifierIndex.class)
+class IdentifierIndexTests {
+
+    @Autowired
+    private IdentifierIndex identifierIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TestData testData;
+
+    @BeforeEach
+    void setUp() {
+        testData = new TestData(jdbcTemplate);
+    }
+
+    @Test
+    void rebuiltIndexResolvesEitherIsbnSpelling() {
+        String dune = testData.createBook("Dune", 1, 1);
+        String other = testData.createBook("Other", 1, 1);
+        createIdentifier(dune, "ISBN_10", "0-306-40615-2");
+        createIdentifier(other, "OTHER", "ocm12345");
+
+        identifierIndex.rebuild();
+
+        assertThat(identifierIndex.resolve(List.of("9780306406157", "0306406152", "OCM12345", "0000000000")))
+                .containsEntry("9780306406157", dune)
+                .containsEntry("0306406152", dune)
+                .containsEntry("OCM12345", other)
+                .doesNotContainKey("0000000000");
+    }
+
+    @Test
+    void missesFallBackToTheDatabaseAndAreCached() {
+        String book = testData.createBook("Late", 1, 1);
+        // Stored as ISBN-10 after the index was built; looked up by its ISBN-13
+        createIdentifier(book, "ISBN_10", "080442957X");
+        int sizeBefore = identifierIndex.size();
+
+        assertThat(identifierIndex.resolve(List.of("978-0-8044-2957-3", "9780804429573")))
+                .containsEntry("978-0-8044-2957-3", book)
+                .containsEntry("9780804429573", book);
+        assertThat(identifierIndex.size()).isEqualTo(sizeBefore + 1);
+
+        jdbcTemplate.update("DELETE FROM industry_identifiers WHERE book_id = ?", book);
+        assertThat(identifierIndex.resolve(List.of("080442957X"))).containsEntry("080442957X", book);
+    }
+
+    @Test
+    void identifiersStoredWithHyphensAreFoundAsTheCallerSpellsThem() {
+        String book = testData.createBook("Hyphens", 1, 1);
+        createIdentifier(book, "ISBN_10", "0-19-852663-6");
+
+        assertThat(identifierIndex.resolve(List.of("0-19-852663-6"))).containsEntry("0-19-852663-6", book);
+        // Now indexed, so the other spellings resolve as well
+        assertThat(identifierIndex.resolve(List.of("9780198526636"))).containsEntry("9780198526636", book);
+    }
+
+    @Test
+    void unknownIdentifiersAreRememberedUntilOneIsAdded() {
+        String code = "MISSING-" + TestData.suffix();
+        assertThat(identifierIndex.resolve(List.of(code))).isEmpty();
+
+        // Not looked up again for a while
+        String book = testData.createBook("Added elsewhere", 1, 1);
+        createIdentifier(book, "OTHER", code);
+        assertThat(identifierIndex.resolve(List.of(code))).isEmpty();
+
+        identifierIndex.putAfterCommit(code, book);
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        assertThat(identifierIndex.resolve(List.of(code))).containsEntry(code, book);
+    }
+
+    @Test
+    void putsAndRemovesApplyOnlyAfterCommit() {
+        String book = testData.createBook("Kept", 1, 1);
+
+        identifierIndex.putAfterCommit("155860832X", book);
+        assertThat(identifierIndex.resolve(List.of("9781558608320"))).isEmpty();
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        assertThat(identifierIndex.resolve(List.of("9781558608320"))).containsEntry("9781558608320", book);
+
+        // Removing on behalf of another book leaves the current mapping alone
+        identifierIndex.removeAfterCommit("9781558608320", "book-other");
+        assertThat(identifierIndex.resolve(List.of("9781558608320"))).containsEntry("9781558608320", book);
+        identifierIndex.removeAfterCommit("9781558608320", book);
+        assertThat(identifierIndex.resolve(List.of("9781558608320"))).isEmpty();
+    }
+
+    private void createIdentifier(String bookId, String type, String identifier) {
+        jdbcTemplate.update("INSERT INTO industry_identifiers (book_id, type, identifier) VALUES (?, ?, ?)",
+                bookId, type, identifier);
+    }
+}
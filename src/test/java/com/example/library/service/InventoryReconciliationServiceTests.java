@@ -0,0 +1,86 @@
+package com.example.library.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(InventoryReconciliationService.class)
+class InventoryReconciliationServiceTests {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Autowired
+    private InventoryReconciliationService reconciliationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TestData testData;
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        testData = new TestData(jdbcTemplate);
+        userId = testData.createUser();
+        // Start from a consistent inventory; drift left by other tests is not ours to count
+        reconciliationService.reconcile();
+    }
+
+    @Test
+    void repairsDriftedBooksFromOpenLoansAndHeldCopies() {
+        // Three owned, one on loan, one on the hold shelf, one returned loan: one is available
+        String overCounted = testData.createBook("Dune", 3, 3);
+        createLoan(overCounted, null);
+        createLoan(overCounted, TODAY);
+        createReservation(overCounted, "ON_HOLD");
+        createReservation(overCounted, "ACTIVE");
+        // Nothing is out, so both copies are available
+        String underCounted = testData.createBook("Emma", 2, 0);
+        // Lent out beyond what is owned: never negative
+        String overLent = testData.createBook("Ulysses", 1, 1);
+        createLoan(overLent, null);
+        createLoan(overLent, null);
+        String consistent = testData.createBook("Beloved", 2, 1);
+        createLoan(consistent, null);
+
+        assertThat(reconciliationService.reconcile()).isEqualTo(3);
+
+        assertThat(testData.copiesAvailable(overCounted)).isEqualTo(1);
+        assertThat(testData.copiesAvailable(underCounted)).isEqualTo(2);
+        assertThat(testData.copiesAvailable(overLent)).isZero();
+        assertThat(testData.copiesAvailable(consistent)).isEqualTo(1);
+    }
+
+    @Test
+    void findsNothingToRepairOnceConsistent() {
+        String book = testData.createBook("Dune", 2, 2);
+        createLoan(book, null);
+
+        assertThat(reconciliationService.reconcile()).isEqualTo(1);
+        assertThat(reconciliationService.reconcile()).isZero();
+        assertThat(testData.copiesAvailable(book)).isEqualTo(1);
+    }
+
+    private void createLoan(String bookId, LocalDate returnDate) {
+        testData.createLoan(TestData.loan(bookId, userId).returnDate(returnDate));
+    }
+
+    private void createReservation(String bookId, String status) {
+        jdbcTemplate.update("INSERT INTO reservations (book_id, user_id, reservation_date, expiration_date, status) " +
+                        "VALUES (?, ?, ?, ?, ?)", bookId, testData.createUser(), Timestamp.valueOf(TODAY.atStartOfDay()),
+                Timestamp.valueOf(TODAY.plusDays(7).atStartOfDay()), status);
+    }
+}
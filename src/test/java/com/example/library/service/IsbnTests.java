@@ -0,0 +1,61 @@
+package com.example.library.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IsbnTests {
+
+    @Test
+    void validCheckDigitsAreAcceptedAndInvalidOnesRejected() {
+        assertThat(Isbn.toIsbn13("9780306406157")).isEqualTo("9780306406157");
+        assertThat(Isbn.toIsbn13("0306406152")).isEqualTo("9780306406157");
+        assertThat(Isbn.toIsbn13("9791090636071")).isEqualTo("9791090636071");
+
+        assertThat(Isbn.toIsbn13("9780306406158")).isNull();
+        assertThat(Isbn.toIsbn13("0306406153")).isNull();
+        // Valid check digit, but not a Bookland prefix
+        assertThat(Isbn.toIsbn13("9770306406158")).isNull();
+        assertThat(Isbn.toIsbn13("03064061")).isNull();
+        assertThat(Isbn.toIsbn13("03064O6152")).isNull();
+        assertThat(Isbn.toIsbn13(null)).isNull();
+    }
+
+    @Test
+    void xIsOnlyAValidCheckDigitInIsbn10() {
+        assertThat(Isbn.toIsbn13("080442957X")).isEqualTo("9780804429573");
+        assertThat(Isbn.toIsbn13("080442957x")).isEqualTo("9780804429573");
+        assertThat(Isbn.toIsbn13("0804429570")).isNull();
+        assertThat(Isbn.toIsbn13("08044X2957")).isNull();
+        assertThat(Isbn.toIsbn13("978080442957X")).isNull();
+    }
+
+    @Test
+    void hyphensSpacesAndPrefixesAreIgnored() {
+        assertThat(Isbn.toIsbn13("978-0-306-40615-7")).isEqualTo("9780306406157");
+        assertThat(Isbn.toIsbn13("0 306 40615 2")).isEqualTo("9780306406157");
+        assertThat(Isbn.toIsbn13("  ISBN-10: 0-8044-2957-X ")).isEqualTo("9780804429573");
+        assertThat(Isbn.toIsbn13("ISBN 978-0-306-40615-7")).isEqualTo("9780306406157");
+        assertThat(Isbn.toIsbn13("0.306.40615.2")).isNull();
+    }
+
+    @Test
+    void isbn10AndIsbn13RoundTrip() {
+        for (String isbn10 : new String[]{"0306406152", "080442957X", "155860832X"}) {
+            String isbn13 = Isbn.toIsbn13(isbn10);
+            assertThat(isbn13).startsWith("978");
+            assertThat(Isbn.toIsbn10(isbn13)).isEqualTo(isbn10);
+            assertThat(Isbn.toIsbn13(Isbn.toIsbn10(isbn13))).isEqualTo(isbn13);
+        }
+        assertThat(Isbn.toIsbn10("9791090636071")).isNull();
+        assertThat(Isbn.toIsbn10(null)).isNull();
+    }
+
+    @Test
+    void lookupKeysShareOneKeyPerIsbnAndKeepOtherIdentifiers() {
+        assertThat(Isbn.lookupKey("0-306-40615-2")).isEqualTo(Isbn.lookupKey("978 0 306 40615 7"));
+        assertThat(Isbn.lookupKey(" ocm12345 ")).isEqualTo("OCM12345");
+        assertThat(Isbn.lookupKey("   ")).isNull();
+        assertThat(Isbn.lookupKey(null)).isNull();
+    }
+}
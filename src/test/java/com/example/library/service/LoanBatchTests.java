@@ -0,0 +1,182 @@
+package com.example.library.service;
+
+import com.example.library.config.BorrowingLimitProperties;
+import com.example.library.dto.BatchLoanResultDTO;
+import com.example.library.dto.BatchLoanResultDTO.ItemResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Runs outside a test transaction: the policy registry loads in its own transaction and
+// must see the policy created for the test
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({LoanService.class, LoanPolicyRegistry.class, BorrowerCounters.class, BorrowingLimitProperties.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LoanBatchTests {
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private BorrowingLimitProperties limits;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private ReservationService reservationService;
+
+    @MockBean
+    private FineService fineService;
+
+    @MockBean
+    private UserService userService;
+
+    @MockBean
+    private HoldShelfService holdShelfService;
+
+    private TestData testData;
+    private String policyType;
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        testData = new TestData(jdbcTemplate);
+        policyType = testData.createPolicy(14, "[3, 1]");
+        userId = testData.createUser();
+    }
+
+    @AfterEach
+    void restoreLimits() {
+        limits.getMaxLoansByRole().put("MEMBER", 5);
+    }
+
+    @Test
+    void batchCheckoutReportsEachItemFromTheUpdateCounts() throws Exception {
+        String single = createBook(1);
+        String empty = createBook(0);
+        String pair = createBook(2);
+
+        BatchLoanResultDTO result = loanService.batchCheckout(userId,
+                Arrays.asList(single, empty, "book-missing", single, pair, pair));
+
+        assertThat(result.getTotal()).isEqualTo(6);
+        assertThat(result.getSucceeded()).isEqualTo(3);
+        assertThat(result.getFailed()).isEqualTo(3);
+        List<ItemResult> items = result.getResults();
+        assertThat(items).extracting(ItemResult::getBookId)
+                .containsExactly(single, empty, "book-missing", single, pair, pair);
+        assertThat(items).extracting(ItemResult::isSuccess)
+                .containsExactly(true, false, false, false, true, true);
+        assertThat(items.get(1).getMessage()).isEqualTo("No copies available for checkout");
+        assertThat(items.get(2).getMessage()).isEqualTo("Book not found");
+        // The second copy of a title with only one left fails, its own row in the report
+        assertThat(items.get(3).getMessage()).isEqualTo("No copies available for checkout");
+        assertThat(items.get(0).getDueDate()).isEqualTo(LocalDate.now().plusDays(14));
+
+        assertThat(testData.copiesAvailable(single)).isZero();
+        assertThat(testData.copiesAvailable(empty)).isZero();
+        assertThat(testData.copiesAvailable(pair)).isZero();
+    }
+
+    @Test
+    void batchCheckoutMapsGeneratedKeysToTheirItems() throws Exception {
+        List<String> books = List.of(createBook(1), createBook(1), createBook(1));
+
+        BatchLoanResultDTO result = loanService.batchCheckout(userId, books);
+
+        assertThat(result.getResults()).extracting(ItemResult::getLoanId).doesNotContainNull().doesNotHaveDuplicates();
+        for (ItemResult item : result.getResults()) {
+            Map<String, Object> loan = jdbcTemplate.queryForMap("SELECT book_id, user_id FROM loans WHERE id = ?",
+                    item.getLoanId());
+            assertThat(loan).containsEntry("BOOK_ID", item.getBookId()).containsEntry("USER_ID", userId);
+        }
+    }
+
+    @Test
+    void itemsOverTheLimitPutTheirCopiesBackAndRestoreTheirHolds() throws Exception {
+        limits.getMaxLoansByRole().put("MEMBER", 2);
+        String first = createBook(1);
+        String second = createBook(1);
+        String held = createBook(0);
+        String shelved = createBook(1);
+        when(holdShelfService.collectHolds(eq(userId), any())).thenReturn(Map.of(held, 99L));
+
+        BatchLoanResultDTO result = loanService.batchCheckout(userId, List.of(first, second, held, shelved));
+
+        assertThat(result.getResults()).extracting(ItemResult::isSuccess).containsExactly(true, true, false, false);
+        assertThat(result.getResults().get(2).getMessage()).contains("limit");
+        assertThat(result.getResults().get(3).getMessage()).contains("limit");
+        assertThat(testData.copiesAvailable(shelved)).isEqualTo(1);
+        // The held copy never went back on the shelf; the hold is restored instead
+        assertThat(testData.copiesAvailable(held)).isZero();
+        verify(holdShelfService).restoreHolds(List.of(99L));
+    }
+
+    @Test
+    void batchReturnReportsEachLoanOnceAndReleasesEachCopyOnce() {
+        String book = createBook(0);
+        long open = createLoan(book, null);
+        long alreadyReturned = createLoan(book, LocalDate.now().minusDays(1));
+
+        BatchLoanResultDTO result = loanService.batchReturn(Arrays.asList(open, alreadyReturned, -1L, open, null));
+
+        assertThat(result.getTotal()).isEqualTo(3);
+        assertThat(result.getSucceeded()).isEqualTo(1);
+        assertThat(result.getResults()).extracting(ItemResult::getLoanId).containsExactly(open, alreadyReturned, -1L);
+        assertThat(result.getResults()).extracting(ItemResult::getMessage)
+                .containsExactly(null, "This book has already been returned", "Loan not found");
+        assertThat(result.getResults().get(0).getBookId()).isEqualTo(book);
+        assertThat(testData.copiesAvailable(book)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT return_date FROM loans WHERE id = ?", Date.class, open))
+                .isEqualTo(Date.valueOf(LocalDate.now()));
+        verify(reservationService).processNextReservation(book);
+        verify(fineService, never()).createFineForOverdueBook(any());
+    }
+
+    @Test
+    void batchesAreCappedAtTwoHundredItems() throws Exception {
+        assertThat(loanService.batchCheckout(userId, Collections.nCopies(200, "book-missing")).getFailed())
+                .isEqualTo(200);
+        assertThat(loanService.batchReturn(Collections.nCopies(200, -1L)).getTotal()).isEqualTo(1);
+
+        assertThatThrownBy(() -> loanService.batchCheckout(userId, Collections.nCopies(201, "book-missing")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> loanService.batchReturn(Collections.nCopies(201, -1L)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private String createBook(int available) {
+        return testData.createBook("Batch", 2, available, policyType);
+    }
+
+    private long createLoan(String bookId, LocalDate returnDate) {
+        return testData.createLoan(TestData.loan(bookId, userId).returnDate(returnDate));
+    }
+}
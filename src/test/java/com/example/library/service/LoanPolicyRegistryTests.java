@@ -0,0 +1,123 @@
+package com.example.library.service;
+
+import com.example.library.model.LoanPolicy;
+import com.example.library.repository.LoanPolicyRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Runs outside a test transaction so policy changes commit and trigger the registry reload
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({LoanPolicyService.class, LoanPolicyRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LoanPolicyRegistryTests {
+
+    @Autowired
+    private LoanPolicyService loanPolicyService;
+
+    @Autowired
+    private LoanPolicyRegistry loanPolicyRegistry;
+
+    @Autowired
+    private LoanPolicyRepository loanPolicyRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void servesPoliciesFromMemoryUntilAChangeCommits() {
+        String itemType = newItemType();
+        jdbcTemplate.update("INSERT INTO loan_policies (item_type, loan_period_days, max_renewals, " +
+                "grace_period_days, reminder_days) VALUES (?, 14, 2, 0, JSON '[3, 1]')", itemType);
+        loanPolicyRegistry.reload();
+
+        // A write that bypasses the service is not seen until the next reload
+        jdbcTemplate.update("UPDATE loan_policies SET loan_period_days = 99 WHERE item_type = ?", itemType);
+        assertThat(loanPolicyRegistry.findByItemType(itemType).orElseThrow().getLoanPeriodDays()).isEqualTo(14);
+
+        loanPolicyService.updatePolicy(itemType, request(21, 3, List.of(5, 1)));
+
+        LoanPolicy cached = loanPolicyRegistry.findByItemType(itemType).orElseThrow();
+        assertThat(cached.getLoanPeriodDays()).isEqualTo(21);
+        assertThat(cached.getMaxRenewals()).isEqualTo(3);
+        assertThat(cached.getReminderDays()).containsExactly(5, 1);
+    }
+
+    @Test
+    void rolledBackChangesAreNotServed() {
+        String itemType = newItemType();
+        loanPolicyService.createPolicy(withItemType(request(14, 2, List.of(3)), itemType));
+        assertThat(loanPolicyRegistry.findByItemType(itemType)).isPresent();
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> {
+            loanPolicyService.updatePolicy(itemType, request(60, 0, List.of()));
+            status.setRollbackOnly();
+        });
+
+        assertThat(loanPolicyRegistry.findByItemType(itemType).orElseThrow().getLoanPeriodDays()).isEqualTo(14);
+        assertThat(loanPolicyRepository.findByItemType(itemType).orElseThrow().getLoanPeriodDays()).isEqualTo(14);
+    }
+
+    @Test
+    void unknownItemTypeFallsBackToTheDatabase() {
+        loanPolicyRegistry.reload();
+        String itemType = newItemType();
+        assertThat(loanPolicyRegistry.findByItemType(itemType)).isEmpty();
+
+        // Created on "another node": the registry has not been told about it
+        jdbcTemplate.update("INSERT INTO loan_policies (item_type, loan_period_days, max_renewals, " +
+                "grace_period_days, reminder_days) VALUES (?, 7, 1, 0, JSON '[1]')", itemType);
+
+        assertThat(loanPolicyRegistry.findByItemType(itemType).orElseThrow().getLoanPeriodDays()).isEqualTo(7);
+    }
+
+    @Test
+    void rejectsInvalidAndDuplicatePolicies() {
+        String itemType = newItemType();
+        loanPolicyService.createPolicy(withItemType(request(14, 2, List.of(3)), itemType));
+
+        assertThatThrownBy(() -> loanPolicyService.createPolicy(withItemType(request(14, 2, List.of(3)), itemType)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> loanPolicyService.updatePolicy(itemType, request(0, 2, List.of(3))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(loanPolicyService.updatePolicy(newItemType(), request(14, 2, List.of(3)))).isEmpty();
+    }
+
+    private static String newItemType() {
+        return "TYPE-" + UUID.randomUUID();
+    }
+
+    private static LoanPolicy request(int loanPeriodDays, int maxRenewals, List<Integer> reminderDays) {
+        LoanPolicy policy = new LoanPolicy();
+        policy.setLoanPeriodDays(loanPeriodDays);
+        policy.setMaxRenewals(maxRenewals);
+        policy.setGracePeriodDays(0);
+        policy.setReminderDays(reminderDays);
+        return policy;
+    }
+
+    private static LoanPolicy withItemType(LoanPolicy policy, String itemType) {
+        policy.setItemType(itemType);
+        return policy;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.library.service;
+
+import com.example.library.config.BorrowingLimitProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+
+// Returns happen today, so the loans are dated relative to the real clock. Runs outside a test
+// transaction so the fine written by the return is committed before it is read back.
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({LoanService.class, FineService.class, LoanPolicyRegistry.class, BorrowerCounters.class,
+        BorrowingLimitProperties.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LoanReturnFineTests {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private ReservationService reservationService;
+
+    @MockBean
+    private UserService userService;
+
+    @MockBean
+    private HoldShelfService holdShelfService;
+
+    private TestData testData;
+    private String bookId;
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        testData = new TestData(jdbcTemplate);
+        bookId = testData.createBook("Dune", 10, 5);
+        userId = testData.createUser();
+    }
+
+    @Test
+    void returningAnOverdueLoanTopsUpItsAccruingFine() throws Exception {
+        long loanId = createLoan(TODAY.minusDays(5), null);
+        // The nightly job charged three of the five days so far
+        jdbcTemplate.update("INSERT INTO fines (loan_id, amount, reason, date_issued, accrued_through) " +
+                        "VALUES (?, 1.50, 'Overdue book - 3 days late', ?, ?)",
+                loanId, Date.valueOf(TODAY.minusDays(2)), Date.valueOf(TODAY.minusDays(2)));
+
+        loanService.returnBook(loanId);
+
+        List<Map<String, Object>> fines = fines(loanId);
+        assertThat(fines).hasSize(1);
+        assertThat(fines.get(0))
+                .containsEntry("AMOUNT", new BigDecimal("2.50"))
+                .containsEntry("ACCRUED_THROUGH", Date.valueOf(TODAY))
+                .containsEntry("REASON", "Overdue book - 5 days late");
+        verify(reservationService).processNextReservation(bookId);
+    }
+
+    @Test
+    void returningAfterPayingTheAccruedFineChargesOnlyTheDaysSince() throws Exception {
+        long loanId = createLoan(TODAY.minusDays(12), null);
+        // Ten days were accrued and paid while the book was still out
+        jdbcTemplate.update("INSERT INTO fines (loan_id, amount, reason, date_issued, accrued_through, date_paid) " +
+                        "VALUES (?, 5.00, 'Overdue book - 10 days late', ?, ?, ?)",
+                loanId, Date.valueOf(TODAY.minusDays(2)), Date.valueOf(TODAY.minusDays(2)),
+                Date.valueOf(TODAY.minusDays(1)));
+
+        loanService.returnBook(loanId);
+
+        assertThat(fines(loanId)).extracting(fine -> fine.get("AMOUNT"))
+                .containsExactlyInAnyOrder(new BigDecimal("5.00"), new BigDecimal("1.00"));
+        verify(reservationService).processNextReservation(bookId);
+    }
+
+    @Test
+    void returningOnTheDayThePaidFineReachedChargesNothingMore() throws Exception {
+        long loanId = createLoan(TODAY.minusDays(4), null);
+        jdbcTemplate.update("INSERT INTO fines (loan_id, amount, reason, date_issued, accrued_through, date_paid) " +
+                        "VALUES (?, 2.00, 'Overdue book - 4 days late', ?, ?, ?)",
+                loanId, Date.valueOf(TODAY), Date.valueOf(TODAY), Date.valueOf(TODAY));
+
+        loanService.returnBook(loanId);
+
+        assertThat(fines(loanId)).hasSize(1);
+        verify(reservationService).processNextReservation(bookId);
+    }
+
+    @Test
+    void lateReturnIsMeasuredFromTheRenewalDueDate() throws Exception {
+        long renewedLate = createLoan(TODAY.minusDays(20), TODAY.minusDays(2));
+        long renewedOnTime = createLoan(TODAY.minusDays(20), TODAY.plusDays(3));
+
+        loanService.returnBook(renewedLate);
+        loanService.returnBook(renewedOnTime);
+
+        assertThat(fines(renewedLate)).singleElement()
+                .satisfies(fine -> assertThat(fine).containsEntry("AMOUNT", new BigDecimal("1.00")));
+        assertThat(fines(renewedOnTime)).isEmpty();
+    }
+
+    private long createLoan(LocalDate dueDate, LocalDate renewalDueDate) {
+        return testData.createLoan(TestData.loan(bookId, userId)
+                .loanDate(TODAY.minusDays(30)).dueDate(dueDate)
+                .renewalDueDate(renewalDueDate).renewalCount(renewalDueDate != null ? 1 : 0));
+    }
+
+    private List<Map<String, Object>> fines(long loanId) {
+        return jdbcTemplate.queryForList("SELECT amount, reason, accrued_through FROM fines WHERE loan_id = ?", loanId);
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.library.service;
+
+import com.example.library.config.BorrowingLimitProperties;
+import com.example.library.dto.CursorPageDTO;
+import com.example.library.dto.LoanDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({LoanService.class, LoanPolicyRegistry.class, BorrowerCounters.class, BorrowingLimitProperties.class})
+class LoanSearchTests {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private ReservationService reservationService;
+
+    @MockBean
+    private FineService fineService;
+
+    @MockBean
+    private UserService userService;
+
+    @MockBean
+    private HoldShelfService holdShelfService;
+
+    private TestData testData;
+    private String policyType;
+    private String bookId;
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        testData = new TestData(jdbcTemplate);
+        policyType = testData.createPolicy(14, "[3, 1]");
+        bookId = testData.createBook("Dune", 10, 10, policyType);
+        userId = testData.createUser();
+    }
+
+    @Test
+    void overdueFilterUsesTheEffectiveDueDate() {
+        long overdue = createLoan(TODAY.minusDays(3), null, null);
+        long renewedPastDue = createLoan(TODAY.minusDays(30), TODAY.minusDays(1), null);
+        createLoan(TODAY.minusDays(30), TODAY.plusDays(5), null);
+        createLoan(TODAY.plusDays(2), null, null);
+        createLoan(TODAY.minusDays(10), null, TODAY.minusDays(12));
+
+        CursorPageDTO<LoanDTO> page = loanService.searchLoans(
+                null, null, "overdue", null, null, null, null, userId, false);
+
+        assertThat(page.getItems()).extracting(LoanDTO::getId).containsExactly(renewedPastDue, overdue);
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void pagesThroughFilteredLoansWithoutGapsOrDuplicates() {
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            // Two loans per due date so the id tie-breaker is exercised
+            expected.add(createLoan(TODAY.plusDays(i / 2), null, null));
+        }
+        createLoan(TODAY.plusDays(1), null, TODAY);
+
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPageDTO<LoanDTO> page = loanService.searchLoans(
+                    cursor, 2, "active", null, null, policyType, bookId, userId, false);
+            page.getItems().forEach(loan -> seen.add(loan.getId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(seen).containsExactlyElementsOf(expected);
+        assertThat(pages).isEqualTo(3);
+    }
+
+    @Test
+    void dueRangeAndStatusAreCombined() {
+        createLoan(TODAY.plusDays(1), null, TODAY);
+        long returnedInRange = createLoan(TODAY.plusDays(5), null, TODAY);
+        createLoan(TODAY.plusDays(20), null, TODAY);
+
+        CursorPageDTO<LoanDTO> page = loanService.searchLoans(null, null, "returned",
+                TODAY.plusDays(10), TODAY.plusDays(2), null, null, userId, false);
+
+        assertThat(page.getItems()).extracting(LoanDTO::getId).containsExactly(returnedInRange);
+    }
+
+    @Test
+    void dueRangeUsesTheRenewalDueDateButOrderFollowsTheOriginalOne() {
+        long renewedIntoRange = createLoan(TODAY.minusDays(10), TODAY.plusDays(8), null);
+        createLoan(TODAY.plusDays(6), TODAY.plusDays(30), null);
+        long inRange = createLoan(TODAY.plusDays(4), null, null);
+        createLoan(TODAY.plusDays(12), null, null);
+
+        CursorPageDTO<LoanDTO> page = loanService.searchLoans(null, null, null,
+                TODAY.plusDays(10), TODAY.plusDays(2), null, null, userId, false);
+
+        assertThat(page.getItems()).extracting(LoanDTO::getId).containsExactly(renewedIntoRange, inRange);
+    }
+
+    @Test
+    void rejectsUnknownStatusAndMalformedCursor() {
+        assertThatThrownBy(() -> loanService.searchLoans(null, null, "lost", null, null, null, null, userId, false))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> loanService.searchLoans("not-a-cursor", null, null, null, null, null, null, userId, false))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private long createLoan(LocalDate dueDate, LocalDate renewalDueDate, LocalDate returnDate) {
+        return testData.createLoan(TestData.loan(bookId, userId)
+                .loanDate(dueDate.minusDays(14)).dueDate(dueDate).renewalDueDate(renewalDueDate)
+                .returnDate(returnDate).policyId(testData.policyId(policyType)));
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.library.service;
+
+import com.example.library.config.BorrowingLimitProperties;
+import com.example.library.dto.LoanDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs outside a test transaction so every service call commits on its own, like
+// concurrent requests hitting different nodes against the same database
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({LoanService.class, LoanPolicyRegistry.class, BorrowerCounters.class, BorrowingLimitProperties.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LoanServiceConcurrencyTests {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private ReservationService reservationService;
+
+    @MockBean
+    private FineService fineService;
+
+    @MockBean
+    private UserService userService;
+
+    @MockBean
+    private HoldShelfService holdShelfService;
+
+    private TestData testData;
+
+    @BeforeEach
+    void setUp() {
+        testData = new TestData(jdbcTemplate);
+    }
+
+    @Test
+    void concurrentCheckoutsNeverOversell() throws Exception {
+        int copies = 5;
+        String bookId = createBook(copies);
+
+        List<Callable<LoanDTO>> checkouts = new ArrayList<>();
+        for (int i = 0; i < THREADS * 2; i++) {
+            long userId = testData.createUser();
+            checkouts.add(() -> loanService.checkoutBook(bookId, userId));
+        }
+        int succeeded = runConcurrently(checkouts);
+
+        assertThat(succeeded).isEqualTo(copies);
+        assertThat(testData.copiesAvailable(bookId)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM loans WHERE book_id = ? AND return_date IS NULL",
+                Integer.class, bookId)).isEqualTo(copies);
+    }
+
+    @Test
+    void concurrentReturnsOfTheSameLoanReleaseOneCopy() throws Exception {
+        String bookId = createBook(2);
+        LoanDTO loan = loanService.checkoutBook(bookId, testData.createUser());
+        assertThat(testData.copiesAvailable(bookId)).isEqualTo(1);
+
+        List<Callable<LoanDTO>> returns = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            returns.add(() -> loanService.returnBook(loan.getId()));
+        }
+        int succeeded = runConcurrently(returns);
+
+        assertThat(succeeded).isEqualTo(1);
+        assertThat(testData.copiesAvailable(bookId)).isEqualTo(2);
+    }
+
+    // Starts all tasks at once and returns how many completed without an exception
+    private int runConcurrently(List<Callable<LoanDTO>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<LoanDTO>> results = new ArrayList<>();
+            for (Callable<LoanDTO> task : tasks) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+
+            int succeeded = 0;
+            for (Future<LoanDTO> result : results) {
+                try {
+                    result.get(30, TimeUnit.SECONDS);
+                    succeeded++;
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause()).hasMessageMatching("No copies available for checkout|This book has already been returned");
+                }
+            }
+            return succeeded;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private String createBook(int copies) {
+        return testData.createBook("Concurrency", copies, copies, testData.createPolicy(14, "[3, 1]"));
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.library.service;
+
+import com.example.library.config.BorrowingLimitProperties;
+import com.example.library.dto.LoanDTO;
+import com.example.library.dto.LoanRenewalDTO;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({LoanService.class, LoanPolicyRegistry.class, BorrowerCounters.class, BorrowingLimitProperties.class})
+class LoanServiceQueryCountTests {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private ReservationService reservationService;
+
+    @MockBean
+    private FineService fineService;
+
+    @MockBean
+    private UserService userService;
+
+    @MockBean
+    private HoldShelfService holdShelfService;
+
+    private Statistics statistics;
+    private TestData testData;
+    private long policyId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        testData = new TestData(jdbcTemplate);
+        policyId = testData.policyId(testData.createPolicy(14, "[3]"));
+    }
+
+    @Test
+    void getAllLoansWithoutHistoryUsesConstantNumberOfQueries() {
+        long fewLoans = countQueries(3, () -> loanService.getAllLoansDTO(false));
+        long manyLoans = countQueries(30, () -> loanService.getAllLoansDTO(false));
+
+        assertThat(manyLoans).isEqualTo(fewLoans);
+    }
+
+    @Test
+    void getAllLoansWithHistoryLoadsRenewalsInOneBatchedQuery() {
+        long withoutHistory = countQueries(3, () -> loanService.getAllLoansDTO(false));
+        long fewLoans = countQueries(3, () -> loanService.getAllLoansDTO(true));
+        long manyLoans = countQueries(30, () -> loanService.getAllLoansDTO(true));
+
+        assertThat(manyLoans).isEqualTo(fewLoans);
+        assertThat(fewLoans).isEqualTo(withoutHistory + 1);
+    }
+
+    @Test
+    void batchedRenewalsAreAttachedToTheirLoansNewestFirst() {
+        List<Long> loanIds = createRenewedLoans(2);
+        entityManager.clear();
+
+        List<LoanDTO> loans = loanService.getAllLoansDTO(true).stream()
+                .filter(loan -> loanIds.contains(loan.getId()))
+                .toList();
+
+        assertThat(loans).hasSize(2).allSatisfy(loan -> {
+            assertThat(loan.getRenewalHistory()).extracting(LoanRenewalDTO::getNewDueDate)
+                    .containsExactly(TODAY.plusDays(14), TODAY.plusDays(7));
+            assertThat(loan.getRenewalHistory()).extracting(LoanRenewalDTO::getRenewedBy).doesNotContainNull();
+        });
+        assertThat(loanService.getAllLoansDTO(false)).allSatisfy(loan -> assertThat(loan.getRenewalHistory()).isNull());
+    }
+
+    // Loans committed by other tests on the shared database are read in every run alike,
+    // so only the loans added here differ between the runs being compared
+    private long countQueries(int loanCount, Supplier<List<LoanDTO>> action) {
+        createRenewedLoans(loanCount);
+        entityManager.clear();
+
+        statistics.clear();
+        assertThat(action.get()).hasSizeGreaterThanOrEqualTo(loanCount);
+        return statistics.getPrepareStatementCount();
+    }
+
+    // Each loan, its book and its borrower are new and renewed twice by a new librarian
+    private List<Long> createRenewedLoans(int count) {
+        long librarianId = testData.createUser();
+        return IntStream.range(0, count).mapToObj(i -> {
+            String bookId = testData.createBook("Title " + i, 1, 0);
+            long userId = testData.createUser();
+            long loanId = testData.createLoan(TestData.loan(bookId, userId)
+                    .loanDate(TODAY.minusDays(14)).dueDate(TODAY).renewalDueDate(TODAY.plusDays(14))
+                    .renewalCount(2).policyId(policyId));
+            createRenewal(loanId, librarianId, 2, TODAY, TODAY.plusDays(7));
+            createRenewal(loanId, librarianId, 1, TODAY.plusDays(7), TODAY.plusDays(14));
+            return loanId;
+        }).toList();
+    }
+
+    private void createRenewal(long loanId, long librarianId, int daysAgo, LocalDate previousDueDate,
+                               LocalDate newDueDate) {
+        jdbcTemplate.update("INSERT INTO loan_renewals (loan_id, renewal_date, previous_due_date, new_due_date, " +
+                        "created_by) VALUES (?, ?, ?, ?, ?)",
+                loanId, Timestamp.valueOf(TODAY.minusDays(daysAgo).atStartOfDay()), Date.valueOf(previousDueDate),
+                Date.valueOf(newDueDate), librarianId);
+    }
+}
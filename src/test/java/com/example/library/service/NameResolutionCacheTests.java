@@ -0,0 +1,146 @@
+package com.example.library.service;
+
+import com.example.library.dto.AuthorDTO;
+import com.example.library.dto.CacheStatsDTO;
+import com.example.library.model.Category;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.transaction.TestTransaction;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({NameResolutionCache.class, AuthorService.class, CategoryService.class})
+class NameResolutionCacheTests {
+
+    @Autowired
+    private NameResolutionCache nameResolutionCache;
+
+    @Autowired
+    private AuthorService authorService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    private String suffix;
+
+    @BeforeEach
+    void setUp() {
+        suffix = TestData.suffix();
+    }
+
+    @Test
+    void namesAreKeyedCaseInsensitivelyAndMissesAreLeftOut() {
+        NameResolutionCache.NameCache authors = nameResolutionCache.authors();
+        CacheStatsDTO before = stats("authors");
+
+        authors.put("Ursula K. Le Guin " + suffix, 7L);
+
+        assertThat(authors.get("URSULA K. LE GUIN " + suffix)).isEqualTo(7L);
+        assertThat(authors.get("Nobody " + suffix)).isNull();
+        assertThat(authors.getAll(List.of("ursula k. le guin " + suffix, "Nobody " + suffix)))
+                .isEqualTo(Map.of(NameResolutionCache.key("Ursula K. Le Guin " + suffix), 7L));
+
+        CacheStatsDTO after = stats("authors");
+        assertThat(after.getHitCount() - before.getHitCount()).isEqualTo(2);
+        assertThat(after.getMissCount() - before.getMissCount()).isEqualTo(2);
+        // Authors and categories are separate caches
+        assertThat(nameResolutionCache.categories().get("Ursula K. Le Guin " + suffix)).isNull();
+    }
+
+    @Test
+    void putAfterCommitWaitsForTheTransactionToCommit() {
+        nameResolutionCache.categories().putAfterCommit("Poetry " + suffix, 11L);
+        assertThat(nameResolutionCache.categories().get("Poetry " + suffix)).isNull();
+
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        assertThat(nameResolutionCache.categories().get("Poetry " + suffix)).isEqualTo(11L);
+    }
+
+    @Test
+    void putAfterCommitIsDroppedOnRollback() {
+        nameResolutionCache.categories().putAfterCommit("Drama " + suffix, 12L);
+
+        TestTransaction.flagForRollback();
+        TestTransaction.end();
+
+        assertThat(nameResolutionCache.categories().get("Drama " + suffix)).isNull();
+    }
+
+    @Test
+    void renamingAnAuthorInvalidatesItsEntriesOnCommit() {
+        AuthorDTO author = new AuthorDTO();
+        author.setName("Old Name " + suffix);
+        author.setBookIds(Set.of());
+        AuthorDTO saved = authorService.saveAuthorDTO(author);
+        nameResolutionCache.authors().put(saved.getName(), saved.getId());
+        // A stale entry for the new name, pointing at some other id
+        nameResolutionCache.authors().put("New Name " + suffix, -1L);
+
+        saved.setName("New Name " + suffix);
+        authorService.saveAuthorDTO(saved);
+        // Other transactions still see the old name until this one commits
+        assertThat(nameResolutionCache.authors().get("Old Name " + suffix)).isEqualTo(saved.getId());
+
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        assertThat(nameResolutionCache.authors().get("Old Name " + suffix)).isNull();
+        assertThat(nameResolutionCache.authors().get("New Name " + suffix)).isNull();
+
+        nameResolutionCache.authors().put("New Name " + suffix, saved.getId());
+        authorService.deleteAuthor(saved.getId());
+        assertThat(nameResolutionCache.authors().get("New Name " + suffix)).isNull();
+    }
+
+    @Test
+    void renamingACategoryInvalidatesItsEntriesOnCommit() {
+        Category category = new Category();
+        category.setName("Old Genre " + suffix);
+        Category saved = categoryService.saveCategory(category);
+        nameResolutionCache.categories().put(saved.getName(), saved.getId());
+
+        saved.setName("New Genre " + suffix);
+        categoryService.saveCategory(saved);
+        assertThat(nameResolutionCache.categories().get("Old Genre " + suffix)).isEqualTo(saved.getId());
+
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        assertThat(nameResolutionCache.categories().get("Old Genre " + suffix)).isNull();
+
+        nameResolutionCache.categories().put("New Genre " + suffix, saved.getId());
+        categoryService.deleteCategory(saved.getId());
+        assertThat(nameResolutionCache.categories().get("New Genre " + suffix)).isNull();
+    }
+
+    @Test
+    void invalidationIsDroppedOnRollback() {
+        nameResolutionCache.categories().put("Kept " + suffix, 13L);
+        nameResolutionCache.categories().invalidateAfterCommit(13L, "Kept " + suffix);
+
+        TestTransaction.flagForRollback();
+        TestTransaction.end();
+
+        assertThat(nameResolutionCache.categories().get("Kept " + suffix)).isEqualTo(13L);
+    }
+
+    private CacheStatsDTO stats(String name) {
+        return nameResolutionCache.stats().stream()
+                .filter(stats -> stats.getName().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.library.service;
+
+import com.example.library.dto.NotificationDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Runs outside a test transaction: the outbox rows must really commit (or roll back)
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({NotificationOutbox.class, NotificationDispatcher.class, NotificationDispatcherTests.RecordingChannelConfig.class})
+@TestPropertySource(properties = {
+        "library.notifications.max-attempts=3",
+        "library.notifications.backoff-base-ms=1000"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class NotificationDispatcherTests {
+
+    @TestConfiguration
+    static class RecordingChannelConfig {
+        @Bean
+        RecordingChannel recordingChannel() {
+            return new RecordingChannel();
+        }
+    }
+
+    static class RecordingChannel implements NotificationChannel {
+        final List<NotificationDTO> sent = new CopyOnWriteArrayList<>();
+        volatile boolean failing;
+
+        @Override
+        public void send(NotificationDTO notification) {
+            if (failing) {
+                throw new IllegalStateException("mail server down");
+            }
+            sent.add(notification);
+        }
+    }
+
+    @Autowired
+    private NotificationOutbox outbox;
+
+    @Autowired
+    private NotificationDispatcher dispatcher;
+
+    @Autowired
+    private RecordingChannel channel;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private String marker;
+
+    @BeforeEach
+    void setUp() {
+        marker = UUID.randomUUID().toString();
+        channel.sent.clear();
+        channel.failing = false;
+    }
+
+    @Test
+    void onlyCommittedNotificationsAreDeliveredAndOnlyOnce() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> outbox.enqueue("HOLD_READY", 1L, "ann@example.com", "kept " + marker));
+        transaction.executeWithoutResult(status -> {
+            outbox.enqueue("HOLD_READY", 2L, "bob@example.com", "dropped " + marker);
+            status.setRollbackOnly();
+        });
+
+        dispatcher.dispatch(System.currentTimeMillis());
+        dispatcher.dispatch(System.currentTimeMillis());
+
+        assertThat(sentMessages()).containsExactly("kept " + marker);
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM notification_outbox WHERE message = ?",
+                String.class, "kept " + marker)).isEqualTo("SENT");
+    }
+
+    @Test
+    void failedDeliveriesAreRetriedWithBackoffUntilTheAttemptLimit() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                outbox.enqueue("HOLD_READY", 1L, "ann@example.com", "undeliverable " + marker));
+        long now = System.currentTimeMillis();
+        channel.failing = true;
+
+        dispatcher.dispatch(now);
+        assertThat(attempts()).isEqualTo(1);
+
+        // Not due again until the first backoff has passed
+        dispatcher.dispatch(now + 500);
+        assertThat(attempts()).isEqualTo(1);
+        dispatcher.dispatch(now + 1_000);
+        assertThat(attempts()).isEqualTo(2);
+
+        // The second backoff is twice as long
+        dispatcher.dispatch(now + 2_500);
+        assertThat(attempts()).isEqualTo(2);
+        dispatcher.dispatch(now + 3_000);
+        assertThat(attempts()).isEqualTo(3);
+        assertThat(status("undeliverable ")).isEqualTo("FAILED");
+
+        dispatcher.dispatch(now + 60_000);
+        assertThat(attempts()).isEqualTo(3);
+    }
+
+    @Test
+    void retriedNotificationIsDeliveredOnceTheChannelRecovers() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                outbox.enqueue("HOLD_READY", 1L, "ann@example.com", "late " + marker));
+        long now = System.currentTimeMillis();
+
+        channel.failing = true;
+        dispatcher.dispatch(now);
+        channel.failing = false;
+        dispatcher.dispatch(now + 1_000);
+
+        assertThat(sentMessages()).containsExactly("late " + marker);
+        assertThat(channel.sent.get(0).getAttempt()).isEqualTo(2);
+        assertThat(status("late ")).isEqualTo("SENT");
+    }
+
+    @Test
+    void enqueueRequiresTheCallersTransaction() {
+        assertThatThrownBy(() -> outbox.enqueue("HOLD_READY", 1L, "ann@example.com", "orphan " + marker))
+                .isInstanceOf(IllegalTransactionStateException.class);
+    }
+
+    private List<String> sentMessages() {
+        return channel.sent.stream()
+                .map(NotificationDTO::getMessage)
+                .filter(message -> message.endsWith(marker))
+                .toList();
+    }
+
+    private int attempts() {
+        return jdbcTemplate.queryForObject("SELECT attempts FROM notification_outbox WHERE message = ?",
+                Integer.class, "undeliverable " + marker);
+    }
+
+    private String status(String prefix) {
+        return jdbcTemplate.queryForObject("SELECT status FROM notification_outbox WHERE message = ?",
+                String.class, prefix + marker);
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.library.service;
+
+import com.example.library.config.BorrowingLimitProperties;
+import com.example.library.dto.ReservationDTO;
+import com.example.library.exceptions.BorrowingLimitExceededException;
+import com.example.library.model.Reservation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Runs outside a test transaction so concurrent requests really race on the database
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ReservationService.class, BorrowerCounters.class, BorrowingLimitProperties.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReservationConcurrencyTests {
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private ReservationExpiryService reservationExpiryService;
+
+    @MockBean
+    private HoldShelfService holdShelfService;
+
+    private TestData testData;
+    private String bookId;
+
+    @BeforeEach
+    void setUp() {
+        testData = new TestData(jdbcTemplate);
+        bookId = testData.createBook("Popular", 1, 0);
+    }
+
+    @Test
+    void concurrentRequestsBySameMemberCreateOneReservation() throws Exception {
+        long userId = testData.createUser();
+
+        List<Callable<ReservationDTO>> requests = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            requests.add(() -> reservationService.reserveBook(bookId, userId));
+        }
+        List<ReservationDTO> results = runConcurrently(requests);
+
+        assertThat(results).extracting(ReservationDTO::getId).containsOnly(results.get(0).getId());
+        assertThat(results).extracting(ReservationDTO::getStatus).containsOnly(Reservation.Status.ACTIVE);
+        assertThat(openReservations(userId)).isEqualTo(1);
+        // The requests that found the reservation already there gave their slot back
+        assertThat(activeReservationCount(userId)).isEqualTo(1);
+    }
+
+    @Test
+    void memberAtTheLimitGetsTheirOpenReservationBack() throws Exception {
+        long userId = testData.createUser();
+        ReservationDTO first = reservationService.reserveBook(bookId, userId);
+        jdbcTemplate.update("UPDATE borrower_counters SET active_reservations = 5 WHERE user_id = ?", userId);
+
+        assertThat(reservationService.reserveBook(bookId, userId).getId()).isEqualTo(first.getId());
+        assertThatThrownBy(() -> reservationService.reserveBook(testData.createBook("Other", 1, 0), userId))
+                .isInstanceOf(BorrowingLimitExceededException.class);
+    }
+
+    @Test
+    void concurrentRequestsByDifferentMembersAreAllQueued() throws Exception {
+        List<Long> users = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            users.add(testData.createUser());
+        }
+
+        List<Callable<ReservationDTO>> requests = new ArrayList<>();
+        for (Long userId : users) {
+            requests.add(() -> reservationService.reserveBook(bookId, userId));
+        }
+        runConcurrently(requests);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM reservations WHERE book_id = ? AND status = 'ACTIVE'",
+                Integer.class, bookId)).isEqualTo(users.size());
+        assertThat(reservationService.getReservationsDTOByBookId(bookId))
+                .extracting(ReservationDTO::getQueuePosition)
+                .containsExactlyInAnyOrder(1, 2, 3, 4, 5, 6, 7, 8);
+    }
+
+    @Test
+    void closedReservationDoesNotBlockANewOne() throws Exception {
+        long userId = testData.createUser();
+        ReservationDTO first = reservationService.reserveBook(bookId, userId);
+        jdbcTemplate.update("UPDATE reservations SET status = 'EXPIRED', active_marker = NULL WHERE id = ?", first.getId());
+
+        ReservationDTO second = reservationService.reserveBook(bookId, userId);
+
+        assertThat(second.getId()).isNotEqualTo(first.getId());
+        assertThat(second.getQueuePosition()).isEqualTo(1);
+        assertThat(openReservations(userId)).isEqualTo(1);
+    }
+
+    private List<ReservationDTO> runConcurrently(List<Callable<ReservationDTO>> requests) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(requests.size());
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<ReservationDTO>> futures = new ArrayList<>();
+            for (Callable<ReservationDTO> request : requests) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return request.call();
+                }));
+            }
+            start.countDown();
+
+            List<ReservationDTO> results = new ArrayList<>();
+            for (Future<ReservationDTO> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int activeReservationCount(long userId) {
+        return jdbcTemplate.queryForObject("SELECT active_reservations FROM borrower_counters WHERE user_id = ?",
+                Integer.class, userId);
+    }
+
+    private int openReservations(long userId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM reservations WHERE book_id = ? AND user_id = ? " +
+                "AND status IN ('ACTIVE', 'ON_HOLD')", Integer.class, bookId, userId);
+    }
+}
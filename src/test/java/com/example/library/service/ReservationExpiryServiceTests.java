@@ -0,0 +1,134 @@
+package com.example.library.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+// Runs outside a test transaction: the service expires reservations in its own transactions
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ReservationExpiryService.class)
+@TestPropertySource(properties = {
+        "library.reservations.expiry-batch-size=2",
+        "library.reservations.expiry-tick-ms=100"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReservationExpiryServiceTests {
+
+    @Autowired
+    private ReservationExpiryService expiryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private BorrowerCounters borrowerCounters;
+
+    private TestData testData;
+    private String bookId;
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        testData = new TestData(jdbcTemplate);
+        bookId = testData.createBook("Expiry", 1, 0);
+        userId = testData.createUser();
+    }
+
+    // The wheel only moves forward with the real clock, so the tests wait instead of passing future times
+    @Test
+    void expiresSeededReservationsOnlyOnceTheyFallDue() throws Exception {
+        LocalDateTime now = LocalDateTime.now();
+        long lapsed = createReservation(now.minusMinutes(5), "ACTIVE");
+        long alsoLapsed = createReservation(now.minusSeconds(1), "ACTIVE");
+        long dueSoon = createReservation(now.plusSeconds(1), "ACTIVE");
+        long fulfilled = createReservation(now.minusMinutes(5), "FULFILLED");
+        long nextWeek = createReservation(now.plusDays(7), "ACTIVE");
+
+        expiryService.reseed();
+        assertThat(expiryService.expireDue(System.currentTimeMillis())).isGreaterThanOrEqualTo(2);
+
+        assertThat(status(lapsed)).isEqualTo("EXPIRED");
+        assertThat(status(alsoLapsed)).isEqualTo("EXPIRED");
+        assertThat(status(dueSoon)).isEqualTo("ACTIVE");
+        assertThat(status(fulfilled)).isEqualTo("FULFILLED");
+        assertThat(status(nextWeek)).isEqualTo("ACTIVE");
+        verify(borrowerCounters, times(2)).reservationEnded(userId);
+
+        Thread.sleep(1_200);
+        expiryService.expireDue(System.currentTimeMillis());
+        assertThat(status(dueSoon)).isEqualTo("EXPIRED");
+        assertThat(status(nextWeek)).isEqualTo("ACTIVE");
+    }
+
+    @Test
+    void reservationsScheduledAfterCommitExpireWithoutAReseed() throws Exception {
+        LocalDateTime expiresAt = LocalDateTime.now().plusSeconds(1);
+        long reservation = createReservation(expiresAt, "ACTIVE");
+        expiryService.scheduleAfterCommit(reservation, expiresAt);
+
+        expiryService.expireDue(System.currentTimeMillis());
+        assertThat(status(reservation)).isEqualTo("ACTIVE");
+
+        Thread.sleep(1_200);
+        expiryService.expireDue(System.currentTimeMillis());
+        assertThat(status(reservation)).isEqualTo("EXPIRED");
+    }
+
+    @Test
+    void reservationsFulfilledMeanwhileAreLeftAlone() {
+        LocalDateTime expiresAt = LocalDateTime.now().minusSeconds(1);
+        long reservation = createReservation(expiresAt, "ACTIVE");
+        expiryService.scheduleAfterCommit(reservation, expiresAt);
+        jdbcTemplate.update("UPDATE reservations SET status = 'FULFILLED' WHERE id = ?", reservation);
+
+        expiryService.expireDue(System.currentTimeMillis());
+
+        assertThat(status(reservation)).isEqualTo("FULFILLED");
+    }
+
+    @Test
+    void aFailedBatchIsTriedAgainOnTheNextTick() throws Exception {
+        LocalDateTime expiresAt = LocalDateTime.now().minusSeconds(1);
+        long reservation = createReservation(expiresAt, "ACTIVE");
+        expiryService.scheduleAfterCommit(reservation, expiresAt);
+        doThrow(new IllegalStateException("database unavailable")).doNothing()
+                .when(borrowerCounters).reservationEnded(userId);
+
+        assertThat(expiryService.expireDue(System.currentTimeMillis())).isZero();
+        assertThat(status(reservation)).isEqualTo("ACTIVE");
+
+        Thread.sleep(200);
+        assertThat(expiryService.expireDue(System.currentTimeMillis())).isEqualTo(1);
+        assertThat(status(reservation)).isEqualTo("EXPIRED");
+    }
+
+    private long createReservation(LocalDateTime expirationDate, String status) {
+        jdbcTemplate.update("INSERT INTO reservations (book_id, user_id, reservation_date, expiration_date, status) " +
+                        "VALUES (?, ?, ?, ?, ?)", bookId, userId, Timestamp.valueOf(expirationDate.minusDays(7)),
+                Timestamp.valueOf(expirationDate), status);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM reservations", Long.class);
+    }
+
+    private String status(long reservationId) {
+        return testData.reservationStatus(reservationId);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.library.service;
+
+import com.example.library.dto.ReservationDTO;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ReservationService.class)
+class ReservationQueuePositionTests {
+
+    private static final LocalDateTime START = LocalDateTime.of(2030, 1, 1, 9, 0);
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private BorrowerCounters borrowerCounters;
+
+    @MockBean
+    private ReservationExpiryService reservationExpiryService;
+
+    @MockBean
+    private HoldShelfService holdShelfService;
+
+    private TestData testData;
+    private String suffix;
+
+    @BeforeEach
+    void setUp() {
+        testData = new TestData(jdbcTemplate);
+        suffix = TestData.suffix();
+    }
+
+    @Test
+    void positionsFollowReservationOrderAmongActiveReservationsOfEachBook() {
+        String book = createBook("a");
+        String otherBook = createBook("b");
+        long ann = createUser("ann");
+        long bob = createUser("bob");
+        long cat = createUser("cat");
+
+        long annFirst = createReservation(book, ann, 0, "ACTIVE");
+        long bobFulfilled = createReservation(book, bob, 1, "FULFILLED");
+        long catSecond = createReservation(book, cat, 2, "ACTIVE");
+        long bobThird = createReservation(book, bob, 3, "ACTIVE");
+        long bobOnOtherBook = createReservation(otherBook, bob, 0, "ACTIVE");
+
+        Map<Long, Integer> byBook = positions(reservationService.getReservationsDTOByBookId(book));
+        assertThat(byBook).containsEntry(annFirst, 1).containsEntry(catSecond, 2).containsEntry(bobThird, 3);
+        assertThat(byBook.get(bobFulfilled)).isNull();
+
+        // Positions are relative to each book's whole queue, not to the listing
+        Map<Long, Integer> byUser = positions(reservationService.getReservationsDTOByUserId(bob));
+        assertThat(byUser).containsEntry(bobThird, 3).containsEntry(bobOnOtherBook, 1);
+        assertThat(byUser.get(bobFulfilled)).isNull();
+    }
+
+    @Test
+    void listingUsesConstantNumberOfQueries() {
+        long few = countQueries(3);
+        long many = countQueries(30);
+
+        assertThat(many).isEqualTo(few);
+    }
+
+    private long countQueries(int reservations) {
+        String book = createBook("q" + reservations);
+        for (int i = 0; i < reservations; i++) {
+            createReservation(book, createUser("q" + reservations + "x" + i), i, "ACTIVE");
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        List<ReservationDTO> listed = reservationService.getReservationsDTOByBookId(book);
+        assertThat(listed).extracting(ReservationDTO::getQueuePosition).doesNotContainNull();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private static Map<Long, Integer> positions(List<ReservationDTO> reservations) {
+        Map<Long, Integer> positions = new HashMap<>();
+        reservations.forEach(dto -> positions.put(dto.getId(), dto.getQueuePosition()));
+        return positions;
+    }
+
+    private String createBook(String name) {
+        return testData.createBook("Queue " + name, 1, 0);
+    }
+
+    private long createUser(String name) {
+        return testData.createUser(name + suffix);
+    }
+
+    private long createReservation(String bookId, long userId, int minutesAfterStart, String status) {
+        Timestamp reservedAt = Timestamp.valueOf(START.plusMinutes(minutesAfterStart));
+        jdbcTemplate.update("INSERT INTO reservations (book_id, user_id, reservation_date, expiration_date, status) " +
+                "VALUES (?, ?, ?, ?, ?)", bookId, userId, reservedAt,
+                Timestamp.valueOf(START.plusDays(7)), status);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM reservations", Long.class);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.library.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Inserts fixture rows for service tests with plain SQL. Tests share one in-memory database,
+// so generated ids and usernames carry a random suffix and never collide across tests.
+final class TestData {
+    private final JdbcTemplate jdbcTemplate;
+
+    TestData(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // 12 random hex characters
+    static String suffix() {
+        return UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+    }
+
+    // Inserted with SQL: H2 would store the converter's string as a JSON string, not an array.
+    // Returns the item type.
+    String createPolicy(int loanPeriodDays, String reminderDaysJson) {
+        String itemType = "T" + suffix();
+        jdbcTemplate.update("INSERT INTO loan_policies (item_type, loan_period_days, max_renewals, " +
+                "grace_period_days, reminder_days) VALUES (?, ?, 2, 0, JSON '" + reminderDaysJson + "')",
+                itemType, loanPeriodDays);
+        return itemType;
+    }
+
+    long policyId(String itemType) {
+        return jdbcTemplate.queryForObject("SELECT id FROM loan_policies WHERE item_type = ?", Long.class, itemType);
+    }
+
+    String createBook(String title, int owned, int available) {
+        return createBook(title, owned, available, "BOOK");
+    }
+
+    String createBook(String title, int owned, int available, String policyType) {
+        String id = "book-" + suffix();
+        jdbcTemplate.update("INSERT INTO books (id, title, copies_owned, copies_available, policy_type) " +
+                "VALUES (?, ?, ?, ?, ?)", id, title, owned, available, policyType);
+        return id;
+    }
+
+    long createUser() {
+        return createUser("u" + suffix());
+    }
+
+    // Usernames must be 3-20 alphanumeric characters; the email is derived from it
+    long createUser(String username) {
+        jdbcTemplate.update("INSERT INTO users (username, password, email, first_name, last_name, role, status) " +
+                "VALUES (?, 'x', ?, 'Ann', 'Reader', 'MEMBER', 'ACTIVE')", username, username + "@example.com");
+        return jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = ?", Long.class, username);
+    }
+
+    // The columns of a loan row a test may set; the others keep these defaults: lent three days
+    // ago, due in eleven, open, never renewed or reminded and without a loan policy
+    static final class LoanRow {
+        private final String bookId;
+        private final long userId;
+        private LocalDate loanDate = LocalDate.now().minusDays(3);
+        private LocalDate dueDate = LocalDate.now().plusDays(11);
+        private LocalDate renewalDueDate;
+        private LocalDate returnDate;
+        private int renewalCount;
+        private LocalDateTime lastReminderSent;
+        private Long policyId;
+
+        private LoanRow(String bookId, long userId) {
+            this.bookId = bookId;
+            this.userId = userId;
+        }
+
+        LoanRow loanDate(LocalDate loanDate) {
+            this.loanDate = loanDate;
+            return this;
+        }
+
+        LoanRow dueDate(LocalDate dueDate) {
+            this.dueDate = dueDate;
+            return this;
+        }
+
+        LoanRow renewalDueDate(LocalDate renewalDueDate) {
+            this.renewalDueDate = renewalDueDate;
+            return this;
+        }
+
+        LoanRow returnDate(LocalDate returnDate) {
+            this.returnDate = returnDate;
+            return this;
+        }
+
+        LoanRow renewalCount(int renewalCount) {
+            this.renewalCount = renewalCount;
+            return this;
+        }
+
+        LoanRow lastReminderSent(LocalDateTime lastReminderSent) {
+            this.lastReminderSent = lastReminderSent;
+            return this;
+        }
+
+        LoanRow policyId(Long policyId) {
+            this.policyId = policyId;
+            return this;
+        }
+    }
+
+    static LoanRow loan(String bookId, long userId) {
+        return new LoanRow(bookId, userId);
+    }
+
+    // Returns the generated id of the new loan
+    long createLoan(LoanRow loan) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement("INSERT INTO loans (book_id, user_id, loan_date, " +
+                    "due_date, renewal_due_date, return_date, renewal_count, last_reminder_sent, loan_policy_id) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", new String[]{"id"});
+            ps.setString(1, loan.bookId);
+            ps.setLong(2, loan.userId);
+            ps.setDate(3, Date.valueOf(loan.loanDate));
+            ps.setDate(4, Date.valueOf(loan.dueDate));
+            ps.setDate(5, loan.renewalDueDate != null ? Date.valueOf(loan.renewalDueDate) : null);
+            ps.setDate(6, loan.returnDate != null ? Date.valueOf(loan.returnDate) : null);
+            ps.setInt(7, loan.renewalCount);
+            ps.setTimestamp(8, loan.lastReminderSent != null ? Timestamp.valueOf(loan.lastReminderSent) : null);
+            if (loan.policyId != null) {
+                ps.setLong(9, loan.policyId);
+            } else {
+                ps.setNull(9, Types.BIGINT);
+            }
+            return ps;
+        }, keyHolder);
+        return keyHolder.getKey().longValue();
+    }
+
+    int copiesAvailable(String bookId) {
+        return jdbcTemplate.queryForObject("SELECT copies_available FROM books WHERE id = ?", Integer.class, bookId);
+    }
+
+    String reservationStatus(long reservationId) {
+        return jdbcTemplate.queryForObject("SELECT status FROM reservations WHERE id = ?", String.class, reservationId);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.library.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimerWheelTests {
+
+    private static final long ORIGIN = 1_000_000L;
+
+    @Test
+    void firesEachKeyOnTheFirstTickAtOrAfterItsDeadline() {
+        TimerWheel<String> wheel = new TimerWheel<>(ORIGIN, 1000, 8, 3);
+        wheel.schedule("soon", ORIGIN + 1500);
+        wheel.schedule("later", ORIGIN + 70_000);
+
+        assertThat(wheel.advance(ORIGIN + 1999)).isEmpty();
+        assertThat(wheel.advance(ORIGIN + 2000)).containsExactly("soon");
+        assertThat(wheel.advance(ORIGIN + 69_999)).isEmpty();
+        assertThat(wheel.advance(ORIGIN + 70_000)).containsExactly("later");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void pastDeadlinesAreDueOnTheNextAdvance() {
+        TimerWheel<String> wheel = new TimerWheel<>(ORIGIN, 1000, 8, 3);
+        wheel.advance(ORIGIN + 10_000);
+        wheel.schedule("late", ORIGIN + 5_000);
+
+        assertThat(wheel.advance(ORIGIN + 10_000)).containsExactly("late");
+    }
+
+    @Test
+    void cancelledAndRescheduledKeysFireOnlyAtTheirLatestDeadline() {
+        TimerWheel<String> wheel = new TimerWheel<>(ORIGIN, 1000, 8, 3);
+        wheel.schedule("cancelled", ORIGIN + 3_000);
+        wheel.schedule("moved", ORIGIN + 3_000);
+        assertThat(wheel.cancel("cancelled")).isTrue();
+        wheel.schedule("moved", ORIGIN + 100_000);
+
+        assertThat(wheel.advance(ORIGIN + 99_000)).isEmpty();
+        assertThat(wheel.advance(ORIGIN + 100_000)).containsExactly("moved");
+        assertThat(wheel.cancel("cancelled")).isFalse();
+    }
+
+    @Test
+    void deadlinesBeyondTheTopLevelAreHeldUntilDue() {
+        // 4 slots x 2 levels covers 16 ticks; this deadline is 50 ticks out
+        TimerWheel<String> wheel = new TimerWheel<>(ORIGIN, 1000, 4, 2);
+        wheel.schedule("far", ORIGIN + 50_000);
+
+        assertThat(wheel.advance(ORIGIN + 49_000)).isEmpty();
+        assertThat(wheel.advance(ORIGIN + 50_000)).containsExactly("far");
+    }
+
+    @Test
+    void matchesASortedScanForRandomDeadlines() {
+        Random random = new Random(42);
+        TimerWheel<Integer> wheel = new TimerWheel<>(ORIGIN, 10, 16, 3);
+        long[] deadlines = new long[2000];
+        for (int i = 0; i < deadlines.length; i++) {
+            deadlines[i] = ORIGIN + random.nextInt(200_000);
+            wheel.schedule(i, deadlines[i]);
+        }
+
+        long now = ORIGIN;
+        List<Integer> fired = new ArrayList<>();
+        while (now < ORIGIN + 210_000) {
+            long previous = now;
+            now += 1 + random.nextInt(5_000);
+            for (int key : wheel.advance(now)) {
+                // Never early, and no later than the first advance past the deadline's tick
+                assertThat(deadlines[key]).isLessThanOrEqualTo(now).isGreaterThan(previous - 10);
+                fired.add(key);
+            }
+        }
+        assertThat(fired).hasSize(deadlines.length).doesNotHaveDuplicates();
+    }
+}
@@ -0,0 +1,43 @@
+-- Tables the tests need that have no JPA entity; Hibernate creates the others.
+-- Mirrors initial_setup.sql.
+CREATE TABLE IF NOT EXISTS notification_outbox (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    type VARCHAR(50) NOT NULL,
+    user_id BIGINT,
+    email VARCHAR(255),
+    message VARCHAR(2000) NOT NULL,
+    status ENUM('PENDING', 'SENT', 'FAILED') NOT NULL DEFAULT 'PENDING',
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at DATETIME NOT NULL,
+    created_at DATETIME NOT NULL,
+    sent_at DATETIME NULL,
+    last_error VARCHAR(500)
+);
+
+CREATE INDEX IF NOT EXISTS idx_outbox_status_next_attempt ON notification_outbox(status, next_attempt_at, id);
+
+CREATE TABLE IF NOT EXISTS borrower_counters (
+    user_id BIGINT PRIMARY KEY,
+    active_loans INT NOT NULL DEFAULT 0,
+    active_reservations INT NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS borrower_policy_counters (
+    user_id BIGINT NOT NULL,
+    item_type VARCHAR(50) NOT NULL,
+    active_loans INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (user_id, item_type)
+);
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    principal VARCHAR(255) NOT NULL,
+    idempotency_key VARCHAR(255) NOT NULL,
+    fingerprint VARCHAR(2048) NOT NULL,
+    status INT NULL,
+    content_type VARCHAR(255),
+    body MEDIUMBLOB,
+    created_at DATETIME NOT NULL,
+    PRIMARY KEY (principal, idempotency_key)
+);
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_created ON idempotency_keys(created_at);